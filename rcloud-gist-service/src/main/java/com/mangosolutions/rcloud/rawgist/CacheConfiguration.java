@@ -22,8 +22,10 @@ import org.springframework.util.StringUtils;
 
 import com.hazelcast.config.Config;
 import com.hazelcast.config.GroupConfig;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.config.MapConfig;
 import com.hazelcast.config.MaxSizeConfig;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import com.hazelcast.spring.cache.HazelcastCacheManager;
@@ -95,6 +97,7 @@ public class CacheConfiguration {
             MaxSizeConfig maxSizeConfig = mapConfig.getMaxSizeConfig();
             maxSizeConfig.setSize(cacheConfig.getMaxSize());
             mapConfig.setMaxSizeConfig(maxSizeConfig);
+            mapConfig.setNearCacheConfig(createNearCacheConfig(cacheConfig));
         }
         config.addMapConfig(mapConfig);
         
@@ -102,6 +105,27 @@ public class CacheConfiguration {
         logger.info("Configured cache {} with with settings: {}", cacheName, mapConfig);
     }
 
+    /**
+     * Creates the near cache that holds entries on each node, entries are
+     * removed from the near caches when they are changed in the distributed
+     * cache.
+     */
+    private NearCacheConfig createNearCacheConfig(GistCacheConfiguration cacheConfig) {
+        if (cacheConfig.getNearCacheSize() <= 0) {
+            return null;
+        }
+        int ttl = cacheConfig.getNearCacheTtl() > 0 ? cacheConfig.getNearCacheTtl() : cacheConfig.getTtl();
+        NearCacheConfig nearCacheConfig = new NearCacheConfig(cacheConfig.getName());
+        nearCacheConfig.setMaxSize(cacheConfig.getNearCacheSize());
+        nearCacheConfig.setEvictionPolicy(cacheConfig.getEvictionPolicy().name());
+        nearCacheConfig.setTimeToLiveSeconds(ttl);
+        nearCacheConfig.setMaxIdleSeconds(cacheConfig.getMaxIdleSeconds());
+        nearCacheConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+        nearCacheConfig.setCacheLocalEntries(true);
+        nearCacheConfig.setInvalidateOnChange(true);
+        return nearCacheConfig;
+    }
+
     private MapConfig getDefaultMapConfig(Map<String, MapConfig> mapConfigs) {
         MapConfig mapConfig = null;
         if (mapConfigs.containsKey("default")) {
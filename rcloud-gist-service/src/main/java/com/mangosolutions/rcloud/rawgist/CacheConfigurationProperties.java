@@ -32,6 +32,8 @@ public class CacheConfigurationProperties {
         private int ttl = 300;
         private int maxSize = 1000;
         private int maxIdleSeconds = 300;
+        private int nearCacheSize = 0;
+        private int nearCacheTtl = 0;
 
         public String getName() {
             return name;
@@ -72,6 +74,30 @@ public class CacheConfigurationProperties {
         public void setMaxIdleSeconds(int maxIdleSeconds) {
             this.maxIdleSeconds = maxIdleSeconds;
         }
+
+        /**
+         * The number of entries held on each node in front of the distributed
+         * cache, 0 disables the near cache.
+         */
+        public int getNearCacheSize() {
+            return nearCacheSize;
+        }
+
+        public void setNearCacheSize(int nearCacheSize) {
+            this.nearCacheSize = nearCacheSize;
+        }
+
+        /**
+         * The seconds an entry is held in the near cache, 0 uses the ttl of the
+         * cache.
+         */
+        public int getNearCacheTtl() {
+            return nearCacheTtl;
+        }
+
+        public void setNearCacheTtl(int nearCacheTtl) {
+            this.nearCacheTtl = nearCacheTtl;
+        }
     }
 
 }
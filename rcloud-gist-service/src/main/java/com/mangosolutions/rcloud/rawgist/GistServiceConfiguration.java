@@ -6,6 +6,7 @@
 *******************************************************************************/
 package com.mangosolutions.rcloud.rawgist;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -24,10 +25,20 @@ import org.springframework.web.filter.CommonsRequestLoggingFilter;
 import com.hazelcast.core.HazelcastInstance;
 import com.mangosolutions.rcloud.rawgist.repository.GistIdGenerator;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryFactory;
-import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
 import com.mangosolutions.rcloud.rawgist.repository.GistSecurityManager;
+import com.mangosolutions.rcloud.rawgist.repository.git.CatalogStore;
 import com.mangosolutions.rcloud.rawgist.repository.git.CollaborationDataStore;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistLockManager;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistRecycler;
 import com.mangosolutions.rcloud.rawgist.repository.git.GitGistRepositoryService;
+import com.mangosolutions.rcloud.rawgist.repository.git.ForkObjectRelinker;
+import com.mangosolutions.rcloud.rawgist.repository.git.GitRepositoryPool;
+import com.mangosolutions.rcloud.rawgist.repository.git.HazelcastGistLockManager;
+import com.mangosolutions.rcloud.rawgist.repository.git.LocalGistLockManager;
+import com.mangosolutions.rcloud.rawgist.repository.git.MetadataStore;
+import com.mangosolutions.rcloud.rawgist.repository.git.ObjectPoolCompactor;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryMaintenanceTracker;
+import com.mangosolutions.rcloud.rawgist.repository.git.SharedObjectPool;
 import com.mangosolutions.rcloud.rawgist.repository.git.UUIDGistIdGenerator;
 import com.mangosolutions.rcloud.rawgist.repository.security.GrantedAuthorityGistSecurityManager;
 import com.mangosolutions.rcloud.rawgist.repository.security.PermissiveGistSecurityManager;
@@ -52,15 +63,52 @@ public class GistServiceConfiguration {
     @Autowired
     private GistRepositoryFactory repositoryFactory;
 
+    @Autowired
+    private CatalogStore catalogStore;
+
+    @Autowired
+    private GitRepositoryPool repositoryPool;
+
+    @Autowired
+    private ForkObjectRelinker forkObjectRelinker;
+
+    @Autowired
+    private SharedObjectPool objectPool;
+
+    @Autowired
+    private MetadataStore metadataStore;
+
+    @Autowired
+    private RepositoryMaintenanceTracker maintenanceTracker;
+
+    @Autowired
+    private GistRecycler recycler;
+
     @Bean
-    public GistRepositoryService getGistRepository() throws IOException {
+    public GitGistRepositoryService getGistRepository() throws IOException {
         GitGistRepositoryService repositoryService = new GitGistRepositoryService(serviceProperties.getRoot(),
                 this.getGistIdGenerator(), hazelcastInstance);
+        GistLockManager lockManager = getGistLockManager();
         repositoryService.setLockTimeout(serviceProperties.getLockTimeout());
+        repositoryService.setLockManager(lockManager);
         repositoryService.setSecurityManager(getGistSecurityManager());
         repositoryService.setGistRepositoryFactory(repositoryFactory);
+        repositoryService.setCatalogStore(catalogStore);
+        repositoryService.setMetadataStore(metadataStore);
+        repositoryService.setRepositoryPool(repositoryPool);
+        forkObjectRelinker.setLockManager(lockManager);
+        forkObjectRelinker.setLockTimeout(serviceProperties.getLockTimeout());
+        repositoryService.setForkObjectRelinker(forkObjectRelinker);
+        repositoryService.setObjectPool(objectPool);
+        repositoryService.setMaintenanceTracker(maintenanceTracker);
+        repositoryService.setRecycler(recycler);
         return repositoryService;
     }
+
+    @Bean
+    public ObjectPoolCompactor getObjectPoolCompactor() throws IOException {
+        return new ObjectPoolCompactor(getGistRepository(), metadataStore, new File(serviceProperties.getRoot()));
+    }
     
     
     @Bean
@@ -100,6 +148,28 @@ public class GistServiceConfiguration {
         return manager;
     }
 
+    private GistLockManager getGistLockManager() {
+        GistLockManager lockManager = null;
+        String locking = serviceProperties.getLocking();
+        switch (locking) {
+            case GistServiceProperties.READ_WRITE_LOCKING:
+                lockManager = new HazelcastGistLockManager(hazelcastInstance, true);
+                break;
+            case GistServiceProperties.LOCAL_LOCKING:
+                lockManager = new LocalGistLockManager();
+                break;
+            case GistServiceProperties.EXCLUSIVE_LOCKING:
+                lockManager = new HazelcastGistLockManager(hazelcastInstance);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown gists.locking value '" + locking + "', expected one of "
+                        + GistServiceProperties.EXCLUSIVE_LOCKING + ", " + GistServiceProperties.READ_WRITE_LOCKING
+                        + " or " + GistServiceProperties.LOCAL_LOCKING);
+        }
+        logger.info("Using {} gist locking", locking);
+        return lockManager;
+    }
+
     @Bean
     public GistIdGenerator getGistIdGenerator() {
         return new UUIDGistIdGenerator();
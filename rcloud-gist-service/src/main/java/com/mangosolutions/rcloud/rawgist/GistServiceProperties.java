@@ -18,6 +18,12 @@ public class GistServiceProperties {
     public static final String STRICT_SECURITY_MANAGER = "strict";
     public static final String PERMISSIVE_SECURITY_MANAGER = "permissive";
 
+    public static final String EXCLUSIVE_LOCKING = "exclusive";
+
+    public static final String READ_WRITE_LOCKING = "readwrite";
+
+    public static final String LOCAL_LOCKING = "local";
+
     @NestedConfigurationProperty
     private GistUsersProperties users = new GistUsersProperties();
     
@@ -29,6 +35,14 @@ public class GistServiceProperties {
 
     private int lockTimeout = 30;
 
+    private String locking = EXCLUSIVE_LOCKING;
+
+    private int pageSize = 30;
+
+    private int maxPageSize = 100;
+
+    private boolean streamResponses = false;
+
     private String sessionKeyServerUrl = null;
 
     private String sessionKeyServerRealm = "rcloud";
@@ -52,6 +66,38 @@ public class GistServiceProperties {
         this.lockTimeout = lockTimeout;
     }
 
+    public String getLocking() {
+        return locking;
+    }
+
+    public void setLocking(String locking) {
+        this.locking = locking;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public boolean isStreamResponses() {
+        return streamResponses;
+    }
+
+    public void setStreamResponses(boolean streamResponses) {
+        this.streamResponses = streamResponses;
+    }
+
     public String getRoot() {
         return root;
     }
@@ -27,6 +27,14 @@ public class SessionKeyServerProperties {
 	private String accessTokenParam = DEFAULT_ACCESS_TOKEN_NAME;
 	private String clientIdParam = DEFAULT_CLIENT_ID_NAME;
 	
+	private boolean keyserverPooling = true;
+	
+	private int keyserverRefreshAfter = 45;
+	
+	private int keyserverRefreshThreads = 2;
+	
+	private int keyserverUserCacheSize = 10000;
+	
 	public String getAccessTokenParam() {
 		return accessTokenParam;
 	}
@@ -51,12 +59,66 @@ public class SessionKeyServerProperties {
 		this.clientIdParam = clientIdParam;
 	}
 
+	/**
+	 * Whether the connections to the key servers are kept alive in a pool,
+	 * default is true. When false a connection is opened for each request.
+	 */
+	public boolean isKeyserverPooling() {
+		return keyserverPooling;
+	}
+
+	public void setKeyserverPooling(boolean keyserverPooling) {
+		this.keyserverPooling = keyserverPooling;
+	}
+
+	/**
+	 * The age in seconds at which a cached session key is validated again in
+	 * the background, default is 45. It should be less than the ttl of the
+	 * sessionkeys cache, 0 disables refreshing.
+	 */
+	public int getKeyserverRefreshAfter() {
+		return keyserverRefreshAfter;
+	}
+
+	public void setKeyserverRefreshAfter(int keyserverRefreshAfter) {
+		this.keyserverRefreshAfter = keyserverRefreshAfter;
+	}
+
+	/**
+	 * The number of threads validating session keys in the background,
+	 * default is 2.
+	 */
+	public int getKeyserverRefreshThreads() {
+		return keyserverRefreshThreads;
+	}
+
+	public void setKeyserverRefreshThreads(int keyserverRefreshThreads) {
+		this.keyserverRefreshThreads = keyserverRefreshThreads;
+	}
+
+	/**
+	 * The number of users, with their authorities, held between requests
+	 * made with the same session key, default is 10000. They are discarded
+	 * when the configuration is refreshed.
+	 */
+	public int getKeyserverUserCacheSize() {
+		return keyserverUserCacheSize;
+	}
+
+	public void setKeyserverUserCacheSize(int keyserverUserCacheSize) {
+		this.keyserverUserCacheSize = keyserverUserCacheSize;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((accessTokenParam == null) ? 0 : accessTokenParam.hashCode());
 		result = prime * result + ((clientIdParam == null) ? 0 : clientIdParam.hashCode());
+		result = prime * result + (keyserverPooling ? 1231 : 1237);
+		result = prime * result + keyserverRefreshAfter;
+		result = prime * result + keyserverRefreshThreads;
+		result = prime * result + keyserverUserCacheSize;
 		result = prime * result + ((keyservers == null) ? 0 : keyservers.hashCode());
 		return result;
 	}
@@ -80,6 +142,14 @@ public class SessionKeyServerProperties {
 				return false;
 		} else if (!clientIdParam.equals(other.clientIdParam))
 			return false;
+		if (keyserverPooling != other.keyserverPooling)
+			return false;
+		if (keyserverRefreshAfter != other.keyserverRefreshAfter)
+			return false;
+		if (keyserverRefreshThreads != other.keyserverRefreshThreads)
+			return false;
+		if (keyserverUserCacheSize != other.keyserverUserCacheSize)
+			return false;
 		if (keyservers == null) {
 			if (other.keyservers != null)
 				return false;
@@ -91,7 +161,9 @@ public class SessionKeyServerProperties {
 	@Override
 	public String toString() {
 		return "SessionKeyServerProperties [keyservers=" + keyservers + ", accessTokenParam=" + accessTokenParam
-				+ ", clientIdParam=" + clientIdParam + "]";
+				+ ", clientIdParam=" + clientIdParam + ", keyserverPooling=" + keyserverPooling
+				+ ", keyserverRefreshAfter=" + keyserverRefreshAfter + ", keyserverRefreshThreads="
+				+ keyserverRefreshThreads + ", keyserverUserCacheSize=" + keyserverUserCacheSize + "]";
 	}
 
 	
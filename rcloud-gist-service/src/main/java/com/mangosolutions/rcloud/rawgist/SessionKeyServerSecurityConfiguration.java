@@ -10,6 +10,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +59,8 @@ public class SessionKeyServerSecurityConfiguration extends WebSecurityConfigurer
 
     private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
 
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
     @Autowired
     private SessionKeyServerProperties keyserverProperties;
 
@@ -90,9 +95,28 @@ public class SessionKeyServerSecurityConfiguration extends WebSecurityConfigurer
         SessionKeyServerUserDetailsService userDetailsService = new SessionKeyServerUserDetailsService(service);
         GrantedAuthorityFactory factory = getAuthorityFactory();
         userDetailsService.setGrantedAuthorityFactory(factory);
+        userDetailsService.setRefresh(getSessionKeyRefreshExecutor(),
+                TimeUnit.SECONDS.toMillis(this.keyserverProperties.getKeyserverRefreshAfter()));
+        // the users hold the collaborators of the configuration, being refresh
+        // scoped they are discarded with it.
+        userDetailsService.setMaxUsers(this.keyserverProperties.getKeyserverUserCacheSize());
         return userDetailsService;
     }
 
+    /**
+     * The executor that validates session keys again before their cached
+     * responses expire. Refreshes that do not fit in the queue are dropped,
+     * the session key is then validated when its cached response expires.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor getSessionKeyRefreshExecutor() {
+        int threads = Math.max(1, this.keyserverProperties.getKeyserverRefreshThreads());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(REFRESH_QUEUE_SIZE), new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Bean
     @RefreshScope
     public SessionKeyServerService getSessionKeyServerService() {
@@ -100,7 +124,8 @@ public class SessionKeyServerSecurityConfiguration extends WebSecurityConfigurer
         Map<String, KeyServerConfiguration> keyServers = new HashMap<>(config);
         logger.info("Configured key servers: {}", keyServers);
         config.clear();
-        SessionKeyServerService service = new SessionKeyServerService(keyServers);
+        SessionKeyServerService service = new SessionKeyServerService(keyServers,
+                this.keyserverProperties.isKeyserverPooling());
         return service;
     }
 
@@ -0,0 +1,44 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
+import com.mangosolutions.rcloud.rawgist.repository.GistVersion;
+
+/**
+ * Reads gists through the <code>gists</code> cache. Kept apart from the
+ * {@link GistRestController} so that the controller can answer conditional
+ * requests before the cache is consulted.
+ */
+@Component
+public class CachingGistReader {
+
+    @Autowired
+    private GistRepositoryService repository;
+
+    @Cacheable(value = "gists", key = "#gistId")
+    public GistResponse getGist(String gistId, User activeUser) {
+        return repository.getGist(gistId, activeUser);
+    }
+
+    /**
+     * Reads the gist at a commit. The entries of a gist at a commit are not
+     * evicted when the gist's comments or metadata change, so they are kept by
+     * the version they were read at.
+     */
+    @Cacheable(value = "gists", key = "{ #gistId, #commitId, #version.ETag }")
+    public GistResponse getGist(String gistId, String commitId, GistVersion version, User activeUser) {
+        return repository.getGist(gistId, commitId, activeUser);
+    }
+
+}
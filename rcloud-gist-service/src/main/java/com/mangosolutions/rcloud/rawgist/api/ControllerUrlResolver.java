@@ -9,8 +9,16 @@ package com.mangosolutions.rcloud.rawgist.api;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
 import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
 @Component
 public class ControllerUrlResolver {
@@ -20,19 +28,43 @@ public class ControllerUrlResolver {
 		if(gistId != null) {
 			url = linkTo(
 					methodOn(GistRestController.class)
-					.getGist(gistId, activeUser))
+					.getGist(gistId, null, null, activeUser))
+					.withSelfRel()
+					.getHref();
+			}
+		return url;
+	}
+
+	public String getGistUrl(String gistId, String commitId, User activeUser) {
+		String url = null;
+		if(gistId != null && commitId != null) {
+			url = linkTo(
+					methodOn(GistRestController.class)
+					.getGistAtCommit(gistId, commitId, null, null, activeUser))
 					.withSelfRel()
 					.getHref();
 			}
 		return url;
 	}
 
+	public String getRawUrl(String gistId, String commitId, String fileName, User activeUser) {
+		String url = null;
+		if(gistId != null && fileName != null) {
+			UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(getGistUrl(gistId, activeUser));
+			if(commitId != null) {
+				builder.pathSegment(commitId);
+			}
+			url = builder.pathSegment("raw", fileName).build().encode().toUriString();
+		}
+		return url;
+	}
+
 	public String getCommentsUrl(String gistId, User activeUser) {
 		String url = null;
 		if(gistId != null) {
 			url = linkTo(
 					methodOn(GistCommentRestController.class)
-					.getComments(gistId, activeUser))
+					.getComments(gistId, null, null, null, activeUser))
 					.withSelfRel()
 					.getHref();
 			}
@@ -63,4 +95,30 @@ public class ControllerUrlResolver {
 		return url;
 	}
 
+	/**
+	 * Builds the value of a github style <code>Link</code> header for the
+	 * page, with the <code>next</code>, <code>last</code>, <code>first</code>
+	 * and <code>prev</code> relations resolved against the current request.
+	 * Returns <code>null</code> if the result fits on a single page.
+	 */
+	public String getPageLinks(ResultPage<?> page) {
+		List<String> links = new ArrayList<>();
+		if(page.hasNext()) {
+			links.add(getPageLink(page.getPage() + 1, page.getPerPage(), "next"));
+			links.add(getPageLink(page.getLastPage(), page.getPerPage(), "last"));
+		}
+		if(page.hasPrevious()) {
+			links.add(getPageLink(1, page.getPerPage(), "first"));
+			links.add(getPageLink(Math.min(page.getPage() - 1, page.getLastPage()), page.getPerPage(), "prev"));
+		}
+		return links.isEmpty() ? null : StringUtils.join(links, ", ");
+	}
+
+	private String getPageLink(int page, int perPage, String rel) {
+		UriComponentsBuilder builder = ServletUriComponentsBuilder.fromCurrentRequest()
+				.replaceQueryParam("page", page)
+				.replaceQueryParam("per_page", perPage);
+		return "<" + builder.build().toUriString() + ">; rel=\"" + rel + "\"";
+	}
+
 }
@@ -0,0 +1,286 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.model.GistRequest;
+import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+import com.mangosolutions.rcloud.rawgist.model.GistUpdate;
+import com.mangosolutions.rcloud.rawgist.model.GistUpdateResult;
+import com.mangosolutions.rcloud.rawgist.repository.GistAccessDeniedException;
+import com.mangosolutions.rcloud.rawgist.repository.GistChangeListener;
+import com.mangosolutions.rcloud.rawgist.repository.GistError;
+import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryException;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
+
+/**
+ * Applies the changes of a batch update on a bounded pool of threads. The
+ * changes are grouped by gist, each gist is locked once through the
+ * {@link GistRepositoryService} and its changes are applied in the order they
+ * were sent, whilst the changes of different gists are applied concurrently. A
+ * failed change does not affect the others, its error is returned in its
+ * result with the status it would have had as a single request. The gists
+ * waiting for a thread are bounded across all batches, the changes of the
+ * gists that do not fit are not applied and fail with {@code 503} so that they
+ * can be sent again later.
+ */
+@Component
+public class GistBatchUpdater {
+
+    private static final Logger logger = LoggerFactory.getLogger(GistBatchUpdater.class);
+
+    public static final int DEFAULT_THREADS = 4;
+
+    public static final int DEFAULT_MAX_SIZE = 500;
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    @Autowired
+    private GistRepositoryService repository;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    private final int maxSize;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads
+     *            the number of gists changed at the same time across all
+     *            batches.
+     * @param maxSize
+     *            the largest number of changes accepted in a batch.
+     * @param queueSize
+     *            the largest number of gists waiting for a thread across all
+     *            batches.
+     */
+    @Autowired
+    public GistBatchUpdater(@Value("${gists.batchThreads:" + DEFAULT_THREADS + "}") int threads,
+            @Value("${gists.maxBatchSize:" + DEFAULT_MAX_SIZE + "}") int maxSize,
+            @Value("${gists.batchQueueSize:" + DEFAULT_QUEUE_SIZE + "}") int queueSize) {
+        this.maxSize = maxSize;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Applies the changes and returns their results in the order of the
+     * changes, once every change has completed.
+     */
+    public List<GistUpdateResult> update(List<GistUpdate> updates, boolean includeGist, User activeUser) {
+        if (updates.size() > maxSize) {
+            GistError error = new GistError(GistErrorCode.ERR_INVALID_PARAMETER,
+                    "A batch update can contain at most {} changes, {} were sent", maxSize, updates.size());
+            throw new GistRepositoryException(error);
+        }
+        GistUpdateResult[] results = new GistUpdateResult[updates.size()];
+        Map<String, List<Integer>> changesByGist = new LinkedHashMap<>();
+        for (int i = 0; i < updates.size(); i++) {
+            GistUpdate update = updates.get(i);
+            if (update.getId() == null || update.getGist() == null) {
+                results[i] = failed(update.getId(), HttpStatus.BAD_REQUEST,
+                        GistErrorCode.ERR_INVALID_PARAMETER.toString(), "Each change needs an id and a gist");
+                continue;
+            }
+            List<Integer> changes = changesByGist.get(update.getId());
+            if (changes == null) {
+                changes = new ArrayList<>();
+                changesByGist.put(update.getId(), changes);
+            }
+            changes.add(i);
+        }
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        int rejected = 0;
+        for (Map.Entry<String, List<Integer>> entry : changesByGist.entrySet()) {
+            try {
+                futures.put(entry.getKey(), executor.submit(
+                        new UpdateTask(entry.getKey(), entry.getValue(), updates, includeGist, activeUser, results)));
+            } catch (RejectedExecutionException e) {
+                rejected += entry.getValue().size();
+                for (int index : entry.getValue()) {
+                    results[index] = failed(entry.getKey(), HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_UNAVAILABLE",
+                            "Too many changes are waiting to be applied, the change was not applied");
+                }
+            }
+        }
+        if (rejected > 0) {
+            logger.warn("The batch update queue is full, {} of {} changes were not applied", rejected,
+                    updates.size());
+        }
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            awaitChanges(entry.getKey(), entry.getValue(), changesByGist.get(entry.getKey()), results);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Waits for the changes of the gist, any change without a result was not
+     * applied.
+     */
+    private void awaitChanges(String gistId, Future<?> future, List<Integer> changes, GistUpdateResult[] results) {
+        GistUpdateResult failure = null;
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            failure = failed(gistId, HttpStatus.SERVICE_UNAVAILABLE, "INTERRUPTED",
+                    "The batch update was interrupted");
+        } catch (ExecutionException e) {
+            logger.error("Could not update gist {}", gistId, e.getCause());
+            failure = failed(gistId, HttpStatus.INTERNAL_SERVER_ERROR, "INTERNAL_SERVER_ERROR",
+                    "Application error.");
+        }
+        for (int index : changes) {
+            synchronized (results) {
+                if (results[index] == null) {
+                    results[index] = failure;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of a gist in the order they were sent, the gist is
+     * locked once for all of them.
+     */
+    private void apply(final String gistId, final List<Integer> changes, List<GistUpdate> updates,
+            boolean includeGist, User activeUser, final GistUpdateResult[] results) {
+        List<GistRequest> requests = new ArrayList<>(changes.size());
+        for (int index : changes) {
+            requests.add(updates.get(index).getGist());
+        }
+        try {
+            repository.editGist(gistId, requests, includeGist, activeUser, new GistChangeListener() {
+
+                @Override
+                public void applied(int index, GistResponse response) {
+                    GistUpdateResult result = new GistUpdateResult(gistId, HttpStatus.OK.value());
+                    result.setGist(response);
+                    setResult(changes.get(index), result);
+                }
+
+                @Override
+                public void failed(int index, RuntimeException e) {
+                    setResult(changes.get(index), GistBatchUpdater.this.failed(gistId, e));
+                }
+
+                private void setResult(int index, GistUpdateResult result) {
+                    synchronized (results) {
+                        results[index] = result;
+                    }
+                }
+
+            });
+        } catch (RuntimeException e) {
+            GistUpdateResult result = failed(gistId, e);
+            synchronized (results) {
+                for (int index : changes) {
+                    if (results[index] == null) {
+                        results[index] = result;
+                    }
+                }
+            }
+        } finally {
+            evict(gistId);
+        }
+    }
+
+    private GistUpdateResult failed(String gistId, RuntimeException e) {
+        if (e instanceof GistAccessDeniedException) {
+            return failed(gistId, HttpStatus.FORBIDDEN, ((GistAccessDeniedException) e).getGistError());
+        } else if (e instanceof GistRepositoryException) {
+            return failed(gistId, HttpStatus.BAD_REQUEST, ((GistRepositoryException) e).getGistError());
+        } else if (e instanceof GistRepositoryError) {
+            return failed(gistId, HttpStatus.INTERNAL_SERVER_ERROR, ((GistRepositoryError) e).getGistError());
+        }
+        throw e;
+    }
+
+    private void evict(String gistId) {
+        if (cacheManager != null) {
+            Cache cache = cacheManager.getCache("gists");
+            if (cache != null) {
+                cache.evict(gistId);
+            }
+        }
+    }
+
+    private GistUpdateResult failed(String gistId, HttpStatus status, GistError error) {
+        return failed(gistId, status, error.getCode().toString(), error.getFormattedMessage());
+    }
+
+    private GistUpdateResult failed(String gistId, HttpStatus status, String code, String message) {
+        GistUpdateResult result = new GistUpdateResult(gistId, status.value());
+        result.setError(code);
+        result.setMessage(message);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private class UpdateTask implements Runnable {
+
+        private final String gistId;
+
+        private final List<Integer> changes;
+
+        private final List<GistUpdate> updates;
+
+        private final boolean includeGist;
+
+        private final User activeUser;
+
+        private final GistUpdateResult[] results;
+
+        UpdateTask(String gistId, List<Integer> changes, List<GistUpdate> updates, boolean includeGist,
+                User activeUser, GistUpdateResult[] results) {
+            this.gistId = gistId;
+            this.changes = changes;
+            this.updates = updates;
+            this.includeGist = includeGist;
+            this.activeUser = activeUser;
+            this.results = results;
+        }
+
+        @Override
+        public void run() {
+            apply(gistId, changes, updates, includeGist, activeUser, results);
+        }
+    }
+
+}
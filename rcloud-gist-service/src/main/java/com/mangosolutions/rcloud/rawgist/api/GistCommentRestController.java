@@ -15,8 +15,10 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.User;
@@ -24,12 +26,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.mangosolutions.rcloud.rawgist.GistServiceProperties;
 import com.mangosolutions.rcloud.rawgist.model.GistComment;
 import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
 @RestController()
 @RequestMapping(value = "/gists/{gistId}/comments", produces={ 
@@ -45,12 +50,24 @@ public class GistCommentRestController {
 	@Autowired
 	private ControllerUrlResolver resolver;
 
+	@Autowired
+	private GistServiceProperties serviceProperties;
+
 	@RequestMapping(method=RequestMethod.GET)
-	@Cacheable(key="#gistId")
-	public List<GistCommentResponse> getComments(@PathVariable("gistId") String gistId, @AuthenticationPrincipal User activeUser) {
-		List<GistCommentResponse> comments = repository.getComments(gistId, activeUser);
-		this.decorateUrls(comments, gistId, activeUser);
-		return comments;
+	public ResponseEntity<List<GistCommentResponse>> getComments(@PathVariable("gistId") String gistId,
+			@RequestParam(value = "since", required = false) String since,
+			@RequestParam(value = "page", required = false) Integer page,
+			@RequestParam(value = "per_page", required = false) Integer perPage,
+			@AuthenticationPrincipal User activeUser) {
+		ResultPage<GistCommentResponse> comments = repository.getComments(gistId, PagingParameters.getSince(since),
+				PagingParameters.getPage(page), PagingParameters.getPerPage(perPage, serviceProperties), activeUser);
+		this.decorateUrls(comments.getItems(), gistId, activeUser);
+		HttpHeaders headers = new HttpHeaders();
+		String links = resolver.getPageLinks(comments);
+		if(links != null) {
+			headers.set(HttpHeaders.LINK, links);
+		}
+		return new ResponseEntity<>(comments.getItems(), headers, HttpStatus.OK);
 	}
 
 	@RequestMapping(value="/{commentId}", method=RequestMethod.GET)
@@ -64,7 +81,7 @@ public class GistCommentRestController {
 	@RequestMapping(method=RequestMethod.POST)
 	@PreAuthorize(GistRestController.USER_ROLE_AUTHORITY)
 	@ResponseStatus( HttpStatus.CREATED )
-	@CacheEvict(key="#gistId")
+	@CacheEvict(cacheNames="gists", key="#gistId")
 	public GistCommentResponse createComment(@PathVariable("gistId") String gistId, @RequestBody GistComment comment, @AuthenticationPrincipal User activeUser) {
 		GistCommentResponse response = repository.createComment(gistId, comment, activeUser);
 		this.decorateUrls(response, gistId, activeUser);
@@ -73,8 +90,7 @@ public class GistCommentRestController {
 
 	@RequestMapping(value="/{commentId}", method=RequestMethod.PATCH)
 	@PreAuthorize(GistRestController.USER_ROLE_AUTHORITY)
-	@CachePut(key="{#gistId, #commentId}")
-	@Caching(evict = @CacheEvict(key="#gistId"), put = @CachePut(key="{#gistId, #commentId}"))
+	@Caching(put=@CachePut(key="{#gistId, #commentId}"), evict=@CacheEvict(cacheNames="gists", key="#gistId"))
 	public GistCommentResponse editComment(@PathVariable("gistId") String gistId, @PathVariable("commentId") long commentId, @RequestBody GistComment comment, @AuthenticationPrincipal User activeUser) {
 		GistCommentResponse response = repository.editComment(gistId, commentId, comment, activeUser);
 		this.decorateUrls(response, gistId, activeUser);
@@ -84,7 +100,7 @@ public class GistCommentRestController {
 	@RequestMapping(value="/{commentId}", method=RequestMethod.DELETE)
 	@PreAuthorize(GistRestController.USER_ROLE_AUTHORITY)
 	@ResponseStatus( HttpStatus.NO_CONTENT )
-	@Caching(evict = { @CacheEvict(key="#gistId"), @CacheEvict(key="{#gistId, #commentId}") })
+	@Caching(evict={@CacheEvict(key="{#gistId, #commentId}"), @CacheEvict(cacheNames="gists", key="#gistId")})
 	public void deleteComment(@PathVariable("gistId") String gistId, @PathVariable("commentId") long commentId, @AuthenticationPrincipal User activeUser) {
 		repository.deleteComment(gistId, commentId, activeUser);
 	}
@@ -6,22 +6,24 @@
 *******************************************************************************/
 package com.mangosolutions.rcloud.rawgist.api;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -33,15 +35,30 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.mangosolutions.rcloud.rawgist.GistServiceProperties;
+import com.mangosolutions.rcloud.rawgist.model.FileContent;
+import com.mangosolutions.rcloud.rawgist.model.FileContentSource;
 import com.mangosolutions.rcloud.rawgist.model.Fork;
-import com.mangosolutions.rcloud.rawgist.model.GistIdentity;
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+import com.mangosolutions.rcloud.rawgist.model.GistUpdate;
+import com.mangosolutions.rcloud.rawgist.model.GistUpdateResult;
+import com.mangosolutions.rcloud.rawgist.repository.GistFileWriter;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
+import com.mangosolutions.rcloud.rawgist.repository.GistResponseWriter;
+import com.mangosolutions.rcloud.rawgist.repository.GistVersion;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGistFile;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 import com.mangosolutions.rcloud.rawgist.repository.git.CollaborationDataStore;
+import com.mangosolutions.rcloud.rawgist.repository.git.GitGistRepository;
 
 @RestController()
 @RequestMapping(value = "/gists", produces = { MediaType.APPLICATION_JSON_VALUE, "application/vnd.github.beta+json",
@@ -51,20 +68,44 @@ public class GistRestController {
     private final Logger logger = LoggerFactory.getLogger(GistRestController.class);
     public static final String USER_ROLE_AUTHORITY = "hasRole('USER')";
 
+    private static final String RAW_TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+
     @Autowired
     private GistRepositoryService repository;
 
+    @Autowired
+    private CachingGistReader reader;
+
+    @Autowired
+    private GistBatchUpdater batchUpdater;
+
     @Autowired
     private ControllerUrlResolver resolver;
 
     @Autowired
     private CollaborationDataStore collaborationDataStore;
 
+    @Autowired
+    private GistServiceProperties serviceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @RequestMapping(method = RequestMethod.GET)
-    public List<GistResponse> listAllGistsForUser(@AuthenticationPrincipal User activeUser) {
-        List<GistResponse> responses = repository.listGists(activeUser);
-        decorateGistResponse(responses, activeUser);
-        return responses;
+    public ResponseEntity<List<GistResponse>> listAllGistsForUser(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "per_page", required = false) Integer perPage,
+            @AuthenticationPrincipal User activeUser) {
+        ResultPage<GistResponse> responses = repository.listGists(activeUser, PagingParameters.getSince(since),
+                PagingParameters.getPage(page), PagingParameters.getPerPage(perPage, serviceProperties));
+        decorateGistResponse(responses.getItems(), activeUser);
+        HttpHeaders headers = new HttpHeaders();
+        String links = resolver.getPageLinks(responses);
+        if (links != null) {
+            headers.set(HttpHeaders.LINK, links);
+        }
+        return new ResponseEntity<>(responses.getItems(), headers, HttpStatus.OK);
     }
 
     @RequestMapping(value = "/public", method = RequestMethod.GET)
@@ -73,23 +114,129 @@ public class GistRestController {
     }
 
     @RequestMapping(value = "/{gistId}", method = RequestMethod.GET)
-    @Cacheable(value = "gists", key = "#gistId")
-    public GistResponse getGist(@PathVariable("gistId") String gistId, @AuthenticationPrincipal User activeUser) {
-        GistResponse response = repository.getGist(gistId, activeUser);
+    public GistResponse getGist(@PathVariable("gistId") String gistId, WebRequest webRequest,
+            HttpServletResponse servletResponse, @AuthenticationPrincipal User activeUser) {
+        GistVersion version = repository.getGistVersion(gistId, null, activeUser);
+        if (isNotModified(version, webRequest)) {
+            return null;
+        }
+        if (serviceProperties.isStreamResponses()) {
+            writeGist(gistId, null, servletResponse, activeUser);
+            return null;
+        }
+        GistResponse response = reader.getGist(gistId, activeUser);
         decorateGistResponse(response, activeUser);
         return response;
     }
 
+    @RequestMapping(value = "/{gistId}/commits", method = RequestMethod.GET)
+    public ResponseEntity<List<GistHistory>> getCommits(@PathVariable("gistId") String gistId,
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "per_page", required = false) Integer perPage,
+            @AuthenticationPrincipal User activeUser) {
+        ResultPage<GistHistory> commits = repository.getHistory(gistId, PagingParameters.getPage(page),
+                PagingParameters.getPerPage(perPage, serviceProperties), activeUser);
+        for (GistHistory commit : commits.getItems()) {
+            commit.setUrl(resolver.getGistUrl(gistId, commit.getVersion(), activeUser));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        String links = resolver.getPageLinks(commits);
+        if (links != null) {
+            headers.set(HttpHeaders.LINK, links);
+        }
+        return new ResponseEntity<>(commits.getItems(), headers, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "/{gistId}/{commitId}", method = RequestMethod.GET)
-    @Cacheable(value = "gists", key = "{ #gistId, #commitId }")
     public GistResponse getGistAtCommit(@PathVariable("gistId") String gistId,
-            @PathVariable("commitId") String commitId, @AuthenticationPrincipal User activeUser) {
-
-        GistResponse response = repository.getGist(gistId, commitId, activeUser);
+            @PathVariable("commitId") String commitId, WebRequest webRequest,
+            HttpServletResponse servletResponse, @AuthenticationPrincipal User activeUser) {
+        GistVersion version = repository.getGistVersion(gistId, commitId, activeUser);
+        if (isNotModified(version, webRequest)) {
+            return null;
+        }
+        if (serviceProperties.isStreamResponses()) {
+            writeGist(gistId, commitId, servletResponse, activeUser);
+            return null;
+        }
+        GistResponse response = reader.getGist(gistId, commitId, version, activeUser);
         decorateGistResponse(response, activeUser);
         return response;
     }
 
+    private void writeGist(String gistId, String commitId, final HttpServletResponse servletResponse,
+            final User activeUser) {
+        servletResponse.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        repository.writeGist(gistId, commitId, activeUser, new GistResponseWriter() {
+
+            @Override
+            public void write(GistResponse response, FileContentSource contentSource) throws IOException {
+                decorateGistResponse(response, activeUser);
+                objectMapper.writer()
+                    .withAttribute(FileContentSource.class, contentSource)
+                    .writeValue(servletResponse.getOutputStream(), response);
+            }
+
+        });
+    }
+
+    @RequestMapping(value = "/{gistId}/raw/{fileName:.+}", method = RequestMethod.GET, produces = MediaType.ALL_VALUE)
+    public void getRawFile(@PathVariable("gistId") String gistId, @PathVariable("fileName") String fileName,
+            HttpServletResponse response, @AuthenticationPrincipal User activeUser) {
+        this.getRawFileAtCommit(gistId, null, fileName, response, activeUser);
+    }
+
+    @RequestMapping(value = "/{gistId}/{commitId}/raw/{fileName:.+}", method = RequestMethod.GET, produces = MediaType.ALL_VALUE)
+    public void getRawFileAtCommit(@PathVariable("gistId") String gistId, @PathVariable("commitId") String commitId,
+            @PathVariable("fileName") String fileName, final HttpServletResponse response,
+            @AuthenticationPrincipal User activeUser) {
+        repository.writeFile(gistId, commitId, fileName, activeUser, new GistFileWriter() {
+
+            @Override
+            public void write(String fileName, OpenGistFile file) throws IOException {
+                writeRawFile(fileName, file, response);
+            }
+
+        });
+    }
+
+    /**
+     * The file name is chosen by the gist's owner, so the content type is never
+     * derived from it and the content is not rendered by the browser as
+     * anything other than text.
+     */
+    private void writeRawFile(String fileName, OpenGistFile file, HttpServletResponse response) throws IOException {
+        String disposition = "inline";
+        if (GitGistRepository.B64_BINARY_EXTENSION.equals(FilenameUtils.getExtension(fileName))) {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            disposition = "attachment";
+        } else {
+            response.setContentType(RAW_TEXT_CONTENT_TYPE);
+        }
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                disposition + "; filename*=UTF-8''" + encodeFileName(FilenameUtils.getName(fileName)));
+        response.setContentLengthLong(file.getSize());
+        file.write(response.getOutputStream());
+    }
+
+    /**
+     * Percent encodes the file name as an RFC 5987 header value.
+     */
+    private String encodeFileName(String fileName) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : fileName.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "!#$&+-.^_`|~".indexOf(c) >= 0) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", (int) c));
+            }
+        }
+        return encoded.toString();
+    }
+
     @RequestMapping(method = RequestMethod.POST)
     @PreAuthorize(USER_ROLE_AUTHORITY)
     @ResponseStatus(HttpStatus.CREATED)
@@ -163,6 +310,25 @@ public class GistRestController {
         return response;
     }
 
+    /**
+     * Applies changes to many gists in one request, each change is reported
+     * with its own status. The updated gists are left out of the results when
+     * <code>include_gist</code> is false.
+     */
+    @RequestMapping(method = RequestMethod.PATCH)
+    @PreAuthorize(USER_ROLE_AUTHORITY)
+    public List<GistUpdateResult> editGists(@RequestBody List<GistUpdate> updates,
+            @RequestParam(value = "include_gist", required = false, defaultValue = "true") boolean includeGist,
+            @AuthenticationPrincipal User activeUser) {
+        List<GistUpdateResult> results = batchUpdater.update(updates, includeGist, activeUser);
+        for (GistUpdateResult result : results) {
+            if (result.getGist() != null) {
+                decorateGistResponse(result.getGist(), activeUser);
+            }
+        }
+        return results;
+    }
+
     @RequestMapping(value = "/{gistId}", method = RequestMethod.DELETE)
     @PreAuthorize(USER_ROLE_AUTHORITY)
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -171,6 +337,22 @@ public class GistRestController {
         repository.deleteGist(gistId, activeUser);
     }
 
+    private boolean isNotModified(GistVersion version, WebRequest webRequest) {
+        return webRequest != null && webRequest.checkNotModified(getETag(version), version.getLastModified());
+    }
+
+    /**
+     * The owner's collaborators are added to the gist when it is served and
+     * change when the configuration is refreshed, so they are part of the ETag.
+     */
+    private String getETag(GistVersion version) {
+        Collection<String> collaborators = collaborationDataStore.getCollaborators(version.getOwner());
+        if (collaborators.isEmpty()) {
+            return version.getETag();
+        }
+        return Hashing.sha1().hashString(version.getETag() + '|' + collaborators, StandardCharsets.UTF_8).toString();
+    }
+
     private void decorateGistResponse(Collection<GistResponse> gistResponses, User activeUser) {
         if (gistResponses != null) {
             for (GistResponse gistResponse : gistResponses) {
@@ -184,6 +366,7 @@ public class GistRestController {
             gistResponse.setUrl(resolver.getGistUrl(gistResponse.getId(), activeUser));
             gistResponse.setCommentsUrl(resolver.getCommentsUrl(gistResponse.getId(), activeUser));
             gistResponse.setForksUrl(resolver.getForksUrl(gistResponse.getId(), activeUser));
+            this.decorateFiles(gistResponse, activeUser);
             if (gistResponse.getForkOf() != null) {
                 Fork forkOf = gistResponse.getForkOf();
                 String url = resolver.getGistUrl(forkOf.getId(), activeUser);
@@ -193,6 +376,19 @@ public class GistRestController {
         }
     }
 
+    private void decorateFiles(GistResponse gistResponse, User activeUser) {
+        if (gistResponse.getFiles() != null) {
+            String commitId = null;
+            List<GistHistory> history = gistResponse.getHistory();
+            if (history != null && !history.isEmpty()) {
+                commitId = history.get(0).getVersion();
+            }
+            for (FileContent file : gistResponse.getFiles().values()) {
+                file.setRawUrl(resolver.getRawUrl(gistResponse.getId(), commitId, file.getFilename(), activeUser));
+            }
+        }
+    }
+
     private void decorateForksResponse(List<Fork> forks, User activeUser) {
         for (Fork fork : forks) {
             String forkUrl = resolver.getGistUrl(fork.getId(), activeUser);
@@ -202,15 +398,8 @@ public class GistRestController {
 
     private void decorateCollaborators(GistResponse gistResponse) {
         if (gistResponse.getOwner() != null && StringUtils.isNotBlank(gistResponse.getOwner().getLogin())) {
-            Collection<String> collaboratorNames = collaborationDataStore
-                    .getCollaborators(gistResponse.getOwner().getLogin());
-            Collection<GistIdentity> collaboratorIdentities = new LinkedList<>();
-            for (String collaboratorName : collaboratorNames) {
-                GistIdentity collaboratorIdentity = new GistIdentity();
-                collaboratorIdentity.setLogin(collaboratorName);
-                collaboratorIdentities.add(collaboratorIdentity);
-            }
-            gistResponse.setCollaborators(collaboratorIdentities);
+            gistResponse.setCollaborators(
+                    collaborationDataStore.getCollaboratorIdentities(gistResponse.getOwner().getLogin()));
         }
     }
 
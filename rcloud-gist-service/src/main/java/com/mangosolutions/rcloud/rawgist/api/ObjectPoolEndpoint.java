@@ -0,0 +1,65 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.api;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.mvc.AbstractMvcEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.ObjectPoolCompactor;
+import com.mangosolutions.rcloud.rawgist.repository.git.SharedObjectPool;
+
+/**
+ * Management endpoint for the shared object pool, <code>GET</code> returns the
+ * progress of the last migration of existing gists into the pool and
+ * <code>POST /compact</code> starts a new one.
+ */
+@Component
+public class ObjectPoolEndpoint extends AbstractMvcEndpoint {
+
+    @Autowired
+    private SharedObjectPool objectPool;
+
+    @Autowired
+    private ObjectPoolCompactor compactor;
+
+    public ObjectPoolEndpoint() {
+        super("/objectpool", true);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Map<String, Object> status() {
+        return getStatus();
+    }
+
+    @RequestMapping(value = "/compact", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> compact() {
+        if (!objectPool.isEnabled()) {
+            return new ResponseEntity<>(getStatus(), HttpStatus.NOT_FOUND);
+        }
+        HttpStatus status = compactor.start() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return new ResponseEntity<>(getStatus(), status);
+    }
+
+    private Map<String, Object> getStatus() {
+        Map<String, Object> status = compactor.getStatus();
+        status.put("enabled", objectPool.isEnabled());
+        status.put("pool", objectPool.getPoolFolder().getAbsolutePath());
+        return status;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.api;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.mangosolutions.rcloud.rawgist.GistServiceProperties;
+import com.mangosolutions.rcloud.rawgist.repository.GistError;
+import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryException;
+
+/**
+ * Reads the github style <code>since</code>, <code>page</code> and
+ * <code>per_page</code> request parameters of the paged listings.
+ */
+final class PagingParameters {
+
+    private PagingParameters() {
+    }
+
+    static DateTime getSince(String since) {
+        if (StringUtils.isBlank(since)) {
+            return null;
+        }
+        try {
+            return ISODateTimeFormat.dateTimeParser().parseDateTime(since);
+        } catch (IllegalArgumentException e) {
+            GistError error = new GistError(GistErrorCode.ERR_INVALID_PARAMETER,
+                    "The since parameter {} is not an ISO 8601 timestamp", since);
+            throw new GistRepositoryException(error, e);
+        }
+    }
+
+    static int getPage(Integer page) {
+        return page == null || page < 1 ? 1 : page;
+    }
+
+    static int getPerPage(Integer perPage, GistServiceProperties serviceProperties) {
+        if (perPage == null || perPage < 1) {
+            return serviceProperties.getPageSize();
+        }
+        return Math.min(perPage, serviceProperties.getMaxPageSize());
+    }
+
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.api;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryMaintenanceScheduler;
+
+/**
+ * Management endpoint showing the repository maintenance settings, the number
+ * of gists waiting to be maintained and what the most recent runs did.
+ */
+@Component
+public class RepositoryMaintenanceEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+    @Autowired
+    private RepositoryMaintenanceScheduler scheduler;
+
+    public RepositoryMaintenanceEndpoint() {
+        super("maintenance");
+    }
+
+    @Override
+    public Map<String, Object> invoke() {
+        return scheduler.getStatus();
+    }
+
+}
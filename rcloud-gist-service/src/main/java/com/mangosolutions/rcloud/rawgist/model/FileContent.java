@@ -15,6 +15,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 @JsonInclude(JsonInclude.Include.ALWAYS)
 @JsonPropertyOrder({
@@ -108,6 +109,7 @@ public class FileContent implements Serializable
     }
 
     @JsonProperty("content")
+    @JsonSerialize(nullsUsing = FileContentSerializer.class)
     public String getContent() {
         return content;
     }
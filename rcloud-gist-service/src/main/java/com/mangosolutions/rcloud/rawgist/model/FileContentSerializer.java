@@ -0,0 +1,74 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.model;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Writes the content of a {@link FileContent} that holds no content from the
+ * {@link FileContentSource} set as an attribute of the writer, escaping it a
+ * buffer at a time so the content is never held in memory as a whole. Writes
+ * null when there is no source or the source has no content for the file.
+ */
+public class FileContentSerializer extends JsonSerializer<Object> {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	@Override
+	public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		Object source = provider.getAttribute(FileContentSource.class);
+		Object file = gen.getCurrentValue();
+		Reader reader = null;
+		if (source instanceof FileContentSource && file instanceof FileContent) {
+			reader = ((FileContentSource) source).openContent((FileContent) file);
+		}
+		if (reader == null) {
+			gen.writeNull();
+			return;
+		}
+		try {
+			writeString(reader, gen);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void writeString(Reader reader, JsonGenerator gen) throws IOException {
+		JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+		char[] buffer = new char[BUFFER_SIZE];
+		int pending = 0;
+		int read;
+		gen.writeRawValue("\"");
+		while ((read = reader.read(buffer, pending, buffer.length - pending)) != -1) {
+			int length = pending + read;
+			// a surrogate pair must not be split between two raw writes
+			int end = Character.isHighSurrogate(buffer[length - 1]) ? length - 1 : length;
+			writeEscaped(encoder, buffer, end, gen);
+			pending = length - end;
+			if (pending > 0) {
+				buffer[0] = buffer[end];
+			}
+		}
+		writeEscaped(encoder, buffer, pending, gen);
+		gen.writeRaw('"');
+	}
+
+	private void writeEscaped(JsonStringEncoder encoder, char[] buffer, int length, JsonGenerator gen)
+			throws IOException {
+		if (length > 0) {
+			char[] escaped = encoder.quoteAsString(new String(buffer, 0, length));
+			gen.writeRaw(escaped, 0, escaped.length);
+		}
+	}
+
+}
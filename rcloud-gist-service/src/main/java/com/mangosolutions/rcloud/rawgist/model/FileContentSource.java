@@ -0,0 +1,25 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.model;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Supplies the content of files that are not held in their
+ * {@link FileContent} while a response is written. Passed to the writer as an
+ * attribute keyed by this class, see {@link FileContentSerializer}.
+ */
+public interface FileContentSource {
+
+	/**
+	 * @return a reader of the content of the file or null if the file has no
+	 *         content to stream.
+	 */
+	Reader openContent(FileContent file) throws IOException;
+
+}
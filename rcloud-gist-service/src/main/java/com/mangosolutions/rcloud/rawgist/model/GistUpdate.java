@@ -0,0 +1,51 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * One change of a batch update, the id of the gist and the request to apply
+ * to it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({ "id", "gist" })
+public class GistUpdate implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@JsonProperty("id")
+	private String id;
+
+	@JsonProperty("gist")
+	private GistRequest gist;
+
+	@JsonProperty("id")
+	public String getId() {
+		return id;
+	}
+
+	@JsonProperty("id")
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	@JsonProperty("gist")
+	public GistRequest getGist() {
+		return gist;
+	}
+
+	@JsonProperty("gist")
+	public void setGist(GistRequest gist) {
+		this.gist = gist;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The outcome of one change of a batch update. The status is the http status
+ * the change would have had as a single request, a failed change has the code
+ * and message of its error and a successful change has the updated gist unless
+ * it was not asked for.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({ "id", "status", "error", "message", "gist" })
+public class GistUpdateResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@JsonProperty("id")
+	private String id;
+
+	@JsonProperty("status")
+	private int status;
+
+	@JsonProperty("error")
+	private String error;
+
+	@JsonProperty("message")
+	private String message;
+
+	@JsonProperty("gist")
+	private GistResponse gist;
+
+	public GistUpdateResult() {
+	}
+
+	public GistUpdateResult(String id, int status) {
+		this.id = id;
+		this.status = status;
+	}
+
+	@JsonProperty("id")
+	public String getId() {
+		return id;
+	}
+
+	@JsonProperty("id")
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	@JsonProperty("status")
+	public int getStatus() {
+		return status;
+	}
+
+	@JsonProperty("status")
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	@JsonProperty("error")
+	public String getError() {
+		return error;
+	}
+
+	@JsonProperty("error")
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	@JsonProperty("message")
+	public String getMessage() {
+		return message;
+	}
+
+	@JsonProperty("message")
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	@JsonProperty("gist")
+	public GistResponse getGist() {
+		return gist;
+	}
+
+	@JsonProperty("gist")
+	public void setGist(GistResponse gist) {
+		this.gist = gist;
+	}
+
+}
@@ -0,0 +1,22 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+
+/**
+ * Receives the outcome of each change applied to a gist by
+ * {@link GistRepositoryService#editGist(String, java.util.List, boolean, org.springframework.security.core.userdetails.UserDetails, GistChangeListener)},
+ * the changes are identified by their index in the list of changes.
+ */
+public interface GistChangeListener {
+
+	void applied(int index, GistResponse response);
+
+	void failed(int index, RuntimeException e);
+
+}
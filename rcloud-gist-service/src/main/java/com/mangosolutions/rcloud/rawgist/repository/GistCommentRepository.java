@@ -6,8 +6,7 @@
 *******************************************************************************/
 package com.mangosolutions.rcloud.rawgist.repository;
 
-import java.util.List;
-
+import org.joda.time.DateTime;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.mangosolutions.rcloud.rawgist.model.GistComment;
@@ -15,10 +14,14 @@ import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
 
 public interface GistCommentRepository {
 
-	List<GistCommentResponse> getComments(UserDetails userDetails);
+	ResultPage<GistCommentResponse> getComments(DateTime since, int page, int perPage, UserDetails userDetails);
 
 	GistCommentResponse getComment(long commentId, UserDetails userDetails);
 
+	int getCommentCount(UserDetails userDetails);
+
+	String getCommentsVersion(UserDetails userDetails);
+
 	GistCommentResponse createComment(GistComment comment, UserDetails user);
 
 	GistCommentResponse editComment(long commentId, GistComment comment, UserDetails user);
@@ -12,12 +12,16 @@ public enum GistErrorCode {
 	ERR_METADATA_NOT_WRITEABLE,
 	ERR_COMMENTS_NOT_READABLE,
 	ERR_COMMENTS_NOT_WRITEABLE,
+	ERR_CATALOG_NOT_READABLE,
+	ERR_CATALOG_NOT_WRITEABLE,
 	ERR_GIST_UPDATE_FAILURE,
 	ERR_GIST_FORK_FAILURE,
 	ERR_GIST_CONTENT_NOT_READABLE,
 	ERR_GIST_CONTENT_NOT_AVAILABLE,
 	ERR_GIST_NOT_EXIST,
 	ERR_COMMENT_NOT_EXIST,
+	ERR_FILE_NOT_EXIST,
+	ERR_INVALID_PARAMETER,
 	FATAL_GIST_INITIALISATION,
 	ERR_ACL_WRITE_DENIED,
 	ERR_ACL_CREATE_DENIED,
@@ -0,0 +1,19 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.IOException;
+
+/**
+ * Writes a file of a gist while it is still open, the size of the file is
+ * known before its content is written.
+ */
+public interface GistFileWriter {
+
+	void write(String fileName, OpenGistFile file) throws IOException;
+
+}
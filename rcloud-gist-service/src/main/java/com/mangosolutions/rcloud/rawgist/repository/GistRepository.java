@@ -10,6 +10,7 @@ import java.io.File;
 
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
 import com.mangosolutions.rcloud.rawgist.repository.git.GistMetadata;
@@ -24,10 +25,26 @@ public interface GistRepository {
 
 	GistResponse readGist(String commitId, UserDetails userDetails);
 
+	GistResponse readGistSummary(UserDetails userDetails);
+
+	ResultPage<GistHistory> readHistory(int page, int perPage, UserDetails userDetails);
+
+	OpenGist openGist(String commitId, UserDetails userDetails);
+
+	OpenGistFile openFile(String commitId, String fileName, UserDetails userDetails);
+
+	GistVersion readVersion(String commitId, UserDetails userDetails);
+
 	GistResponse createGist(GistRequest request, String gistId, UserDetails userDetails);
 
 	GistResponse updateGist(GistRequest request, UserDetails userDetails);
 
+	/**
+	 * Updates the gist, only reading the updated gist when readResponse is
+	 * true, otherwise null is returned.
+	 */
+	GistResponse updateGist(GistRequest request, UserDetails userDetails, boolean readResponse);
+
 	GistResponse forkGist(GistRepository forkedRepository, String gistId, UserDetails userDetails);
 
 	String getId();
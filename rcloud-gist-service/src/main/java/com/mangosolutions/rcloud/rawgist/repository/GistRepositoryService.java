@@ -8,30 +8,50 @@ package com.mangosolutions.rcloud.rawgist.repository;
 
 import java.util.List;
 
+import org.joda.time.DateTime;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.mangosolutions.rcloud.rawgist.model.Fork;
 import com.mangosolutions.rcloud.rawgist.model.GistComment;
 import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
 
 public interface GistRepositoryService {
 
-	public List<GistResponse> listGists(UserDetails activeUser);
+	public ResultPage<GistResponse> listGists(UserDetails activeUser, DateTime since, int page, int perPage);
 
 	public GistResponse getGist(String gistId, UserDetails activeUser);
 
 	public GistResponse getGist(String gistId, String commitId, UserDetails activeUser);
 
+	public ResultPage<GistHistory> getHistory(String gistId, int page, int perPage, UserDetails activeUser);
+
+	public void writeGist(String gistId, String commitId, UserDetails activeUser, GistResponseWriter writer);
+
+	public void writeFile(String gistId, String commitId, String fileName, UserDetails activeUser, GistFileWriter writer);
+
+	public GistVersion getGistVersion(String gistId, String commitId, UserDetails activeUser);
+
 	public GistResponse createGist(GistRequest request, UserDetails user);
 
 	public GistResponse editGist(String gistId, GistRequest request, UserDetails activeUser);
 
+	public GistResponse editGist(String gistId, GistRequest request, boolean readResponse, UserDetails activeUser);
+
+	/**
+	 * Applies the changes to the gist in order under a single acquisition of
+	 * its lock. A change that fails does not stop the changes after it.
+	 */
+	public void editGist(String gistId, List<GistRequest> requests, boolean readResponse, UserDetails activeUser,
+			GistChangeListener listener);
+
 	public void deleteGist(String gistId, UserDetails activeUser);
 
-	public List<GistCommentResponse> getComments(String gistId, UserDetails activeUser);
+	public ResultPage<GistCommentResponse> getComments(String gistId, DateTime since, int page, int perPage,
+			UserDetails activeUser);
 
 	public GistCommentResponse getComment(String gistId, long commentId, UserDetails activeUser);
 
@@ -0,0 +1,22 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.IOException;
+
+import com.mangosolutions.rcloud.rawgist.model.FileContentSource;
+import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+
+/**
+ * Writes a gist response while the gist is still open, files without content
+ * in the response are read from the content source as they are written.
+ */
+public interface GistResponseWriter {
+
+	void write(GistResponse response, FileContentSource contentSource) throws IOException;
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.Serializable;
+
+/**
+ * Identifies the state of a gist as returned by a read, so that clients can
+ * revalidate a gist they hold without it being read again.
+ */
+public class GistVersion implements Serializable {
+
+	private static final long serialVersionUID = 2870375862251520837L;
+
+	private final String etag;
+
+	private final long lastModified;
+
+	private final String owner;
+
+	public GistVersion(String etag, long lastModified, String owner) {
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.owner = owner;
+	}
+
+	public String getETag() {
+		return etag;
+	}
+
+	/**
+	 * @return the time of the last change in milliseconds since the epoch, or
+	 *         -1 if it is not known.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the owner of the gist, whose collaborators are added to the gist
+	 *         when it is served.
+	 */
+	public String getOwner() {
+		return owner;
+	}
+
+	@Override
+	public String toString() {
+		return "GistVersion [etag=" + etag + ", lastModified=" + lastModified + ", owner=" + owner + "]";
+	}
+
+}
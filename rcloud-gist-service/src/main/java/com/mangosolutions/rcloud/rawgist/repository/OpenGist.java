@@ -0,0 +1,22 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+/**
+ * A gist read at a commit whose file content is written later, from the git
+ * objects of the commit. Git objects do not change, so the gist can be written
+ * after the lock it was read under is released. The gist's repository is held
+ * open until the gist is closed.
+ */
+public interface OpenGist extends AutoCloseable {
+
+	void write(GistResponseWriter writer);
+
+	@Override
+	void close();
+
+}
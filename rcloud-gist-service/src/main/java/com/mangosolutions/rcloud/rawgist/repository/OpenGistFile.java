@@ -0,0 +1,29 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.OutputStream;
+
+/**
+ * A file of a gist resolved to its git object, which is written later. Git
+ * objects do not change, so the file can be written after the lock it was
+ * resolved under is released. The gist's repository is held open until the
+ * file is closed.
+ */
+public interface OpenGistFile extends AutoCloseable {
+
+	long getSize();
+
+	/**
+	 * @return the number of bytes written.
+	 */
+	long write(OutputStream out);
+
+	@Override
+	void close();
+
+}
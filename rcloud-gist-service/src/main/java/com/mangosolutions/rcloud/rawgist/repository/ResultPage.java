@@ -0,0 +1,73 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single page of a larger result set. Pages are numbered from 1 in line
+ * with the github api.
+ */
+public class ResultPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 4393167624830117165L;
+
+    private final List<T> items;
+
+    private final int page;
+
+    private final int perPage;
+
+    private final int totalItems;
+
+    public ResultPage(List<T> items, int page, int perPage, int totalItems) {
+        this.items = items;
+        this.page = page;
+        this.perPage = perPage;
+        this.totalItems = totalItems;
+    }
+
+    /**
+     * Selects the requested page from a list holding the complete result set.
+     */
+    public static <T> ResultPage<T> of(List<T> allItems, int page, int perPage) {
+        int from = (int) Math.min((long) (page - 1) * perPage, allItems.size());
+        int to = (int) Math.min((long) from + perPage, allItems.size());
+        return new ResultPage<T>(new ArrayList<T>(allItems.subList(from, to)), page, perPage, allItems.size());
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public int getLastPage() {
+        return Math.max(1, (totalItems + perPage - 1) / perPage);
+    }
+
+    public boolean hasNext() {
+        return page < getLastPage();
+    }
+
+    public boolean hasPrevious() {
+        return page > 1;
+    }
+
+}
@@ -60,6 +60,8 @@ import org.eclipse.jgit.treewalk.TreeWalk.OperationType;
 import org.eclipse.jgit.treewalk.WorkingTreeOptions;
 import org.eclipse.jgit.util.ChangeIdUtil;
 
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
+
 /**
  * Commits changes to a a bare git repository. This is
  * based upon the JGit CommitCommand
@@ -104,13 +106,30 @@ public class BareCommitCommand extends GitCommand<RevCommit> {
 
 	public File workingFolder;
 
+	private GistHistoryIndex historyIndex;
+
+	private GistHistory historyEntry;
+
+	private final boolean inCore;
+
 	/**
 	 * @param repo the git repository
 	 * @param index the index file to use for the commit
 	 */
 	protected BareCommitCommand(Repository repo, DirCache index) {
+		this(repo, index, false);
+	}
+
+	/**
+	 * @param repo the git repository
+	 * @param index the index to use for the commit
+	 * @param inCore true if the index has no backing file and so is not
+	 *            locked while committing
+	 */
+	protected BareCommitCommand(Repository repo, DirCache index, boolean inCore) {
 		super(repo);
 		this.index = index;
+		this.inCore = inCore;
 	}
 
 	/**
@@ -194,7 +213,9 @@ public class BareCommitCommand extends GitCommand<RevCommit> {
 
 			// lock the index
 //			DirCache index = repo.lockDirCache();
-			index.lock();
+			if (!inCore) {
+				index.lock();
+			}
 			try (ObjectInserter odi = repo.newObjectInserter()) {
 				if (!only.isEmpty())
 					index = createTemporaryIndex(headId, index, rw);
@@ -263,6 +284,9 @@ public class BareCommitCommand extends GitCommand<RevCommit> {
 						repo.writeMergeCommitMsg(null);
 						repo.writeRevertHead(null);
 					}
+					if (historyIndex != null) {
+						historyEntry = historyIndex.append(repo, revCommit);
+					}
 					return revCommit;
 				}
 				case REJECTED:
@@ -275,7 +299,9 @@ public class BareCommitCommand extends GitCommand<RevCommit> {
 							commitId.toString(), rc));
 				}
 			} finally {
-				index.unlock();
+				if (!inCore) {
+					index.unlock();
+				}
 			}
 		} catch (UnmergedPathException e) {
 			throw new UnmergedPathsException(e);
@@ -837,4 +863,22 @@ public class BareCommitCommand extends GitCommand<RevCommit> {
 		return this;
 	}
 
+	/**
+	 * @param historyIndex
+	 *            the history index of the gist the new commit is appended to,
+	 *            or null to leave the history index as it is.
+	 * @return {@code this}
+	 */
+	public BareCommitCommand setHistoryIndex(GistHistoryIndex historyIndex) {
+		this.historyIndex = historyIndex;
+		return this;
+	}
+
+	/**
+	 * @return the history entry of the commit made by this command,
+	 *         or null if there was no history index or nothing was committed
+	 */
+	public GistHistory getHistoryEntry() {
+		return historyEntry;
+	}
 }
@@ -0,0 +1,21 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.List;
+
+public interface CatalogStore {
+
+    GistCatalogEntry load(String gistId);
+
+    List<GistCatalogEntry> findByOwner(String owner);
+
+    void save(GistMetadata metadata);
+
+    void remove(String gistId);
+
+}
@@ -1,37 +1,46 @@
 package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
+import com.mangosolutions.rcloud.rawgist.model.GistIdentity;
+
+/**
+ * Holds the {@link CollaborationIndex} of the configured collaborations. The
+ * index is replaced as a whole when the collaborations are updated, so that a
+ * lookup sees either the old or the new collaborations and never copies them.
+ */
 public class CollaborationDataStore {
 
-    private Map<String, List<String>> collaborators = new HashMap<>();
+    private volatile CollaborationIndex index = CollaborationIndex.EMPTY;
 
     public CollaborationDataStore() {
 
     }
 
     public CollaborationDataStore(Map<String, List<String>> collaborators) {
-        this.collaborators = collaborators;
+        this.index = new CollaborationIndex(collaborators);
     }
 
     public Collection<String> getCollaborators(String user) {
-        if (collaborators.containsKey(user) && collaborators.get(user) != null) {
-            return new LinkedHashSet<>(collaborators.get(user));
-        } else {
-            return Collections.emptySet();
-        }
+        return index.getCollaborators(user);
+    }
+
+    public boolean isCollaborator(String owner, String user) {
+        return index.isCollaborator(owner, user);
     }
-    
+
+    /**
+     * The shared identities of the owner's collaborators, see
+     * {@link CollaborationIndex#getCollaboratorIdentities(String)}.
+     */
+    public List<GistIdentity> getCollaboratorIdentities(String owner) {
+        return index.getCollaboratorIdentities(owner);
+    }
+
     public void updateCollaborators(Map<String, List<String>> collaborators) {
-        this.collaborators.clear();
-        for(Map.Entry<String, List<String>> entry: collaborators.entrySet()) {
-            this.collaborators.put(entry.getKey(), entry.getValue());
-        }
+        this.index = new CollaborationIndex(collaborators);
     }
 
 }
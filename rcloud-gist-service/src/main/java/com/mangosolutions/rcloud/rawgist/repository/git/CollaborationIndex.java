@@ -0,0 +1,83 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mangosolutions.rcloud.rawgist.model.GistIdentity;
+
+/**
+ * An immutable index of the collaborators of each gist owner. Everything is
+ * computed when the index is built so that lookups do not copy or allocate,
+ * the returned collections are shared and cannot be modified.
+ */
+public final class CollaborationIndex {
+
+    public static final CollaborationIndex EMPTY = new CollaborationIndex(
+            Collections.<String, List<String>>emptyMap());
+
+    private final Map<String, Set<String>> collaborators;
+
+    private final Map<String, List<GistIdentity>> identities;
+
+    public CollaborationIndex(Map<String, List<String>> collaborations) {
+        Map<String, Set<String>> collaborators = new HashMap<>();
+        Map<String, List<GistIdentity>> identities = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : collaborations.entrySet()) {
+            String owner = entry.getKey();
+            if (owner == null || entry.getValue() == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+            Set<String> names = new LinkedHashSet<>(entry.getValue());
+            List<GistIdentity> ownerIdentities = new ArrayList<>(names.size());
+            for (String name : names) {
+                GistIdentity identity = new GistIdentity();
+                identity.setLogin(name);
+                ownerIdentities.add(identity);
+            }
+            collaborators.put(owner, Collections.unmodifiableSet(names));
+            identities.put(owner, Collections.unmodifiableList(ownerIdentities));
+        }
+        this.collaborators = collaborators;
+        this.identities = identities;
+    }
+
+    /**
+     * The collaborators of the owner in the order they were configured.
+     */
+    public Set<String> getCollaborators(String owner) {
+        Set<String> names = collaborators.get(owner);
+        return names == null ? Collections.<String>emptySet() : names;
+    }
+
+    public boolean isCollaborator(String owner, String user) {
+        Set<String> names = collaborators.get(owner);
+        return names != null && names.contains(user);
+    }
+
+    /**
+     * The collaborators of the owner as they are included in gists. The
+     * identities are shared by every gist of the owner and must not be
+     * changed, copy an identity to change it for a single gist.
+     */
+    public List<GistIdentity> getCollaboratorIdentities(String owner) {
+        List<GistIdentity> ownerIdentities = identities.get(owner);
+        return ownerIdentities == null ? Collections.<GistIdentity>emptyList() : ownerIdentities;
+    }
+
+    @Override
+    public String toString() {
+        return "CollaborationIndex [collaborators=" + collaborators + "]";
+    }
+
+}
@@ -0,0 +1,642 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ObjectUtils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
+
+/**
+ * The comments of a gist held as an append only journal, one JSON record per
+ * line. Each record holds the latest version of a comment or marks it as
+ * deleted, and an index of the position of the latest record of each comment
+ * is kept, along with its update time, so that a comment or a page of
+ * comments is read without reading the rest of the journal.
+ * <p>
+ * Changes must be made whilst holding the write lock of the gist. Before each
+ * operation any records appended by another node are read, and the journal is
+ * read in full if it has been replaced by a compaction. The journal is
+ * compacted once it holds more than twice as many records as live comments,
+ * and each compaction starts the journal with a record of its generation. A
+ * <code>comments.json</code> file written by an earlier version is migrated
+ * into the journal the first time it is read.
+ * <p>
+ * The number of comments and the version are also written to a summary file
+ * after each change, so that they are known without reading the journal when
+ * its index is not held. The summary is only used while it matches the length
+ * and generation of the journal, otherwise the journal is read and the summary
+ * written again.
+ */
+public class CommentJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommentJournal.class);
+
+	private static final int MIN_COMPACTION_RECORDS = 64;
+
+	private static final String SUMMARY_EXTENSION = ".summary";
+
+	private static final byte[] GENERATION_PREFIX = "{\"generation\":".getBytes(StandardCharsets.UTF_8);
+
+	private static final int MAX_GENERATION_RECORD_LENGTH = 64;
+
+	private static final TypeReference<List<GistCommentResponse>> COMMENT_LIST = new TypeReference<List<GistCommentResponse>>() {
+	};
+
+	private final File journalFile;
+
+	private final File legacyFile;
+
+	private final File summaryFile;
+
+	private final ObjectMapper objectMapper;
+
+	private final TreeMap<Long, RecordPosition> positions = new TreeMap<>();
+
+	private long lastId = 0;
+
+	private long generation = 0;
+
+	private Object journalKey;
+
+	private long journalOffset = 0;
+
+	private int journalRecords = 0;
+
+	public CommentJournal(File journalFile, File legacyFile, ObjectMapper objectMapper) {
+		this.journalFile = journalFile;
+		this.legacyFile = legacyFile;
+		this.summaryFile = new File(journalFile.getParentFile(), journalFile.getName() + SUMMARY_EXTENSION);
+		this.objectMapper = objectMapper;
+	}
+
+	public File getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * Returns the comment, or null if there is no comment with the id.
+	 */
+	public synchronized GistCommentResponse read(long commentId) throws IOException {
+		refresh();
+		RecordPosition position = positions.get(commentId);
+		if (position == null) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+			return readRecord(channel, position).getComment();
+		}
+	}
+
+	/**
+	 * Returns a page of the comments updated at or after the given time, in
+	 * the order of their ids. The comments are selected from the index and
+	 * only the comments on the page are read.
+	 *
+	 * @param since
+	 *            may be null to select all the comments.
+	 */
+	public synchronized ResultPage<GistCommentResponse> readPage(DateTime since, int page, int perPage)
+			throws IOException {
+		refresh();
+		long sinceMillis = since == null ? Long.MIN_VALUE : since.getMillis();
+		long first = (long) (page - 1) * perPage;
+		List<RecordPosition> selected = new ArrayList<>();
+		int total = 0;
+		for (RecordPosition position : positions.values()) {
+			if (position.updatedAt >= sinceMillis) {
+				if (total >= first && selected.size() < perPage) {
+					selected.add(position);
+				}
+				total++;
+			}
+		}
+		List<GistCommentResponse> comments = new ArrayList<>(selected.size());
+		if (!selected.isEmpty()) {
+			try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+				for (RecordPosition position : selected) {
+					comments.add(readRecord(channel, position).getComment());
+				}
+			}
+		}
+		return new ResultPage<>(comments, page, perPage, total);
+	}
+
+	/**
+	 * Returns the number of comments, from the index or the summary.
+	 */
+	public synchronized int count() throws IOException {
+		return summarize().getCount();
+	}
+
+	/**
+	 * Returns a version of the comments, which changes with every change to a
+	 * comment and is never repeated. The journal is only appended to between
+	 * compactions, so the version is the generation of the journal and its
+	 * length.
+	 */
+	public synchronized String version() throws IOException {
+		JournalSummary summary = summarize();
+		return summary.getGeneration() + ":" + summary.getOffset();
+	}
+
+	/**
+	 * Summarizes the journal from the index if it is up to date, then from the
+	 * summary file if it matches the journal, and otherwise reads the journal
+	 * and writes the summary file again.
+	 */
+	private JournalSummary summarize() throws IOException {
+		if (journalFile.exists() && !isIndexCurrent()) {
+			JournalSummary summary = readSummary();
+			if (summary != null) {
+				return summary;
+			}
+			refresh();
+			writeSummary();
+		} else {
+			refresh();
+		}
+		return JournalSummary.of(generation, journalOffset, positions.size());
+	}
+
+	private boolean isIndexCurrent() throws IOException {
+		return journalKey != null && journalFile.length() == journalOffset
+				&& ObjectUtils.nullSafeEquals(getFileKey(journalFile), journalKey);
+	}
+
+	private JournalSummary readSummary() throws IOException {
+		JournalSummary summary;
+		try {
+			summary = objectMapper.readValue(summaryFile, JournalSummary.class);
+		} catch (FileNotFoundException e) {
+			return null;
+		} catch (IOException e) {
+			logger.warn("Ignoring unreadable comment journal summary {}", summaryFile, e);
+			return null;
+		}
+		if (summary.getOffset() != journalFile.length() || summary.getGeneration() != readGeneration()) {
+			return null;
+		}
+		return summary;
+	}
+
+	/**
+	 * Reads the generation from the record a compaction starts the journal
+	 * with, a journal that has not been compacted has no generation record.
+	 */
+	private long readGeneration() throws IOException {
+		byte[] head = new byte[MAX_GENERATION_RECORD_LENGTH];
+		int length = 0;
+		try (InputStream in = new FileInputStream(journalFile)) {
+			int read;
+			while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+				length += read;
+			}
+		}
+		for (int i = 0; i < GENERATION_PREFIX.length; i++) {
+			if (i >= length || head[i] != GENERATION_PREFIX[i]) {
+				return 0;
+			}
+		}
+		for (int i = GENERATION_PREFIX.length; i < length; i++) {
+			if (head[i] == '\n') {
+				return objectMapper.readValue(head, 0, i, JournalRecord.class).getGeneration();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes the summary of the index, a summary that cannot be written is
+	 * rebuilt from the journal when it is next needed.
+	 */
+	private void writeSummary() {
+		try {
+			File summaryTempFile = File.createTempFile("comments", ".tmp", summaryFile.getParentFile());
+			try {
+				objectMapper.writeValue(summaryTempFile, JournalSummary.of(generation, journalOffset, positions.size()));
+				Files.move(summaryTempFile.toPath(), summaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(summaryTempFile.toPath());
+			}
+		} catch (IOException e) {
+			logger.warn("Could not write the comment journal summary {}", summaryFile, e);
+		}
+	}
+
+	/**
+	 * Appends the comment to the journal, a comment without an id is given the
+	 * next one.
+	 */
+	public synchronized GistCommentResponse append(GistCommentResponse comment) throws IOException {
+		refresh();
+		if (comment.getId() == null) {
+			comment.setId(lastId + 1);
+		}
+		write(JournalRecord.saved(comment));
+		compactIfRequired();
+		writeSummary();
+		return comment;
+	}
+
+	/**
+	 * Appends the deletion of the comment to the journal.
+	 *
+	 * @return false if there is no comment with the id.
+	 */
+	public synchronized boolean remove(long commentId) throws IOException {
+		refresh();
+		if (!positions.containsKey(commentId)) {
+			return false;
+		}
+		write(JournalRecord.removed(commentId));
+		compactIfRequired();
+		writeSummary();
+		return true;
+	}
+
+	private void write(JournalRecord record) throws IOException {
+		FileUtils.forceMkdir(journalFile.getParentFile());
+		byte[] json = objectMapper.writeValueAsBytes(record);
+		long offset = journalFile.length();
+		try (OutputStream out = new FileOutputStream(journalFile, true)) {
+			if (offset > journalOffset) {
+				// ends a record left incomplete by an interrupted write
+				out.write('\n');
+				offset++;
+			}
+			out.write(json);
+			out.write('\n');
+		}
+		journalKey = getFileKey(journalFile);
+		journalOffset = offset + json.length + 1;
+		apply(record, new RecordPosition(offset, json.length, getUpdatedAt(record)));
+	}
+
+	/**
+	 * Reads any records appended to the journal since it was last read, if the
+	 * journal has been replaced then it is read in full.
+	 */
+	private void refresh() throws IOException {
+		if (!journalFile.exists() && legacyFile != null && legacyFile.exists()) {
+			migrate();
+		}
+		if (!journalFile.exists()) {
+			clear();
+			return;
+		}
+		Object key = getFileKey(journalFile);
+		long length = journalFile.length();
+		if (!ObjectUtils.nullSafeEquals(key, journalKey) || length < journalOffset) {
+			clear();
+			journalKey = key;
+		}
+		if (length > journalOffset) {
+			readJournal();
+		}
+	}
+
+	private void readJournal() throws IOException {
+		try (FileInputStream journal = new FileInputStream(journalFile)) {
+			journal.getChannel().position(journalOffset);
+			InputStream in = new BufferedInputStream(journal);
+			ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+			int b;
+			while ((b = in.read()) != -1) {
+				if (b == '\n') {
+					readRecord(line.toByteArray(), journalOffset);
+					journalOffset += line.size() + 1;
+					line.reset();
+				} else {
+					line.write(b);
+				}
+			}
+			// anything left in the line buffer is a record that is still being written
+		}
+	}
+
+	private void readRecord(byte[] json, long offset) {
+		if (json.length > 0) {
+			try {
+				JournalRecord record = objectMapper.readValue(json, JournalRecord.class);
+				apply(record, new RecordPosition(offset, json.length, getUpdatedAt(record)));
+			} catch (IOException e) {
+				logger.warn("Skipping unreadable record in the comment journal {} at offset {}", journalFile, offset,
+						e);
+			}
+		}
+	}
+
+	private long getUpdatedAt(JournalRecord record) {
+		GistCommentResponse comment = record.getComment();
+		if (comment == null || comment.getUpdatedAt() == null) {
+			return 0;
+		}
+		return comment.getUpdatedAt().getMillis();
+	}
+
+	private JournalRecord readRecord(FileChannel channel, RecordPosition position) throws IOException {
+		return objectMapper.readValue(readBytes(channel, position), JournalRecord.class);
+	}
+
+	private byte[] readBytes(FileChannel channel, RecordPosition position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(position.length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position.offset + buffer.position()) < 0) {
+				throw new IOException("The comment journal " + journalFile + " ends within the record at offset "
+						+ position.offset);
+			}
+		}
+		return buffer.array();
+	}
+
+	private void apply(JournalRecord record, RecordPosition position) {
+		if (record.getGeneration() > 0) {
+			generation = record.getGeneration();
+			return;
+		}
+		long commentId = record.getId();
+		if (record.isRemoved()) {
+			positions.remove(commentId);
+		} else {
+			positions.put(commentId, position);
+		}
+		lastId = Math.max(lastId, commentId);
+		journalRecords++;
+	}
+
+	private void clear() {
+		positions.clear();
+		lastId = 0;
+		generation = 0;
+		journalKey = null;
+		journalOffset = 0;
+		journalRecords = 0;
+	}
+
+	private void compactIfRequired() {
+		if (journalRecords > MIN_COMPACTION_RECORDS && journalRecords > positions.size() * 2) {
+			try {
+				compact();
+			} catch (IOException e) {
+				logger.warn("Could not compact the comment journal {}, will try again on the next change", journalFile,
+						e);
+			}
+		}
+	}
+
+	/**
+	 * Rewrites the journal with the latest record of each comment, copying the
+	 * records without parsing them, after a record of the next generation of
+	 * the journal. A deletion record is kept for the last comment id if that
+	 * comment was deleted, so that its id is not given to a new comment.
+	 */
+	private void compact() throws IOException {
+		File compactionFile = File.createTempFile("comments", ".tmp", journalFile.getParentFile());
+		TreeMap<Long, RecordPosition> compacted = new TreeMap<>();
+		long nextGeneration = generation + 1;
+		long offset = 0;
+		try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ);
+				OutputStream out = new FileOutputStream(compactionFile)) {
+			byte[] generationJson = objectMapper.writeValueAsBytes(JournalRecord.generation(nextGeneration));
+			out.write(generationJson);
+			out.write('\n');
+			offset += generationJson.length + 1;
+			for (Map.Entry<Long, RecordPosition> entry : positions.entrySet()) {
+				byte[] json = readBytes(channel, entry.getValue());
+				out.write(json);
+				out.write('\n');
+				compacted.put(entry.getKey(), new RecordPosition(offset, json.length, entry.getValue().updatedAt));
+				offset += json.length + 1;
+			}
+			if (lastId > 0 && !positions.containsKey(lastId)) {
+				byte[] json = objectMapper.writeValueAsBytes(JournalRecord.removed(lastId));
+				out.write(json);
+				out.write('\n');
+				offset += json.length + 1;
+			}
+			Files.move(compactionFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(compactionFile.toPath());
+		}
+		positions.clear();
+		positions.putAll(compacted);
+		generation = nextGeneration;
+		journalKey = getFileKey(journalFile);
+		journalOffset = offset;
+		journalRecords = compacted.size();
+		logger.debug("Compacted comment journal {} to {} comments", journalFile, journalRecords);
+	}
+
+	/**
+	 * Writes the comments of a <code>comments.json</code> file into a new
+	 * journal, and then removes the file.
+	 */
+	private void migrate() throws IOException {
+		List<GistCommentResponse> comments;
+		try {
+			comments = objectMapper.readValue(legacyFile, COMMENT_LIST);
+		} catch (FileNotFoundException e) {
+			// migrated by another node since it was checked
+			return;
+		}
+		File migrationFile = File.createTempFile("comments", ".tmp", journalFile.getParentFile());
+		try {
+			try (OutputStream out = new FileOutputStream(migrationFile)) {
+				if (comments != null) {
+					for (GistCommentResponse comment : comments) {
+						out.write(objectMapper.writeValueAsBytes(JournalRecord.saved(comment)));
+						out.write('\n');
+					}
+				}
+			}
+			Files.move(migrationFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(migrationFile.toPath());
+		}
+		Files.deleteIfExists(legacyFile.toPath());
+		logger.info("Migrated {} comments from {} into the comment journal", comments == null ? 0 : comments.size(),
+				legacyFile);
+	}
+
+	private Object getFileKey(File file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		Object key = attributes.fileKey();
+		return key == null ? attributes.creationTime() : key;
+	}
+
+	private static class RecordPosition {
+
+		private final long offset;
+
+		private final int length;
+
+		private final long updatedAt;
+
+		RecordPosition(long offset, int length, long updatedAt) {
+			this.offset = offset;
+			this.length = length;
+			this.updatedAt = updatedAt;
+		}
+
+	}
+
+	/**
+	 * A record of the journal, either the latest version of a comment, the
+	 * deletion of the comment with the id or the generation of the journal.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+	public static class JournalRecord {
+
+		@JsonProperty("id")
+		private long id;
+
+		@JsonProperty("removed")
+		private boolean removed;
+
+		@JsonProperty("comment")
+		private GistCommentResponse comment;
+
+		@JsonProperty("generation")
+		private long generation;
+
+		public static JournalRecord saved(GistCommentResponse comment) {
+			JournalRecord record = new JournalRecord();
+			record.setId(comment.getId());
+			record.setComment(comment);
+			return record;
+		}
+
+		public static JournalRecord removed(long commentId) {
+			JournalRecord record = new JournalRecord();
+			record.setId(commentId);
+			record.setRemoved(true);
+			return record;
+		}
+
+		public static JournalRecord generation(long generation) {
+			JournalRecord record = new JournalRecord();
+			record.setGeneration(generation);
+			return record;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public boolean isRemoved() {
+			return removed;
+		}
+
+		public void setRemoved(boolean removed) {
+			this.removed = removed;
+		}
+
+		public GistCommentResponse getComment() {
+			return comment;
+		}
+
+		public void setComment(GistCommentResponse comment) {
+			this.comment = comment;
+		}
+
+		public long getGeneration() {
+			return generation;
+		}
+
+		public void setGeneration(long generation) {
+			this.generation = generation;
+		}
+
+	}
+
+	/**
+	 * The generation and length of the journal, and the number of comments
+	 * it holds.
+	 */
+	public static class JournalSummary {
+
+		@JsonProperty("generation")
+		private long generation;
+
+		@JsonProperty("offset")
+		private long offset;
+
+		@JsonProperty("count")
+		private int count;
+
+		public static JournalSummary of(long generation, long offset, int count) {
+			JournalSummary summary = new JournalSummary();
+			summary.setGeneration(generation);
+			summary.setOffset(offset);
+			summary.setCount(count);
+			return summary;
+		}
+
+		public long getGeneration() {
+			return generation;
+		}
+
+		public void setGeneration(long generation) {
+			this.generation = generation;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public void setOffset(long offset) {
+			this.offset = offset;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+	}
+
+}
@@ -7,14 +7,24 @@
 package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import java.io.File;
-import java.util.List;
+
+import org.joda.time.DateTime;
 
 import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
 public interface CommentStore {
 
-	List<GistCommentResponse> load(File store);
+	ResultPage<GistCommentResponse> load(File store, DateTime since, int page, int perPage);
+
+	GistCommentResponse load(File store, long commentId);
+
+	int count(File store);
+
+	String version(File store);
+
+	GistCommentResponse save(File store, GistCommentResponse comment);
 
-	List<GistCommentResponse> save(File store, List<GistCommentResponse> comments);
+	boolean remove(File store, long commentId);
 
 }
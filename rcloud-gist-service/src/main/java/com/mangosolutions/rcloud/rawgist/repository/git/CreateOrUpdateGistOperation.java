@@ -10,17 +10,27 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 
-import org.ajoberstar.grgit.Grgit;
-import org.ajoberstar.grgit.operation.OpenOp;
-import org.apache.commons.codec.CharEncoding;
+import org.apache.commons.io.Charsets;
 import org.apache.commons.io.FileUtils;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.DeletePath;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.FileTreeIterator;
 import org.eclipse.jgit.treewalk.FileTreeIterator.DefaultFileModeStrategy;
 import org.eclipse.jgit.treewalk.FileTreeIterator.FileModeStrategy;
 import org.eclipse.jgit.treewalk.FileTreeIterator.NoGitlinksStrategy;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.WorkingTreeOptions;
 import org.eclipse.jgit.util.FS;
 import org.joda.time.DateTime;
@@ -29,7 +39,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.StringUtils;
 
-import com.mangosolutions.rcloud.rawgist.model.FileContent;
 import com.mangosolutions.rcloud.rawgist.model.FileDefinition;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
@@ -47,7 +56,9 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
 
     private GistRequest gistRequest;
 
-    private GistResponse preChangeResponse;
+    private boolean directCommit = false;
+
+    private boolean readResponse = true;
 
     public CreateOrUpdateGistOperation(RepositoryLayout layout, String gistId, GistRequest gistRequest,
             UserDetails user) {
@@ -62,38 +73,117 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
 
     @Override
     public GistResponse call() {
-
-        try (Grgit git = openRepository()) {
-            preChangeResponse = this.readGist(git);
+        try (Repository repository = openRepository()) {
+            if (directCommit) {
+                createMetadata();
+                commitContent(repository);
+            } else {
+                createWorkingFolder();
+                cleanWorkingFolder();
+                createMetadata();
+                saveContent(repository);
+            }
+            return readResponse ? this.readGist(repository) : null;
         }
+    }
 
-        try (Grgit git = createOrOpenWorkingCopy()) {
-            createMetadata();
-            saveContent(git);
+    /**
+     * Commits the changes of the request without a working folder, the new
+     * content is inserted straight into the object database and the commit is
+     * made from an in memory index of the tree of HEAD. Only the entries of
+     * the tree are read, a moved file keeps its existing blob.
+     */
+    private void commitContent(Repository repository) {
+        Map<String, FileDefinition> files = this.gistRequest.getFiles();
+        if (files != null && !files.isEmpty()) {
+            try (ObjectInserter inserter = repository.newObjectInserter()) {
+                DirCache index = readHeadIndex(repository);
+                DirCacheEditor editor = index.editor();
+                boolean changed = false;
+                for (Map.Entry<String, FileDefinition> file : files.entrySet()) {
+                    String filename = file.getKey();
+                    FileDefinition definition = file.getValue();
+                    if (isDelete(definition)) {
+                        editor.add(new DeletePath(filename));
+                        changed = true;
+                    } else if (isMove(filename, definition)) {
+                        DirCacheEntry oldEntry = index.getEntry(filename);
+                        if (oldEntry != null) {
+                            String content = definition.getContent();
+                            ObjectId blobId = StringUtils.isEmpty(content) ? oldEntry.getObjectId()
+                                    : insertContent(inserter, content);
+                            editor.add(new DeletePath(filename));
+                            editor.add(new UpdateBlob(definition.getFilename(), blobId));
+                            changed = true;
+                        }
+                    } else if (isUpdate(definition)) {
+                        editor.add(new UpdateBlob(filename, insertContent(inserter, definition.getContent())));
+                        changed = true;
+                    }
+                }
+                editor.finish();
+                inserter.flush();
+                if (changed) {
+                    BareCommitCommand commitCommand = new BareCommitCommand(repository, index, true);
+                    commitCommand.setAuthor(this.getUser().getUsername(), "");
+                    commitCommand.setCommitter(this.getUser().getUsername(), "");
+                    commitCommand.setMessage("");
+                    commitCommand.setNoVerify(true);
+                    commitCommand.setAllowEmpty(false);
+                    commitCommand.setHistoryIndex(new GistHistoryIndex(this.getLayout().getHistoryIndexFile()));
+                    RevCommit commit = commitCommand.call();
+                    if (commit != null) {
+                        this.cacheHistory(repository, commit, commitCommand.getHistoryEntry());
+                    }
+                }
+            } catch (IOException | GitAPIException e) {
+                GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE,
+                        "Could not update gist with id {}", this.getGistId());
+                logger.error(error.getFormattedMessage() + " with path {}", this.getLayout().getRootFolder(), e);
+                throw new GistRepositoryException(error, e);
+            }
         }
+        this.updateMetadata(this.gistRequest);
+    }
 
-        try (Grgit git = openRepository()) {
-            return this.readGist(git);
+    private DirCache readHeadIndex(Repository repository) throws IOException {
+        DirCache index = DirCache.newInCore();
+        DirCacheBuilder builder = index.builder();
+        ObjectId headTree = repository.resolve(Constants.HEAD + "^{tree}");
+        if (headTree != null) {
+            try (ObjectReader reader = repository.newObjectReader()) {
+                builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, headTree);
+            }
         }
+        builder.finish();
+        return index;
+    }
 
+    private ObjectId insertContent(ObjectInserter inserter, String content) throws IOException {
+        byte[] bytes = content.getBytes(Charsets.UTF_8);
+        ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, bytes);
+        this.addWrittenContent(blobId, bytes);
+        return blobId;
     }
 
-    private Grgit createOrOpenWorkingCopy() {
-        Grgit git = openRepository();
-        git = initialiseRepo(git);
-        cleanRepository(git);
-        return git;
+    private static class UpdateBlob extends PathEdit {
 
-    }
+        private final ObjectId blobId;
 
-    private Grgit initialiseRepo(Grgit git) {
-        Git jgit = git.getRepository().getJgit();
-        if (jgit.getRepository().isBare()) {
-            OpenOp openOp = new OpenOp();
-            openOp.setDir(this.getLayout().getBareFolder());
-            git = openOp.call();
+        UpdateBlob(String path, ObjectId blobId) {
+            super(path);
+            this.blobId = blobId;
         }
-        File workingFolder = getWorkTree(git);
+
+        @Override
+        public void apply(DirCacheEntry entry) {
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setObjectId(blobId);
+        }
+    }
+
+    private void createWorkingFolder() {
+        File workingFolder = this.getLayout().getWorkingFolder();
         if (!workingFolder.exists()) {
             try {
                 FileUtils.forceMkdir(workingFolder);
@@ -104,38 +194,23 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
                 throw new GistRepositoryException(error, e);
             }
         }
-        return git;
-    }
-
-    private File getWorkTree(Grgit git) {
-        if (git.getRepository().getJgit().getRepository().isBare()) {
-            return this.getLayout().getWorkingFolder();
-        }
-        return git.getRepository().getJgit().getRepository().getWorkTree();
-    }
-
-    private Grgit openRepository() {
-        OpenOp openOp = new OpenOp();
-        openOp.setDir(this.getLayout().getBareFolder());
-        Grgit git = openOp.call();
-        return git;
     }
 
-    private void saveContent(Grgit git) {
+    private void saveContent(Repository repository) {
         RepositoryLayout layout = this.getLayout();
         UserDetails userDetails = this.getUser();
         Map<String, FileDefinition> files = this.gistRequest.getFiles();
         String gistId = this.getGistId();
         try {
-            applyFileChanges(git, layout, files, gistId, userDetails);
+            applyFileChanges(repository, layout, files, gistId, userDetails);
             this.updateMetadata(this.gistRequest);
         } finally {
-            cleanRepository(git);
+            cleanWorkingFolder();
         }
 
     }
 
-    private void cleanRepository(Grgit git) {
+    private void cleanWorkingFolder() {
         try {
             FileUtils.cleanDirectory(this.getLayout().getWorkingFolder());
         } catch (IOException e) {
@@ -143,46 +218,44 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
         }
     }
 
-    private DirCache getIndex(Grgit git) {
+    private DirCache getIndex() {
         File indexFile = new File(this.getLayout().getWorkingFolder(), ".index");
         DirCache index = new DirCache(indexFile, FS.detect());
         return index;
     }
 
-    private void applyFileChanges(Grgit git, RepositoryLayout layout, Map<String, FileDefinition> files, String gistId,
+    private void applyFileChanges(Repository repository, RepositoryLayout layout, Map<String, FileDefinition> files, String gistId,
             UserDetails userDetails) {
         if (files != null && !files.isEmpty()) {
-            DirCache index = getIndex(git);
+            DirCache index = getIndex();
+            File workingFolder = layout.getWorkingFolder();
             BareAddCommand addCommand = null;
             BareRmCommand rmCommand = null;
-            BareCommitCommand commitCommand = new BareCommitCommand(git.getRepository().getJgit().getRepository(),
-                    index);
+            BareCommitCommand commitCommand = new BareCommitCommand(repository, index);
             for (Map.Entry<String, FileDefinition> file : files.entrySet()) {
                 String filename = file.getKey();
-                File workingFolder = getWorkTree(git);
                 FileDefinition definition = file.getValue();
                 if (isDelete(definition)) {
                     commitCommand.setOnly(filename);
-                    rmCommand = applyRmPath(rmCommand, filename, git, index);
+                    rmCommand = applyRmPath(rmCommand, filename, repository, index);
                 }
                 if (isUpdate(definition)) {
-                    updateFile(workingFolder, gistId, filename, definition);
+                    updateFile(workingFolder, gistId, filename, definition.getContent());
                     commitCommand.setOnly(filename);
-                    addCommand = applyAddPath(addCommand, filename, workingFolder, git, index);
+                    addCommand = applyAddPath(addCommand, filename, workingFolder, repository, index);
                 }
 
                 if (isMove(filename, definition)) {
-                    moveFile(workingFolder, gistId, filename, definition);
-                    rmCommand = applyRmPath(rmCommand, filename, git, index);
+                    moveFile(repository, workingFolder, gistId, filename, definition);
+                    rmCommand = applyRmPath(rmCommand, filename, repository, index);
                     commitCommand.setOnly(filename);
-                    addCommand = applyAddPath(addCommand, definition.getFilename(), workingFolder, git, index);
+                    addCommand = applyAddPath(addCommand, definition.getFilename(), workingFolder, repository, index);
                     commitCommand.setOnly(definition.getFilename());
                 }
             }
             try {
                 if (addCommand != null) {
-                    FileTreeIterator it = this.getFileTreeIterator(git.getRepository().getJgit(),
-                            this.getWorkTree(git));
+                    FileTreeIterator it = this.getFileTreeIterator(repository, workingFolder);
                     addCommand.setWorkingTreeIterator(it);
                     addCommand.call();
                 }
@@ -191,69 +264,72 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
                 }
                 try {
                     if (addCommand != null || rmCommand != null) {
-                        commitCommand.workingFolder = this.getWorkTree(git);
+                        commitCommand.workingFolder = workingFolder;
                         commitCommand.setAuthor(userDetails.getUsername(), "");
                         commitCommand.setCommitter(userDetails.getUsername(), "");
                         commitCommand.setMessage("");
                         commitCommand.setNoVerify(true);
-                        commitCommand.call();
+                        commitCommand.setHistoryIndex(new GistHistoryIndex(layout.getHistoryIndexFile()));
+                        RevCommit commit = commitCommand.call();
+                        if (commit != null) {
+                            this.cacheHistory(repository, commit, commitCommand.getHistoryEntry());
+                        }
                     }
-                } catch (GitAPIException e) {
+                } catch (GitAPIException | IOException e) {
                     throw new RuntimeException(e);
                 }
             } catch (GitAPIException e) {
                 GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE,
                         "Could not update gist with id {}", this.getGistId());
-                logger.error(error.getFormattedMessage() + " with folder path {}", this.getWorkTree(git), e);
+                logger.error(error.getFormattedMessage() + " with folder path {}", workingFolder, e);
                 throw new GistRepositoryException(error, e);
             }
         }
     }
 
-    private BareRmCommand applyRmPath(BareRmCommand rmCommand, String filename, Grgit git, DirCache index) {
+    private BareRmCommand applyRmPath(BareRmCommand rmCommand, String filename, Repository repository,
+            DirCache index) {
         if (rmCommand == null) {
-            Git jgit = git.getRepository().getJgit();
-            rmCommand = new BareRmCommand(jgit.getRepository(), index);
+            rmCommand = new BareRmCommand(repository, index);
         }
         return rmCommand.addFilepattern(filename);
     }
 
-    private BareAddCommand applyAddPath(BareAddCommand addCommand, String filename, File workingFolder, Grgit git,
-            DirCache index) {
+    private BareAddCommand applyAddPath(BareAddCommand addCommand, String filename, File workingFolder,
+            Repository repository, DirCache index) {
         if (addCommand == null) {
-            Git jgit = git.getRepository().getJgit();
-
-            FileTreeIterator iterator = getFileTreeIterator(jgit, workingFolder);
-            addCommand = new BareAddCommand(jgit.getRepository());
+            FileTreeIterator iterator = getFileTreeIterator(repository, workingFolder);
+            addCommand = new BareAddCommand(repository);
             addCommand.setWorkingTreeIterator(iterator);
             addCommand.addDirCache(index);
         }
         return addCommand.addFilepattern(filename);
     }
 
-    private FileTreeIterator getFileTreeIterator(Git jgit, File workingFolder) {
+    private FileTreeIterator getFileTreeIterator(Repository repository, File workingFolder) {
 
-        FileModeStrategy fileModeStrategy = jgit.getRepository().getConfig().get(WorkingTreeOptions.KEY)
+        FileModeStrategy fileModeStrategy = repository.getConfig().get(WorkingTreeOptions.KEY)
                 .isDirNoGitLinks() ? NoGitlinksStrategy.INSTANCE : DefaultFileModeStrategy.INSTANCE;
 
-        FileTreeIterator iterator = new FileTreeIterator(workingFolder, jgit.getRepository().getFS(),
-                jgit.getRepository().getConfig().get(WorkingTreeOptions.KEY), fileModeStrategy);
+        FileTreeIterator iterator = new FileTreeIterator(workingFolder, repository.getFS(),
+                repository.getConfig().get(WorkingTreeOptions.KEY), fileModeStrategy);
 
         return iterator;
     }
 
-    private void moveFile(File workingFolder, String gistId, String filename, FileDefinition definition) {
+    private void moveFile(Repository repository, File workingFolder, String gistId, String filename,
+            FileDefinition definition) {
         File oldFile = new File(workingFolder, filename);
         File newFile = new File(workingFolder, definition.getFilename());
         if (!oldFile.equals(newFile)) {
             try {
-                FileContent oldFileContent = this.preChangeResponse.getFiles().get(filename);
-                if (oldFileContent != null) {
+                ObjectId oldBlobId = findHeadBlob(repository, filename);
+                if (oldBlobId != null) {
                     String content = definition.getContent();
                     if (StringUtils.isEmpty(content)) {
-                        content = oldFileContent.getContent();
+                        content = new String(repository.open(oldBlobId).getBytes(), Charsets.UTF_8);
                     }
-                    FileUtils.write(newFile, content, CharEncoding.UTF_8);
+                    updateFile(workingFolder, gistId, definition.getFilename(), content);
                 }
             } catch (IOException e) {
                 GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE,
@@ -264,9 +340,26 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
         }
     }
 
-    private void updateFile(File workingFolder, String gistId, String filename, FileDefinition definition) {
+    /**
+     * Finds the blob of a single file in the tree of HEAD.
+     *
+     * @return the blob id or null if the file is not in HEAD.
+     */
+    private ObjectId findHeadBlob(Repository repository, String filename) throws IOException {
+        ObjectId headTree = repository.resolve(Constants.HEAD + "^{tree}");
+        if (headTree == null) {
+            return null;
+        }
+        try (TreeWalk treeWalk = TreeWalk.forPath(repository, filename, headTree)) {
+            return treeWalk == null ? null : treeWalk.getObjectId(0);
+        }
+    }
+
+    private void updateFile(File workingFolder, String gistId, String filename, String content) {
         try {
-            FileUtils.write(new File(workingFolder, filename), definition.getContent(), CharEncoding.UTF_8);
+            byte[] bytes = content.getBytes(Charsets.UTF_8);
+            FileUtils.writeByteArrayToFile(new File(workingFolder, filename), bytes);
+            this.addWrittenContent(new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, bytes), bytes);
         } catch (IOException e) {
             GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE, "Could not update {} for gist {}",
                     filename, gistId);
@@ -327,6 +420,27 @@ public class CreateOrUpdateGistOperation extends ReadGistOperation {
         this.getMetadataStore().save(this.getLayout().getMetadataFile(), metadata);
     }
 
+    public boolean isDirectCommit() {
+        return directCommit;
+    }
+
+    public void setDirectCommit(boolean directCommit) {
+        this.directCommit = directCommit;
+    }
+
+    public boolean isReadResponse() {
+        return readResponse;
+    }
+
+    /**
+     * @param readResponse
+     *            false if the gist is not read after the change, in which case
+     *            the operation returns null.
+     */
+    public void setReadResponse(boolean readResponse) {
+        this.readResponse = readResponse;
+    }
+
     public GistRequest getGistRequest() {
         return gistRequest;
     }
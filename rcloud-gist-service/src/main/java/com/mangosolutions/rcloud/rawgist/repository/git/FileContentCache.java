@@ -8,10 +8,16 @@ package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import com.mangosolutions.rcloud.rawgist.model.FileContent;
 
+/**
+ * Caches file content by the id of the git object holding it, so content
+ * shared by several files, commits or forks is only cached once. Only the
+ * content, size and truncated flag are cached, the filename, language and
+ * type are applied by the reader.
+ */
 public interface FileContentCache {
 
-	FileContent load(String contentId, String path);
+	FileContent load(String objectId);
 
-	FileContent save(String contentId, String path, FileContent content);
+	FileContent save(String objectId, FileContent content);
 
 }
@@ -12,11 +12,16 @@ import java.util.Collection;
 
 import org.ajoberstar.grgit.Grgit;
 import org.ajoberstar.grgit.operation.CloneOp;
-import org.ajoberstar.grgit.operation.OpenOp;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.RemoteRemoveCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.RefUpdate.Result;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +39,21 @@ public class ForkGistOperation extends ReadGistOperation {
 
 	private static final Logger logger = LoggerFactory.getLogger(ForkGistOperation.class);
 
+	/**
+	 * Forks by cloning every object of the original gist.
+	 */
+	public static final String CLONE_FORK_MODE = "clone";
+
+	/**
+	 * Forks by borrowing the objects of the original gist through git
+	 * alternates, only the refs are copied.
+	 */
+	public static final String ALTERNATES_FORK_MODE = "alternates";
+
+	private String forkMode = CLONE_FORK_MODE;
+
+	private SharedObjectPool objectPool;
+
 	private GistRepository originalRepository;
 
 	private GistRepository newRepository;
@@ -51,10 +71,8 @@ public class ForkGistOperation extends ReadGistOperation {
 	@Override
 	public GistResponse call() {
 		this.forkGist();
-		OpenOp openOp = new OpenOp();
-		openOp.setDir(this.getLayout().getBareFolder());
-		try (Grgit git = openOp.call()) {
-			return this.readGist(git);
+		try (Repository repository = openRepository()) {
+			return this.readGist(repository);
 		}
 	}
 
@@ -62,8 +80,17 @@ public class ForkGistOperation extends ReadGistOperation {
 		RepositoryLayout layout = this.getLayout();
 		try {
 
-			Grgit git = cloneRepository();
-			removeRemotes(git);
+			if(ALTERNATES_FORK_MODE.equals(forkMode)) {
+				linkRepository();
+			} else {
+				try (Grgit git = cloneRepository()) {
+					removeRemotes(git);
+				}
+				if(objectPool != null) {
+					objectPool.link(layout.getBareFolder());
+				}
+			}
+			copyHistoryIndex();
 			this.updateMetadata();
 			originalRepository.registerFork(newRepository);
 		} catch (IOException | GitAPIException e) {
@@ -86,6 +113,9 @@ public class ForkGistOperation extends ReadGistOperation {
 
 	private Grgit cloneRepository() throws IOException {
 		File bareFolder = this.getLayout().getBareFolder();
+		if(this.getRepositoryPool() != null) {
+			this.getRepositoryPool().evict(bareFolder);
+		}
 		FileUtils.cleanDirectory(bareFolder);
 		CloneOp cloneOp = new CloneOp();
 		cloneOp.setCheckout(false);
@@ -97,6 +127,44 @@ public class ForkGistOperation extends ReadGistOperation {
 		return git;
 	}
 
+	/**
+	 * Creates the fork as an empty bare repository that borrows the objects of
+	 * the original gist through git alternates, with a copy of its refs.
+	 */
+	private void linkRepository() throws IOException {
+		File bareFolder = this.getLayout().getBareFolder();
+		if(this.getRepositoryPool() != null) {
+			this.getRepositoryPool().evict(bareFolder);
+		}
+		FileUtils.cleanDirectory(bareFolder);
+		File originalFolder = originalRepository.getGistGitRepositoryFolder(this.getUser());
+		try (Repository fork = new FileRepositoryBuilder().setGitDir(bareFolder).setBare().build()) {
+			fork.create(true);
+			ObjectAlternates.add(ObjectAlternates.getObjectsFolder(bareFolder),
+					ObjectAlternates.getObjectsFolder(originalFolder));
+			try (Repository original = GitRepositoryPool.openRepository(originalFolder)) {
+				for(Ref ref: original.getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+					if(!ref.isSymbolic() && ref.getObjectId() != null) {
+						RefUpdate refUpdate = fork.updateRef(ref.getName());
+						refUpdate.setNewObjectId(ref.getObjectId());
+						Result result = refUpdate.forceUpdate();
+						if(result != Result.NEW && result != Result.FORCED && result != Result.NO_CHANGE) {
+							throw new IOException("Could not copy ref " + ref.getName() + ", " + result);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void copyHistoryIndex() throws IOException {
+		File originalFolder = originalRepository.getGistRepositoryFolder(this.getUser());
+		File historyIndexFile = new RepositoryLayout(originalFolder).getHistoryIndexFile();
+		if(historyIndexFile.exists()) {
+			FileUtils.copyFile(historyIndexFile, this.getLayout().getHistoryIndexFile());
+		}
+	}
+
 	private void updateMetadata() {
 		GistMetadata originalMetadata = originalRepository.getMetadata();
 		GistMetadata metadata = getMetadata();
@@ -116,6 +184,22 @@ public class ForkGistOperation extends ReadGistOperation {
 		this.getMetadataStore().save(this.getLayout().getMetadataFile(), metadata);
 	}
 
+	public String getForkMode() {
+		return forkMode;
+	}
+
+	public void setForkMode(String forkMode) {
+		this.forkMode = forkMode;
+	}
+
+	public SharedObjectPool getObjectPool() {
+		return objectPool;
+	}
+
+	public void setObjectPool(SharedObjectPool objectPool) {
+		this.objectPool = objectPool;
+	}
+
 	public GistRepository getOriginalRepository() {
 		return originalRepository;
 	}
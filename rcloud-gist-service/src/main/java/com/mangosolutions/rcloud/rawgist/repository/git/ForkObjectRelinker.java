@@ -0,0 +1,161 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps forks that borrow objects from another gist through git alternates
+ * readable once that gist is deleted. When the gist is moved to the recycle
+ * folder each fork is first pointed at its new location, then a background
+ * task copies the objects into the fork so it no longer depends on the
+ * recycled gist. The alternates of each fork are changed under the write
+ * lock of the fork.
+ */
+@Component
+public class ForkObjectRelinker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForkObjectRelinker.class);
+
+    public static final int DEFAULT_LOCK_TIMEOUT = 30;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Autowired(required = false)
+    private GitRepositoryPool repositoryPool;
+
+    private GistLockManager lockManager;
+
+    private int lockTimeout = DEFAULT_LOCK_TIMEOUT;
+
+    public ForkObjectRelinker() {
+    }
+
+    public ForkObjectRelinker(GitRepositoryPool repositoryPool, GistLockManager lockManager) {
+        this.repositoryPool = repositoryPool;
+        this.lockManager = lockManager;
+    }
+
+    public void setLockManager(GistLockManager lockManager) {
+        this.lockManager = lockManager;
+    }
+
+    public void setLockTimeout(int lockTimeout) {
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Relinks the forks after the git folder of the gist they were forked from
+     * has moved. Forks that do not borrow from the gist are left as they are,
+     * they are still evicted from the repository pool as their open
+     * repositories may borrow from it through another fork. A fork whose lock
+     * cannot be acquired is not relinked, callers that move the gist should
+     * hold the write locks of its forks.
+     *
+     * @param forkGitFolders
+     *            the git folders of the forks by their gist id.
+     * @return the background task that detaches the forks from the moved gist.
+     */
+    public Future<?> relink(final Map<String, File> forkGitFolders, File gitFolder, File movedGitFolder) {
+        final File objectsFolder = ObjectAlternates.getObjectsFolder(gitFolder);
+        final File movedObjectsFolder = ObjectAlternates.getObjectsFolder(movedGitFolder);
+        for (Map.Entry<String, File> fork : forkGitFolders.entrySet()) {
+            File forkGitFolder = fork.getValue();
+            Lock lock = lockFork(fork.getKey());
+            if (lock == null) {
+                logger.error("Could not relink fork {} to the moved objects of {}, it is in use", forkGitFolder,
+                        movedGitFolder);
+                continue;
+            }
+            try {
+                ObjectAlternates.replace(ObjectAlternates.getObjectsFolder(forkGitFolder), objectsFolder,
+                        movedObjectsFolder);
+            } catch (IOException e) {
+                logger.error("Could not relink fork {} to the moved objects of {}", forkGitFolder, movedGitFolder, e);
+            } finally {
+                lock.unlock();
+            }
+            evict(forkGitFolder);
+        }
+        return executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                detach(forkGitFolders, movedObjectsFolder);
+            }
+
+        });
+    }
+
+    /**
+     * Copies the objects of the moved gist into the forks. A fork that is in
+     * use keeps borrowing from the moved gist, it is detached when the
+     * recycled gist is purged.
+     */
+    private void detach(Map<String, File> forkGitFolders, File objectsFolder) {
+        for (Map.Entry<String, File> fork : forkGitFolders.entrySet()) {
+            File forkGitFolder = fork.getValue();
+            Lock lock = lockFork(fork.getKey());
+            if (lock == null) {
+                logger.warn("Could not copy the objects of {} into fork {}, it is in use", objectsFolder,
+                        forkGitFolder);
+                continue;
+            }
+            try {
+                if (ObjectAlternates.detach(ObjectAlternates.getObjectsFolder(forkGitFolder), objectsFolder)) {
+                    logger.info("Copied the objects of {} into fork {}", objectsFolder, forkGitFolder);
+                }
+            } catch (IOException e) {
+                logger.error("Could not copy the objects of {} into fork {}", objectsFolder, forkGitFolder, e);
+            } finally {
+                lock.unlock();
+            }
+            evict(forkGitFolder);
+        }
+    }
+
+    /**
+     * Acquires the write lock of the fork, waiting at most the lock timeout.
+     *
+     * @return the acquired lock, or null if the fork is in use.
+     */
+    private Lock lockFork(String gistId) {
+        Lock lock = lockManager.getLock(gistId).writeLock();
+        try {
+            return lock.tryLock(lockTimeout, TimeUnit.SECONDS) ? lock : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void evict(File gitFolder) {
+        if (repositoryPool != null) {
+            repositoryPool.evict(gitFolder);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.Serializable;
+
+import org.joda.time.DateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A single record of the gist catalog, a summary of the {@link GistMetadata}
+ * of a gist that is sufficient to answer listing queries without opening the
+ * gist repository.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({ "id", "owner", "description", "public", "updated_at", "removed" })
+public class GistCatalogEntry implements Serializable {
+
+    private static final long serialVersionUID = -3049384610298413551L;
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("owner")
+    private String owner;
+
+    @JsonProperty("description")
+    private String description;
+
+    @JsonProperty("public")
+    private boolean _public = true;
+
+    @JsonProperty("updated_at")
+    private DateTime updatedAt;
+
+    @JsonProperty("removed")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean removed = false;
+
+    public GistCatalogEntry() {
+
+    }
+
+    public GistCatalogEntry(GistMetadata metadata) {
+        this.id = metadata.getId();
+        this.owner = metadata.getOwner();
+        this.description = metadata.getDescription();
+        this._public = metadata.isPublic();
+        this.updatedAt = metadata.getUpdatedAt();
+    }
+
+    public static GistCatalogEntry removed(String gistId) {
+        GistCatalogEntry entry = new GistCatalogEntry();
+        entry.setId(gistId);
+        entry.setRemoved(true);
+        return entry;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    @JsonProperty("public")
+    public boolean isPublic() {
+        return _public;
+    }
+
+    @JsonProperty("public")
+    public void setPublic(boolean _public) {
+        this._public = _public;
+    }
+
+    @JsonProperty("updated_at")
+    public DateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @JsonProperty("updated_at")
+    public void setUpdatedAt(DateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(boolean removed) {
+        this.removed = removed;
+    }
+
+    @Override
+    public String toString() {
+        return "GistCatalogEntry [id=" + id + ", owner=" + owner + ", description=" + description + ", _public="
+                + _public + ", updatedAt=" + updatedAt + ", removed=" + removed + "]";
+    }
+
+}
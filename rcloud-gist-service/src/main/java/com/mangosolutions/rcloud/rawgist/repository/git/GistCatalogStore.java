@@ -0,0 +1,412 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangosolutions.rcloud.rawgist.repository.GistError;
+import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+
+/**
+ * Catalog of all the gists held under the repository root, indexed by owner.
+ * <p>
+ * The catalog is held in memory and persisted as an append only journal of
+ * {@link GistCatalogEntry} records, one JSON document per line, in the
+ * <code>.catalog</code> folder of the repository root. Appends and compactions
+ * are serialised across processes with a lock file so that several nodes can
+ * share the same repository root, each node tails the journal before
+ * answering a query to pick up the changes made by the others. If the journal
+ * does not exist it is rebuilt from the <code>gist.json</code> files in the
+ * repository root.
+ */
+@Component
+public class GistCatalogStore implements CatalogStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(GistCatalogStore.class);
+
+    public static final String CATALOG_FOLDER = ".catalog";
+
+    public static final String JOURNAL_FILE = "catalog.journal";
+
+    public static final String LOCK_FILE = "catalog.lock";
+
+    private static final String JOURNAL_COMPACTION_FILE = "catalog.journal.tmp";
+
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
+    private static final Comparator<GistCatalogEntry> MOST_RECENTLY_UPDATED = new Comparator<GistCatalogEntry>() {
+
+        @Override
+        public int compare(GistCatalogEntry entry1, GistCatalogEntry entry2) {
+            DateTime updated1 = entry1.getUpdatedAt();
+            DateTime updated2 = entry2.getUpdatedAt();
+            if (updated1 != null && updated2 != null && !updated1.isEqual(updated2)) {
+                return updated2.compareTo(updated1);
+            }
+            if (updated1 == null && updated2 != null) {
+                return 1;
+            }
+            if (updated1 != null && updated2 == null) {
+                return -1;
+            }
+            return entry1.getId().compareTo(entry2.getId());
+        }
+
+    };
+
+    private File repositoryRoot;
+
+    private File catalogFolder;
+
+    private File journalFile;
+
+    private File lockFile;
+
+    private ObjectMapper objectMapper;
+
+    private Map<String, GistCatalogEntry> entries = new HashMap<>();
+
+    private Map<String, Set<String>> owners = new HashMap<>();
+
+    private Object journalKey;
+
+    private long journalOffset = 0;
+
+    private int journalRecords = 0;
+
+    public GistCatalogStore(File repositoryRoot, ObjectMapper objectMapper) {
+        this.repositoryRoot = repositoryRoot;
+        this.catalogFolder = new File(repositoryRoot, CATALOG_FOLDER);
+        this.journalFile = new File(catalogFolder, JOURNAL_FILE);
+        this.lockFile = new File(catalogFolder, LOCK_FILE);
+        this.objectMapper = objectMapper;
+    }
+
+    @Autowired
+    public GistCatalogStore(@Value("${gists.root}") String repositoryRoot, ObjectMapper objectMapper) {
+        this(new File(repositoryRoot), objectMapper);
+    }
+
+    @PostConstruct
+    public synchronized void initialise() {
+        FileLock lock = lockCatalog();
+        try {
+            if (journalFile.exists()) {
+                refresh();
+                compactIfRequired();
+            } else {
+                rebuild();
+            }
+            logger.info("Loaded catalog of {} gists from {}", entries.size(), journalFile);
+        } finally {
+            releaseCatalog(lock);
+        }
+    }
+
+    @Override
+    public synchronized GistCatalogEntry load(String gistId) {
+        this.refreshOrRebuild();
+        return entries.get(gistId);
+    }
+
+    @Override
+    public synchronized List<GistCatalogEntry> findByOwner(String owner) {
+        this.refreshOrRebuild();
+        List<GistCatalogEntry> ownedEntries = new ArrayList<>();
+        Set<String> gistIds = owners.get(owner);
+        if (gistIds != null) {
+            for (String gistId : gistIds) {
+                ownedEntries.add(entries.get(gistId));
+            }
+        }
+        Collections.sort(ownedEntries, MOST_RECENTLY_UPDATED);
+        return ownedEntries;
+    }
+
+    @Override
+    public void save(GistMetadata metadata) {
+        if (metadata != null && metadata.getId() != null) {
+            this.append(new GistCatalogEntry(metadata));
+        }
+    }
+
+    @Override
+    public void remove(String gistId) {
+        this.append(GistCatalogEntry.removed(gistId));
+    }
+
+    private synchronized void append(GistCatalogEntry entry) {
+        FileLock lock = lockCatalog();
+        try {
+            if (journalFile.exists()) {
+                refresh();
+            } else {
+                rebuild();
+            }
+            byte[] record = toRecord(entry);
+            try (OutputStream out = new FileOutputStream(journalFile, true)) {
+                out.write(record);
+            }
+            journalKey = getFileKey(journalFile);
+            journalOffset += record.length;
+            journalRecords++;
+            apply(entry);
+            compactIfRequired();
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_CATALOG_NOT_WRITEABLE,
+                    "Could not update the catalog entry for gist {}", entry.getId());
+            logger.error(error.getFormattedMessage() + " with path {}", journalFile);
+            throw new GistRepositoryError(error, e);
+        } finally {
+            releaseCatalog(lock);
+        }
+    }
+
+    private void refreshOrRebuild() {
+        if (journalFile.exists()) {
+            refresh();
+        } else {
+            FileLock lock = lockCatalog();
+            try {
+                if (journalFile.exists()) {
+                    refresh();
+                } else {
+                    rebuild();
+                }
+            } finally {
+                releaseCatalog(lock);
+            }
+        }
+    }
+
+    /**
+     * Reads any records appended to the journal since it was last read, if the
+     * journal has been replaced by a compaction then it is read in full.
+     */
+    private void refresh() {
+        try {
+            Object key = getFileKey(journalFile);
+            long length = journalFile.length();
+            if (!ObjectUtils.nullSafeEquals(key, journalKey) || length < journalOffset) {
+                clear();
+                journalKey = key;
+            }
+            if (length > journalOffset) {
+                readJournal();
+            }
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_CATALOG_NOT_READABLE, "Could not read the gist catalog");
+            logger.error(error.getFormattedMessage() + " with path {}", journalFile);
+            throw new GistRepositoryError(error, e);
+        }
+    }
+
+    private void readJournal() throws IOException {
+        try (FileInputStream journal = new FileInputStream(journalFile)) {
+            journal.getChannel().position(journalOffset);
+            InputStream in = new BufferedInputStream(journal);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    journalOffset += line.size() + 1;
+                    readRecord(line.toByteArray());
+                    line.reset();
+                } else {
+                    line.write(b);
+                }
+            }
+            // anything left in the line buffer is a record that is still being written
+        }
+    }
+
+    private void readRecord(byte[] record) {
+        if (record.length > 0) {
+            try {
+                apply(objectMapper.readValue(record, GistCatalogEntry.class));
+                journalRecords++;
+            } catch (IOException e) {
+                logger.warn("Skipping unreadable record in the catalog journal {} at offset {}", journalFile,
+                        journalOffset, e);
+            }
+        }
+    }
+
+    private void apply(GistCatalogEntry entry) {
+        String gistId = entry.getId();
+        GistCatalogEntry previous = null;
+        if (entry.isRemoved()) {
+            previous = entries.remove(gistId);
+        } else {
+            previous = entries.put(gistId, entry);
+        }
+        if (previous != null && previous.getOwner() != null) {
+            Set<String> gistIds = owners.get(previous.getOwner());
+            if (gistIds != null) {
+                gistIds.remove(gistId);
+                if (gistIds.isEmpty()) {
+                    owners.remove(previous.getOwner());
+                }
+            }
+        }
+        if (!entry.isRemoved() && entry.getOwner() != null) {
+            Set<String> gistIds = owners.get(entry.getOwner());
+            if (gistIds == null) {
+                gistIds = new LinkedHashSet<>();
+                owners.put(entry.getOwner(), gistIds);
+            }
+            gistIds.add(gistId);
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        owners.clear();
+        journalKey = null;
+        journalOffset = 0;
+        journalRecords = 0;
+    }
+
+    private void compactIfRequired() {
+        if (journalRecords > MIN_COMPACTION_RECORDS && journalRecords > entries.size() * 2) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.warn("Could not compact the catalog journal {}, will try again on the next update", journalFile,
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal with a single record for each gist, this must only
+     * be called whilst holding the catalog lock.
+     */
+    private void compact() throws IOException {
+        File compactionFile = new File(catalogFolder, JOURNAL_COMPACTION_FILE);
+        try (OutputStream out = new FileOutputStream(compactionFile)) {
+            for (GistCatalogEntry entry : entries.values()) {
+                out.write(toRecord(entry));
+            }
+        }
+        Files.move(compactionFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        journalKey = getFileKey(journalFile);
+        journalOffset = journalFile.length();
+        journalRecords = entries.size();
+        logger.info("Compacted catalog journal {} to {} records", journalFile, journalRecords);
+    }
+
+    /**
+     * Recreates the catalog from the metadata of the gists in the repository
+     * root, this must only be called whilst holding the catalog lock.
+     */
+    private void rebuild() {
+        logger.info("Rebuilding the gist catalog from the gists in {}", repositoryRoot);
+        clear();
+        Iterator<File> metadataFiles = GistFolders.iterateMetadataFiles(repositoryRoot);
+        while (metadataFiles.hasNext()) {
+            File metadataFile = metadataFiles.next();
+            try {
+                GistMetadata metadata = objectMapper.readValue(metadataFile, GistMetadata.class);
+                if (metadata.getId() != null) {
+                    apply(new GistCatalogEntry(metadata));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read the metadata {} when rebuilding the gist catalog", metadataFile, e);
+            }
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_CATALOG_NOT_WRITEABLE, "Could not write the gist catalog");
+            logger.error(error.getFormattedMessage() + " with path {}", journalFile);
+            throw new GistRepositoryError(error, e);
+        }
+    }
+
+    private byte[] toRecord(GistCatalogEntry entry) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(entry);
+        byte[] record = new byte[json.length + 1];
+        System.arraycopy(json, 0, record, 0, json.length);
+        record[json.length] = '\n';
+        return record;
+    }
+
+    private Object getFileKey(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Object key = attributes.fileKey();
+        return key == null ? attributes.creationTime() : key;
+    }
+
+    private FileLock lockCatalog() {
+        FileChannel channel = null;
+        try {
+            FileUtils.forceMkdir(catalogFolder);
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return channel.lock();
+        } catch (IOException e) {
+            closeQuietly(channel);
+            GistError error = new GistError(GistErrorCode.ERR_CATALOG_NOT_WRITEABLE, "Could not lock the gist catalog");
+            logger.error(error.getFormattedMessage() + " with path {}", lockFile);
+            throw new GistRepositoryError(error, e);
+        }
+    }
+
+    private void releaseCatalog(FileLock lock) {
+        closeQuietly(lock.channel());
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not release the lock on the gist catalog {}", lockFile, e);
+            }
+        }
+    }
+
+}
@@ -8,31 +8,48 @@ package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
 import com.mangosolutions.rcloud.rawgist.repository.GistError;
 import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
+/**
+ * Stores the comments of each gist in a {@link CommentJournal}. The journals
+ * of the most recently used gists are kept open along with their indexes, the
+ * other gists count their comments from the summary of their journal.
+ */
 @Component
 public class GistCommentStore implements CommentStore {
 
 	private static final Logger logger = LoggerFactory.getLogger(GistCommentStore.class);
 
+	private static final int MAX_JOURNALS = 1000;
+
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	private final Map<File, CommentJournal> journals = new LinkedHashMap<File, CommentJournal>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, CommentJournal> eldest) {
+			return size() > MAX_JOURNALS;
+		}
+
+	};
+
 	public GistCommentStore() {
 		this.objectMapper = new ObjectMapper();
 	}
@@ -51,37 +68,81 @@ public class GistCommentStore implements CommentStore {
 	}
 
 	@Override
-	@Cacheable(value = "commentstore", key = "#store.getAbsolutePath()")
-	public List<GistCommentResponse> load(File store) {
-		List<GistCommentResponse> comments = new ArrayList<>();
-		if (store.exists()) {
-			try {
-				comments = objectMapper.readValue(store, new TypeReference<List<GistCommentResponse>>() {
-				});
-			} catch (IOException e) {
-				GistError error = new GistError(GistErrorCode.ERR_COMMENTS_NOT_READABLE, "Could not read comments");
-				logger.error(error.getFormattedMessage() + " with path {}", store);
-				throw new GistRepositoryError(error, e);
-			}
+	public ResultPage<GistCommentResponse> load(File store, DateTime since, int page, int perPage) {
+		try {
+			return getJournal(store).readPage(since, page, perPage);
+		} catch (IOException e) {
+			throw notReadable(store, e);
+		}
+	}
+
+	@Override
+	public GistCommentResponse load(File store, long commentId) {
+		try {
+			return getJournal(store).read(commentId);
+		} catch (IOException e) {
+			throw notReadable(store, e);
+		}
+	}
+
+	@Override
+	public int count(File store) {
+		try {
+			return getJournal(store).count();
+		} catch (IOException e) {
+			throw notReadable(store, e);
+		}
+	}
+
+	@Override
+	public String version(File store) {
+		try {
+			return getJournal(store).version();
+		} catch (IOException e) {
+			throw notReadable(store, e);
+		}
+	}
+
+	@Override
+	public GistCommentResponse save(File store, GistCommentResponse comment) {
+		try {
+			return getJournal(store).append(comment);
+		} catch (IOException e) {
+			throw notWriteable(store, e);
 		}
-		return comments == null? new ArrayList<GistCommentResponse>(): comments;
 	}
 
 	@Override
-	@CachePut(cacheNames = "commentstore", key = "#store.getAbsolutePath()")
-	public List<GistCommentResponse> save(File store, List<GistCommentResponse> comments) {
-		if(comments != null) {
-			try {
-				objectMapper.writeValue(store, comments);
-			} catch (IOException e) {
-				GistError error = new GistError(GistErrorCode.ERR_COMMENTS_NOT_WRITEABLE, "Could not save comments");
-				logger.error(error.getFormattedMessage() + " with path {}", store);
-				throw new GistRepositoryError(error, e);
+	public boolean remove(File store, long commentId) {
+		try {
+			return getJournal(store).remove(commentId);
+		} catch (IOException e) {
+			throw notWriteable(store, e);
+		}
+	}
+
+	private CommentJournal getJournal(File store) {
+		synchronized (journals) {
+			CommentJournal journal = journals.get(store);
+			if (journal == null) {
+				File legacyFile = new File(store.getParentFile(), RepositoryLayout.COMMENTS_FILE);
+				journal = new CommentJournal(store, legacyFile, objectMapper);
+				journals.put(store, journal);
 			}
+			return journal;
 		}
-		return comments;
 	}
 
+	private GistRepositoryError notReadable(File store, IOException e) {
+		GistError error = new GistError(GistErrorCode.ERR_COMMENTS_NOT_READABLE, "Could not read comments");
+		logger.error(error.getFormattedMessage() + " with path {}", store);
+		return new GistRepositoryError(error, e);
+	}
 
+	private GistRepositoryError notWriteable(File store, IOException e) {
+		GistError error = new GistError(GistErrorCode.ERR_COMMENTS_NOT_WRITEABLE, "Could not save comments");
+		logger.error(error.getFormattedMessage() + " with path {}", store);
+		return new GistRepositoryError(error, e);
+	}
 
 }
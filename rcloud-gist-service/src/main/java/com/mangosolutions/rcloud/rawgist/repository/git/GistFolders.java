@@ -0,0 +1,44 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.io.filefilter.NameFileFilter;
+
+/**
+ * Finds the gists under the repository root. Folders whose name starts with a
+ * dot are not searched, which leaves out the recycle folder, deleted gists
+ * waiting to be moved into it and the folders of the catalog and the shared
+ * object pool, as are the git and comment folders of each gist.
+ */
+public final class GistFolders {
+
+    private static final IOFileFilter FOLDER_FILTER = FileFilterUtils.and(
+            FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")),
+            FileFilterUtils.notFileFilter(new NameFileFilter(new String[] {
+                    RepositoryLayout.GIST_BARE_REPOSITORY_FOLDER, RepositoryLayout.COMMENT_REPOSITORY_FOLDER })));
+
+    private static final IOFileFilter METADATA_FILTER = FileFilterUtils.and(FileFilterUtils.fileFileFilter(),
+            new NameFileFilter(RepositoryLayout.GIST_META_FILE));
+
+    private GistFolders() {
+    }
+
+    /**
+     * Iterates over the metadata files of the gists under the repository
+     * root, the folders are read as the iteration proceeds.
+     */
+    public static Iterator<File> iterateMetadataFiles(File repositoryRoot) {
+        return FileUtils.iterateFiles(repositoryRoot, METADATA_FILTER, FOLDER_FILTER);
+    }
+
+}
@@ -0,0 +1,478 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
+import com.mangosolutions.rcloud.rawgist.model.GistIdentity;
+import com.mangosolutions.rcloud.rawgist.model.GitChangeStatus;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
+
+/**
+ * An append-only index of the commits of a gist, so that the history of a gist
+ * is read with a sequential scan of a small file rather than by diffing every
+ * commit of the repository on each read.
+ * <p>
+ * The index holds one line per commit, oldest first, with the tab separated
+ * commit id, commit time in seconds, additions, deletions, total changes and
+ * author. A commit is appended by the {@link BareCommitCommand} that creates
+ * it. Gists created before the index existed, or an index that missed a commit,
+ * are brought up to date from the commits of the repository the next time the
+ * history is read.
+ */
+public class GistHistoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(GistHistoryIndex.class);
+
+    private static final String SEPARATOR = "\t";
+
+    private static final int FIELD_COUNT = 6;
+
+    private static final int TAIL_SIZE = 4096;
+
+    private final File indexFile;
+
+    public GistHistoryIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Appends a new commit to the index, the commit is only appended when the
+     * index is up to date with the parent of the commit, otherwise the index is
+     * left to be brought up to date when it is next read.
+     *
+     * @return the history entry of the commit or null if it could not be
+     *         created.
+     */
+    public GistHistory append(Repository repository, RevCommit commit) {
+        GistHistory entry = null;
+        try {
+            entry = createEntry(repository, commit);
+            String expectedParent = commit.getParentCount() == 0 ? null : commit.getParent(0).getName();
+            String lastVersion = readLastVersion();
+            if (expectedParent == null ? indexFile.length() > 0 : !expectedParent.equals(lastVersion)) {
+                logger.debug("History index {} is not up to date, not appending commit {}", indexFile,
+                        commit.getName());
+                return entry;
+            }
+            try (OutputStream out = new FileOutputStream(indexFile, true)) {
+                out.write(format(entry).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not append commit {} to history index {}", commit.getName(), indexFile, e);
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the history of the gist from the given commit backwards, newest
+     * first as it is returned by the api.
+     *
+     * @return the history or null when the commit is not part of the history
+     *         of the gist.
+     */
+    public List<GistHistory> load(Repository repository, String commitId) throws IOException {
+        List<GistHistory> entries = readEntries();
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return Collections.emptyList();
+        }
+        String lastVersion = entries.isEmpty() ? null : entries.get(entries.size() - 1).getVersion();
+        if (!head.getName().equals(lastVersion)) {
+            entries = update(repository, head, entries);
+        }
+        String version = commitId == null ? head.getName() : commitId;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).getVersion().equals(version)) {
+                List<GistHistory> history = new ArrayList<>(i + 1);
+                for (int j = i; j >= 0; j--) {
+                    history.add(entries.get(j));
+                }
+                return history;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a page of the history of the gist from the given commit backwards,
+     * newest first. The index is read from its end, so only the entries up to
+     * the page are parsed, and the total is the number of index records up to
+     * the commit.
+     *
+     * @return the page or null when the commit is not part of the history of
+     *         the gist.
+     */
+    public ResultPage<GistHistory> loadPage(Repository repository, String commitId, int page, int perPage)
+            throws IOException {
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return new ResultPage<GistHistory>(Collections.<GistHistory>emptyList(), page, perPage, 0);
+        }
+        String version = commitId == null ? head.getName() : commitId;
+        long skip = (long) (page - 1) * perPage;
+        if (head.getName().equals(readLastVersion())) {
+            try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+                TailReader reader = new TailReader(file);
+                List<GistHistory> items = reader.read(version, skip, perPage);
+                if (items != null) {
+                    int total = countRecords(file, reader.getCommitStart()) + 1;
+                    return new ResultPage<GistHistory>(items, page, perPage, total);
+                }
+            }
+        }
+        // the index is brought up to date with the commits that are missing
+        List<GistHistory> history = load(repository, commitId);
+        return history == null ? null : ResultPage.of(history, page, perPage);
+    }
+
+    /**
+     * Counts the records of the index that end before the given offset, the
+     * lines are counted without parsing them.
+     */
+    private int countRecords(RandomAccessFile file, long end) throws IOException {
+        byte[] buffer = new byte[TAIL_SIZE];
+        int count = 0;
+        file.seek(0);
+        long position = 0;
+        while (position < end) {
+            int read = file.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    count++;
+                }
+            }
+            position += read;
+        }
+        return count;
+    }
+
+    private List<GistHistory> update(Repository repository, ObjectId head, List<GistHistory> entries)
+            throws IOException {
+        String lastVersion = entries.isEmpty() ? null : entries.get(entries.size() - 1).getVersion();
+        LinkedList<GistHistory> missing = new LinkedList<>();
+        boolean found = false;
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            RevCommit commit = revWalk.parseCommit(head);
+            while (commit != null) {
+                if (commit.getName().equals(lastVersion)) {
+                    found = true;
+                    break;
+                }
+                missing.addFirst(createEntry(repository, commit));
+                commit = commit.getParentCount() == 0 ? null : revWalk.parseCommit(commit.getParent(0));
+            }
+        }
+        List<GistHistory> updated = new ArrayList<>();
+        if (found) {
+            updated.addAll(entries);
+        }
+        updated.addAll(missing);
+        logger.debug("Updating history index {} with {} commits", indexFile, missing.size());
+        write(updated);
+        return updated;
+    }
+
+    private String readLastVersion() throws IOException {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+            long length = file.length();
+            int size = (int) Math.min(length, TAIL_SIZE);
+            byte[] tail = new byte[size];
+            file.seek(length - size);
+            file.readFully(tail);
+            String[] lines = new String(tail, StandardCharsets.UTF_8).split("\n");
+            if (size == 0 || tail[size - 1] != '\n') {
+                return null;
+            }
+            if (lines.length < 2 && size < length) {
+                List<GistHistory> entries = readEntries();
+                return entries.isEmpty() ? null : entries.get(entries.size() - 1).getVersion();
+            }
+            GistHistory entry = parse(lines[lines.length - 1]);
+            return entry == null ? null : entry.getVersion();
+        }
+    }
+
+    private List<GistHistory> readEntries() throws IOException {
+        List<GistHistory> entries = new ArrayList<>();
+        if (!indexFile.exists()) {
+            return entries;
+        }
+        String content = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+        String[] lines = content.split("\n");
+        // a last line without a line end is an append that did not complete
+        int complete = content.endsWith("\n") ? lines.length : lines.length - 1;
+        for (int i = 0; i < complete; i++) {
+            GistHistory entry = parse(lines[i]);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private void write(List<GistHistory> entries) {
+        // readers sharing the gist may rewrite the index at the same time, each
+        // writes its own temp file so a mix of both is never moved into place
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(indexFile.getParentFile().toPath(), indexFile.getName(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (GistHistory entry : entries) {
+                    writer.write(format(entry));
+                }
+            }
+            Files.move(tempFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write history index {}", indexFile, e);
+            deleteQuietly(tempFile);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.debug("Could not delete {}", file, e);
+            }
+        }
+    }
+
+    private String format(GistHistory entry) {
+        GitChangeStatus status = entry.getChangeStatus();
+        StringBuilder line = new StringBuilder();
+        line.append(entry.getVersion()).append(SEPARATOR);
+        line.append(entry.getCommittedAt().getMillis() / 1000).append(SEPARATOR);
+        line.append(status.getAdditions()).append(SEPARATOR);
+        line.append(status.getDeletions()).append(SEPARATOR);
+        line.append(status.getTotal()).append(SEPARATOR);
+        line.append(entry.getUser().getLogin().replaceAll("[\\t\\r\\n]", " "));
+        line.append('\n');
+        return line.toString();
+    }
+
+    private GistHistory parse(String line) {
+        String[] fields = line.split(SEPARATOR, FIELD_COUNT);
+        if (fields.length != FIELD_COUNT) {
+            logger.warn("Ignoring incomplete entry in history index {}", indexFile);
+            return null;
+        }
+        try {
+            GistHistory history = new GistHistory();
+            history.setVersion(fields[0]);
+            history.setCommittedAt(new DateTime(Long.parseLong(fields[1]) * 1000, DateTimeZone.UTC));
+            GitChangeStatus status = new GitChangeStatus();
+            status.setAdditions(Integer.parseInt(fields[2]));
+            status.setDeletions(Integer.parseInt(fields[3]));
+            status.setTotal(Integer.parseInt(fields[4]));
+            history.setChangeStatus(status);
+            GistIdentity user = new GistIdentity();
+            user.setLogin(fields[5]);
+            history.setUser(user);
+            return history;
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid entry in history index {}", indexFile);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the history entry of a commit, the changes are counted in the
+     * same way as the grgit show operation does.
+     */
+    public static GistHistory createEntry(Repository repository, RevCommit commit) throws IOException {
+        GitChangeStatus status = new GitChangeStatus();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.setRecursive(true);
+            if (commit.getParentCount() == 0) {
+                treeWalk.addTree(commit.getTree());
+                int added = 0;
+                while (treeWalk.next()) {
+                    added++;
+                }
+                status.setAdditions(added);
+                status.setTotal(added);
+            } else {
+                try (RevWalk revWalk = new RevWalk(repository)) {
+                    RevCommit parent = revWalk.parseCommit(commit.getParent(0));
+                    treeWalk.addTree(parent.getTree());
+                }
+                treeWalk.addTree(commit.getTree());
+                RenameDetector renameDetector = new RenameDetector(repository);
+                renameDetector.addAll(DiffEntry.scan(treeWalk));
+                List<DiffEntry> changes = renameDetector.compute();
+                int additions = 0;
+                int deletions = 0;
+                for (DiffEntry change : changes) {
+                    if (change.getChangeType() == ChangeType.ADD) {
+                        additions++;
+                    } else if (change.getChangeType() == ChangeType.DELETE) {
+                        deletions++;
+                    }
+                }
+                status.setAdditions(additions);
+                status.setDeletions(deletions);
+                status.setTotal(changes.size());
+            }
+        }
+        GistHistory history = new GistHistory();
+        history.setVersion(commit.getName());
+        history.setCommittedAt(new DateTime(commit.getCommitTime() * 1000L, DateTimeZone.UTC));
+        GistIdentity user = new GistIdentity();
+        user.setLogin(commit.getAuthorIdent().getName());
+        history.setUser(user);
+        history.setChangeStatus(status);
+        return history;
+    }
+
+    /**
+     * Reads the complete lines of the index backwards from its end.
+     */
+    private class TailReader {
+
+        private final RandomAccessFile file;
+
+        private long position;
+
+        private byte[] pending = new byte[0];
+
+        private int pendingEnd;
+
+        private long lineStart;
+
+        private long commitStart = -1;
+
+        TailReader(RandomAccessFile file) throws IOException {
+            this.file = file;
+            this.position = file.length();
+        }
+
+        /**
+         * Skips the lines newer than the commit, then the given number of
+         * entries from the commit and returns up to limit entries.
+         *
+         * @return the entries or null when the commit is not in the index.
+         */
+        List<GistHistory> read(String version, long skip, int limit) throws IOException {
+            List<GistHistory> entries = new ArrayList<>();
+            if (!endsWithLine()) {
+                return null;
+            }
+            long skipped = 0;
+            String line;
+            while (entries.size() < limit && (line = previousLine()) != null) {
+                GistHistory entry = parse(line);
+                if (entry == null) {
+                    continue;
+                }
+                if (commitStart < 0) {
+                    if (!entry.getVersion().equals(version)) {
+                        continue;
+                    }
+                    commitStart = lineStart;
+                }
+                if (skipped < skip) {
+                    skipped++;
+                } else {
+                    entries.add(entry);
+                }
+            }
+            return commitStart < 0 ? null : entries;
+        }
+
+        /**
+         * The offset of the start of the line of the commit.
+         */
+        long getCommitStart() {
+            return commitStart;
+        }
+
+        private boolean endsWithLine() throws IOException {
+            if (position == 0) {
+                return false;
+            }
+            file.seek(position - 1);
+            if (file.read() != '\n') {
+                return false;
+            }
+            position--;
+            return true;
+        }
+
+        private String previousLine() throws IOException {
+            while (true) {
+                for (int i = pendingEnd - 1; i >= 0; i--) {
+                    if (pending[i] == '\n') {
+                        String line = new String(pending, i + 1, pendingEnd - i - 1, StandardCharsets.UTF_8);
+                        pendingEnd = i;
+                        lineStart = position + i + 1;
+                        return line;
+                    }
+                }
+                if (position == 0) {
+                    if (pendingEnd == 0) {
+                        return null;
+                    }
+                    String line = new String(pending, 0, pendingEnd, StandardCharsets.UTF_8);
+                    pendingEnd = 0;
+                    lineStart = 0;
+                    return line;
+                }
+                int size = (int) Math.min(position, TAIL_SIZE);
+                byte[] chunk = new byte[size + pendingEnd];
+                position -= size;
+                file.seek(position);
+                file.readFully(chunk, 0, size);
+                System.arraycopy(pending, 0, chunk, size, pendingEnd);
+                pending = chunk;
+                pendingEnd = chunk.length;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,19 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Provides the locks that guard access to a gist. The read lock is taken by
+ * operations that only read the gist and the write lock by those that change it.
+ */
+public interface GistLockManager {
+
+    ReadWriteLock getLock(String gistId);
+
+}
@@ -8,6 +8,8 @@ package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +31,8 @@ public class GistMetadataStore implements MetadataStore {
 	@Autowired
 	private ObjectMapper objectMapper;
 
+	private CatalogStore catalogStore;
+
 	public GistMetadataStore() {
 		this.objectMapper = new ObjectMapper();
 	}
@@ -46,6 +50,15 @@ public class GistMetadataStore implements MetadataStore {
 		this.objectMapper = objectMapper;
 	}
 
+	public CatalogStore getCatalogStore() {
+		return catalogStore;
+	}
+
+	@Autowired(required = false)
+	public void setCatalogStore(CatalogStore catalogStore) {
+		this.catalogStore = catalogStore;
+	}
+
 
 	@Override
 	@Cacheable(value = "metadatastore", key = "#store.getAbsolutePath()")
@@ -69,12 +82,18 @@ public class GistMetadataStore implements MetadataStore {
 	@CachePut(cacheNames = "metadatastore", key = "#store.getAbsolutePath()")
 	public GistMetadata save(File store, GistMetadata metadata) {
 		try {
-			objectMapper.writeValue(store, metadata);
+			File tempStore = new File(store.getParentFile(), store.getName() + ".tmp");
+			objectMapper.writeValue(tempStore, metadata);
+			Files.move(tempStore.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
 		} catch (IOException e) {
 			GistError error = new GistError(GistErrorCode.ERR_METADATA_NOT_WRITEABLE, "Could not update metadata for gist {}", metadata.getId());
 			logger.error(error.getFormattedMessage() + " with path {}", store);
 			throw new GistRepositoryError(error, e);
 		}
+		if(catalogStore != null) {
+			catalogStore.save(metadata);
+		}
 		return metadata;
 	}
 
@@ -11,6 +11,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -44,17 +45,35 @@ public class GistOperationFactory {
     private FileContentCache fileContentCache = new FileContentCache() {
 
         @Override
-        public FileContent load(String contentId, String path) {
+        public FileContent load(String objectId) {
             return null;
         }
 
         @Override
-        public FileContent save(String contentId, String path, FileContent content) {
+        public FileContent save(String objectId, FileContent content) {
             return content;
         }
 
     };
 
+    @Autowired(required = false)
+    private GitRepositoryPool repositoryPool;
+
+    @Autowired(required = false)
+    private SharedObjectPool objectPool;
+
+    @Value("${gists.historyLimit:0}")
+    private int historyLimit = 0;
+
+    @Value("${gists.truncateSize:0}")
+    private long truncateSize = 0;
+
+    @Value("${gists.directCommit:true}")
+    private boolean directCommit = true;
+
+    @Value("${gists.forkMode:" + ForkGistOperation.CLONE_FORK_MODE + "}")
+    private String forkMode = ForkGistOperation.CLONE_FORK_MODE;
+
     @Autowired
     private MetadataStore metadataStore;
 
@@ -87,6 +106,54 @@ public class GistOperationFactory {
         this.historyCache = historyCache;
     }
 
+    public GitRepositoryPool getRepositoryPool() {
+        return repositoryPool;
+    }
+
+    public void setRepositoryPool(GitRepositoryPool repositoryPool) {
+        this.repositoryPool = repositoryPool;
+    }
+
+    public SharedObjectPool getObjectPool() {
+        return objectPool;
+    }
+
+    public void setObjectPool(SharedObjectPool objectPool) {
+        this.objectPool = objectPool;
+    }
+
+    public int getHistoryLimit() {
+        return historyLimit;
+    }
+
+    public void setHistoryLimit(int historyLimit) {
+        this.historyLimit = historyLimit;
+    }
+
+    public boolean isDirectCommit() {
+        return directCommit;
+    }
+
+    public void setDirectCommit(boolean directCommit) {
+        this.directCommit = directCommit;
+    }
+
+    public String getForkMode() {
+        return forkMode;
+    }
+
+    public void setForkMode(String forkMode) {
+        this.forkMode = forkMode;
+    }
+
+    public long getTruncateSize() {
+        return truncateSize;
+    }
+
+    public void setTruncateSize(long truncateSize) {
+        this.truncateSize = truncateSize;
+    }
+
     public MetadataStore getMetadataStore() {
         return metadataStore;
     }
@@ -105,7 +172,7 @@ public class GistOperationFactory {
 
     public ReadGistOperation getReadOperation(RepositoryLayout layout, String gistId, UserDetails user,
             String commitId) {
-        GistCommentRepository repository = new GitGistCommentRepository(layout.getCommentsFile(), commentStore);
+        GistCommentRepository repository = new GitGistCommentRepository(layout.getCommentsJournalFile(), commentStore);
         ReadGistOperation op = new ReadGistOperation(layout, gistId, user);
         if (!StringUtils.isEmpty(commitId)) {
             op.setCommitId(commitId);
@@ -115,33 +182,47 @@ public class GistOperationFactory {
         op.setHistorycache(historyCache);
         op.setMetadataStore(this.metadataStore);
         op.setFileContentCache(fileContentCache);
+        op.setRepositoryPool(repositoryPool);
+        op.setHistoryLimit(historyLimit);
+        op.setTruncateSize(truncateSize);
         return op;
     }
 
     public CreateOrUpdateGistOperation getCreateOrUpdateOperation(RepositoryLayout layout, String gistId,
             GistRequest gistRequest, UserDetails user) {
-        GistCommentRepository repository = new GitGistCommentRepository(layout.getCommentsFile(), commentStore);
+        GistCommentRepository repository = new GitGistCommentRepository(layout.getCommentsJournalFile(), commentStore);
         CreateOrUpdateGistOperation op = new CreateOrUpdateGistOperation(layout, gistId, gistRequest, user);
         op.setCommentRepository(repository);
         op.setHistorycache(historyCache);
         op.setMetadataStore(this.metadataStore);
         op.setFileContentCache(fileContentCache);
+        op.setRepositoryPool(repositoryPool);
+        op.setHistoryLimit(historyLimit);
+        op.setTruncateSize(truncateSize);
+        op.setDirectCommit(directCommit);
         return op;
     }
 
     public ForkGistOperation getForkOperation(RepositoryLayout layout, String gistId, GistRepository originalRepository,
             GistRepository newRepository, UserDetails user) {
-        GistCommentRepository repository = new GitGistCommentRepository(layout.getCommentsFile(), commentStore);
+        GistCommentRepository repository = new GitGistCommentRepository(layout.getCommentsJournalFile(), commentStore);
         ForkGistOperation op = new ForkGistOperation(layout, originalRepository, newRepository, gistId, user);
         op.setCommentRepository(repository);
         op.setHistorycache(historyCache);
         op.setMetadataStore(this.metadataStore);
         op.setFileContentCache(fileContentCache);
+        op.setRepositoryPool(repositoryPool);
+        op.setHistoryLimit(historyLimit);
+        op.setTruncateSize(truncateSize);
+        op.setForkMode(forkMode);
+        op.setObjectPool(objectPool);
         return op;
     }
 
     public InitRepositoryLayoutOperation getInitRepositoryLayoutOperation(File repositoryRoot) {
-        return new InitRepositoryLayoutOperation(repositoryRoot);
+        InitRepositoryLayoutOperation op = new InitRepositoryLayoutOperation(repositoryRoot);
+        op.setObjectPool(objectPool);
+        return op;
     }
 
 }
@@ -0,0 +1,265 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Moves deleted gists into the recycle folder of the repository root, where
+ * each deleted gist has an entry folder named after its id holding the gist
+ * folder and a tombstone that records when it was deleted.
+ * <p>
+ * A deleted gist is taken out of the repository tree by a single rename, so
+ * the gist lock is only held for as long as that takes. When the recycle
+ * folder is on another file system the gist is renamed to a hidden folder
+ * beside it instead, and moved into the recycle folder in the background.
+ * Its entry records the hidden folder until then, so that a hidden folder left
+ * behind when the move does not complete is still found and purged.
+ */
+@Component
+public class GistRecycler {
+
+    private static final Logger logger = LoggerFactory.getLogger(GistRecycler.class);
+
+    public static final String RECYCLE_FOLDER = ".recycle";
+
+    public static final String TOMBSTONE_FILE = "tombstone.json";
+
+    public static final String REMOVED_FILE = "removed";
+
+    private static final String DELETED_SUFFIX = ".deleted";
+
+    private final File recycleRoot;
+
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Autowired(required = false)
+    private ForkObjectRelinker forkObjectRelinker;
+
+    public GistRecycler(File repositoryRoot, ObjectMapper objectMapper) {
+        this.recycleRoot = new File(repositoryRoot, RECYCLE_FOLDER);
+        this.objectMapper = objectMapper;
+    }
+
+    @Autowired
+    public GistRecycler(@Value("${gists.root}") String repositoryRoot, ObjectMapper objectMapper) {
+        this(new File(repositoryRoot), objectMapper);
+    }
+
+    public File getRecycleRoot() {
+        return recycleRoot;
+    }
+
+    public void setForkObjectRelinker(ForkObjectRelinker forkObjectRelinker) {
+        this.forkObjectRelinker = forkObjectRelinker;
+    }
+
+    /**
+     * Renames the gist folder out of the repository tree, into its recycle
+     * entry when the recycle folder is on the same file system.
+     *
+     * @return the new location of the gist folder.
+     */
+    public File remove(String gistId, File repositoryFolder) throws IOException {
+        File entry = getEntryFolder(gistId);
+        FileUtils.forceMkdir(entry);
+        File recycledFolder = new File(entry, repositoryFolder.getName());
+        try {
+            Files.move(repositoryFolder.toPath(), recycledFolder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return recycledFolder;
+        } catch (AtomicMoveNotSupportedException e) {
+            File hiddenFolder = new File(repositoryFolder.getParentFile(),
+                    "." + repositoryFolder.getName() + DELETED_SUFFIX);
+            Files.write(new File(entry, REMOVED_FILE).toPath(),
+                    hiddenFolder.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            Files.move(repositoryFolder.toPath(), hiddenFolder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return hiddenFolder;
+        }
+    }
+
+    /**
+     * Completes the deletion of a gist in the background. A gist left beside
+     * its original location is moved into its recycle entry once its forks no
+     * longer borrow its objects, and the tombstone is written.
+     *
+     * @param removedFolder
+     *            the location returned by {@link #remove(String, File)}.
+     * @param forkGitFolders
+     *            the git folders of the forks of the gist by their gist id.
+     * @param detached
+     *            completes once the forks have their own copy of the objects
+     *            of the gist, may be null.
+     */
+    public Future<?> recycle(final String gistId, final File removedFolder, final Map<String, File> forkGitFolders,
+            final Future<?> detached) {
+        final long deletedAt = System.currentTimeMillis();
+        return executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    await(detached);
+                    File recycledFolder = moveToEntry(gistId, removedFolder, forkGitFolders);
+                    writeTombstone(gistId, recycledFolder.getParentFile(), deletedAt);
+                } catch (IOException e) {
+                    logger.error("Could not move deleted gist {} from {} into the recycle folder", gistId,
+                            removedFolder, e);
+                }
+            }
+
+        });
+    }
+
+    private File moveToEntry(String gistId, File removedFolder, Map<String, File> forkGitFolders) throws IOException {
+        File entry = getEntryFolder(gistId);
+        if (removedFolder.getParentFile().equals(entry)) {
+            return removedFolder;
+        }
+        String name = removedFolder.getName();
+        File recycledFolder = new File(entry, name.substring(1, name.length() - DELETED_SUFFIX.length()));
+        FileUtils.moveDirectory(removedFolder, recycledFolder);
+        if (forkObjectRelinker != null && !forkGitFolders.isEmpty()) {
+            forkObjectRelinker.relink(forkGitFolders, new RepositoryLayout(removedFolder).getBareFolder(),
+                    new RepositoryLayout(recycledFolder).getBareFolder());
+        }
+        Files.deleteIfExists(new File(entry, REMOVED_FILE).toPath());
+        return recycledFolder;
+    }
+
+    private void writeTombstone(String gistId, File entry, long deletedAt) throws IOException {
+        Map<String, Object> tombstone = new LinkedHashMap<>();
+        tombstone.put("id", gistId);
+        tombstone.put("deleted_at", deletedAt);
+        File tombstoneFile = new File(entry, TOMBSTONE_FILE);
+        File tempFile = new File(entry, "." + TOMBSTONE_FILE);
+        objectMapper.writeValue(tempFile, tombstone);
+        Files.move(tempFile.toPath(), tombstoneFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void await(Future<?> detached) {
+        if (detached == null) {
+            return;
+        }
+        try {
+            detached.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Could not copy the objects of a deleted gist into its forks", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the recycle entries of gists deleted before the given time.
+     * An entry without a tombstone, which was deleted before tombstones were
+     * written or whose deletion is still completing, is dated by its folder.
+     */
+    public List<File> findDeletedBefore(long time) {
+        List<File> entries = new ArrayList<>();
+        File[] folders = recycleRoot.listFiles();
+        if (folders == null) {
+            return entries;
+        }
+        for (File entry : folders) {
+            if (entry.isDirectory() && !entry.getName().startsWith(".") && getDeletedAt(entry) < time) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the gist folder of the recycle entry, which is the hidden folder
+     * beside the original location of the gist when it has not been moved
+     * into the entry, or null if it has none.
+     */
+    public File getGistFolder(File entry) throws IOException {
+        File[] folders = entry.listFiles();
+        if (folders != null) {
+            for (File folder : folders) {
+                if (new File(folder, RepositoryLayout.GIST_META_FILE).exists()) {
+                    return folder;
+                }
+            }
+        }
+        File removedFolder = getRemovedFolder(entry);
+        return removedFolder != null && removedFolder.exists() ? removedFolder : null;
+    }
+
+    /**
+     * Deletes the recycle entry, and the hidden folder of the gist when it
+     * was not moved into the entry.
+     */
+    public void purge(File entry) throws IOException {
+        File removedFolder = getRemovedFolder(entry);
+        if (removedFolder != null) {
+            FileUtils.deleteDirectory(removedFolder);
+        }
+        FileUtils.deleteDirectory(entry);
+    }
+
+    private File getRemovedFolder(File entry) throws IOException {
+        File removedFile = new File(entry, REMOVED_FILE);
+        if (!removedFile.exists()) {
+            return null;
+        }
+        return new File(new String(Files.readAllBytes(removedFile.toPath()), StandardCharsets.UTF_8).trim());
+    }
+
+    private long getDeletedAt(File entry) {
+        File tombstoneFile = new File(entry, TOMBSTONE_FILE);
+        if (tombstoneFile.exists()) {
+            try {
+                Map<?, ?> tombstone = objectMapper.readValue(tombstoneFile, Map.class);
+                Object deletedAt = tombstone.get("deleted_at");
+                if (deletedAt instanceof Number) {
+                    return ((Number) deletedAt).longValue();
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read the tombstone {}", tombstoneFile, e);
+            }
+        }
+        return entry.lastModified();
+    }
+
+    private File getEntryFolder(String gistId) {
+        return new File(recycleRoot, gistId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -14,10 +14,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.mangosolutions.rcloud.rawgist.model.Fork;
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
 import com.mangosolutions.rcloud.rawgist.repository.GistCommentRepository;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepository;
+import com.mangosolutions.rcloud.rawgist.repository.GistVersion;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGist;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGistFile;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
 public class GitGistRepository implements GistRepository, Serializable {
 
@@ -25,7 +30,7 @@ public class GitGistRepository implements GistRepository, Serializable {
 
     private static final Logger logger = LoggerFactory.getLogger(GitGistRepository.class);
 
-    static final String B64_BINARY_EXTENSION = "b64";
+    public static final String B64_BINARY_EXTENSION = "b64";
 
     private GistOperationFactory gistOperationFactory;
 
@@ -43,7 +48,7 @@ public class GitGistRepository implements GistRepository, Serializable {
         this.gistOperationFactory = gistOperationFactory;
         this.metadataStore = gistOperationFactory.getMetadataStore();
         this.commentStore = gistOperationFactory.getCommentStore();
-        InitRepositoryLayoutOperation op = new InitRepositoryLayoutOperation(repositoryFolder);
+        InitRepositoryLayoutOperation op = gistOperationFactory.getInitRepositoryLayoutOperation(repositoryFolder);
         this.layout = op.call();
     }
 
@@ -71,6 +76,37 @@ public class GitGistRepository implements GistRepository, Serializable {
         return readGistInternal(commitId, userDetails);
     }
 
+    @Override
+    public GistResponse readGistSummary(UserDetails userDetails) {
+        ReadGistOperation op = gistOperationFactory.getReadOperation(layout, this.getId(), userDetails, null);
+        op.setSummary(true);
+        return op.call();
+    }
+
+    @Override
+    public ResultPage<GistHistory> readHistory(int page, int perPage, UserDetails userDetails) {
+        ReadGistOperation op = gistOperationFactory.getReadOperation(layout, this.getId(), userDetails, null);
+        return op.readHistory(page, perPage);
+    }
+
+    @Override
+    public OpenGist openGist(String commitId, UserDetails userDetails) {
+        ReadGistOperation op = gistOperationFactory.getReadOperation(layout, this.getId(), userDetails, commitId);
+        return op.openGist();
+    }
+
+    @Override
+    public OpenGistFile openFile(String commitId, String fileName, UserDetails userDetails) {
+        ReadGistOperation op = gistOperationFactory.getReadOperation(layout, this.getId(), userDetails, commitId);
+        return op.openFile(fileName);
+    }
+
+    @Override
+    public GistVersion readVersion(String commitId, UserDetails userDetails) {
+        ReadGistOperation op = gistOperationFactory.getReadOperation(layout, this.getId(), userDetails, commitId);
+        return op.readVersion();
+    }
+
     @Override
     public GistResponse createGist(GistRequest request, String gistId, UserDetails userDetails) {
         CreateOrUpdateGistOperation op = gistOperationFactory.getCreateOrUpdateOperation(layout, gistId, request,
@@ -87,8 +123,14 @@ public class GitGistRepository implements GistRepository, Serializable {
 
     @Override
     public GistResponse updateGist(GistRequest request, UserDetails userDetails) {
+        return this.updateGist(request, userDetails, true);
+    }
+
+    @Override
+    public GistResponse updateGist(GistRequest request, UserDetails userDetails, boolean readResponse) {
         CreateOrUpdateGistOperation op = gistOperationFactory.getCreateOrUpdateOperation(layout, this.getId(), request,
                 userDetails);
+        op.setReadResponse(readResponse);
         return op.call();
     }
 
@@ -104,7 +146,7 @@ public class GitGistRepository implements GistRepository, Serializable {
 
     @Override
     public GistCommentRepository getCommentRepository() {
-        return new GitGistCommentRepository(this.layout.getCommentsFile(), this.commentStore);
+        return new GitGistCommentRepository(this.layout.getCommentsJournalFile(), this.commentStore);
     }
 
     private void saveMetadata(GistMetadata metadata) {
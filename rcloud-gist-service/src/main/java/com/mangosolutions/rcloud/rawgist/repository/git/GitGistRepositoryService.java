@@ -8,19 +8,24 @@ package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FileFileFilter;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.NameFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.User;
@@ -30,19 +35,27 @@ import com.hazelcast.core.HazelcastInstance;
 import com.mangosolutions.rcloud.rawgist.model.Fork;
 import com.mangosolutions.rcloud.rawgist.model.GistComment;
 import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
 import com.mangosolutions.rcloud.rawgist.repository.GistAccessDeniedException;
+import com.mangosolutions.rcloud.rawgist.repository.GistChangeListener;
 import com.mangosolutions.rcloud.rawgist.repository.GistCommentRepository;
 import com.mangosolutions.rcloud.rawgist.repository.GistError;
 import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistFileWriter;
 import com.mangosolutions.rcloud.rawgist.repository.GistIdGenerator;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepository;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryException;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryFactory;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
+import com.mangosolutions.rcloud.rawgist.repository.GistResponseWriter;
 import com.mangosolutions.rcloud.rawgist.repository.GistSecurityManager;
+import com.mangosolutions.rcloud.rawgist.repository.GistVersion;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGist;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGistFile;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
 public class GitGistRepositoryService implements GistRepositoryService {
 
@@ -50,16 +63,20 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     private int lockTimeout = DEFAULT_LOCK_TIMEOUT;
 
-    private static final String RECYCLE_FOLDER_NAME = ".recycle";
-
     private Logger logger = LoggerFactory.getLogger(GitGistRepositoryService.class);
 
     private File repositoryRoot;
-    private File recycleRoot;
     private GistIdGenerator idGenerator;
-    private HazelcastInstance hazelcastInstance;
+    private GistLockManager lockManager;
     private GistSecurityManager securityManager;
     private GistRepositoryFactory repositoryFactory;
+    private CatalogStore catalogStore;
+    private MetadataStore metadataStore;
+    private GitRepositoryPool repositoryPool;
+    private ForkObjectRelinker forkObjectRelinker;
+    private GistRecycler recycler;
+    private SharedObjectPool objectPool;
+    private RepositoryMaintenanceTracker maintenanceTracker;
     private List<RepositoryStorageLocator> locators;
 
     public GitGistRepositoryService(String repositoryRoot, GistIdGenerator idGenerator,
@@ -68,12 +85,8 @@ public class GitGistRepositoryService implements GistRepositoryService {
         if (!this.repositoryRoot.exists()) {
             FileUtils.forceMkdir(this.repositoryRoot);
         }
-        recycleRoot = new File(repositoryRoot, RECYCLE_FOLDER_NAME);
-        if (!this.recycleRoot.exists()) {
-            FileUtils.forceMkdir(this.recycleRoot);
-        }
         this.idGenerator = idGenerator;
-        this.hazelcastInstance = hazelcastInstance;
+        this.lockManager = new HazelcastGistLockManager(hazelcastInstance);
 
         locators = Arrays.asList(new AsymetricFourFolderRepositoryStorageLocator(this.repositoryRoot),
                 new SymetricFourPartRepositoryStorageLocator(this.repositoryRoot));
@@ -83,6 +96,38 @@ public class GitGistRepositoryService implements GistRepositoryService {
         this.repositoryFactory = repositoryFactory;
     }
 
+    public void setCatalogStore(CatalogStore catalogStore) {
+        this.catalogStore = catalogStore;
+    }
+
+    public void setMetadataStore(MetadataStore metadataStore) {
+        this.metadataStore = metadataStore;
+    }
+
+    public void setRepositoryPool(GitRepositoryPool repositoryPool) {
+        this.repositoryPool = repositoryPool;
+    }
+
+    public void setForkObjectRelinker(ForkObjectRelinker forkObjectRelinker) {
+        this.forkObjectRelinker = forkObjectRelinker;
+    }
+
+    public void setRecycler(GistRecycler recycler) {
+        this.recycler = recycler;
+    }
+
+    public void setObjectPool(SharedObjectPool objectPool) {
+        this.objectPool = objectPool;
+    }
+
+    public void setMaintenanceTracker(RepositoryMaintenanceTracker maintenanceTracker) {
+        this.maintenanceTracker = maintenanceTracker;
+    }
+
+    public void setLockManager(GistLockManager lockManager) {
+        this.lockManager = lockManager;
+    }
+
     public void setLockTimeout(int timeout) {
         this.lockTimeout = timeout;
     }
@@ -96,22 +141,32 @@ public class GitGistRepositoryService implements GistRepositoryService {
     }
 
     @Override
-    public List<GistResponse> listGists(UserDetails user) {
-        List<GistResponse> gists = new ArrayList<GistResponse>();
-        for (File file : FileUtils.listFiles(repositoryRoot,
-                FileFilterUtils.and(FileFileFilter.FILE, new NameFileFilter(RepositoryLayout.GIST_META_FILE)),
-                TrueFileFilter.INSTANCE)) {
-            GistRepository repository = repositoryFactory.getRepository(file.getParentFile());
+    public ResultPage<GistResponse> listGists(UserDetails user, DateTime since, int page, int perPage) {
+        List<GistCatalogEntry> entries = new ArrayList<GistCatalogEntry>();
+        for (GistCatalogEntry entry : catalogStore.findByOwner(user.getUsername())) {
+            if (since == null || (entry.getUpdatedAt() != null && !entry.getUpdatedAt().isBefore(since))) {
+                entries.add(entry);
+            }
+        }
+        ResultPage<GistCatalogEntry> entryPage = ResultPage.of(entries, page, perPage);
+        List<GistResponse> gists = new ArrayList<GistResponse>(entryPage.getItems().size());
+        for (GistCatalogEntry entry : entryPage.getItems()) {
+            File repositoryFolder = findRepositoryFolder(entry.getId());
+            if (repositoryFolder == null) {
+                logger.warn("Gist {} is in the catalog but its repository does not exist", entry.getId());
+                continue;
+            }
+            GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
             if (this.securityManager.isOwner(repository, user)) {
-                gists.add(repository.readGist(user));
+                gists.add(repository.readGistSummary(user));
             }
         }
-        return gists;
+        return new ResultPage<GistResponse>(gists, page, perPage, entryPage.getTotalItems());
     }
 
     @Override
     public GistResponse getGist(String gistId, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireReadLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
@@ -124,7 +179,7 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public GistResponse getGist(String gistId, String commitId, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireReadLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
@@ -135,18 +190,93 @@ public class GitGistRepositoryService implements GistRepositoryService {
         }
     }
 
+    @Override
+    public ResultPage<GistHistory> getHistory(String gistId, int page, int perPage, UserDetails user) {
+        Lock lock = acquireReadLock(gistId);
+        try {
+            File repositoryFolder = getAndValidateRepositoryFolder(gistId);
+            GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
+            this.ensureReadable(repository, user);
+            return repository.readHistory(page, perPage, user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void writeGist(String gistId, String commitId, UserDetails user, GistResponseWriter writer) {
+        OpenGist gist;
+        Lock lock = acquireReadLock(gistId);
+        try {
+            File repositoryFolder = getAndValidateRepositoryFolder(gistId);
+            GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
+            this.ensureReadable(repository, user);
+            gist = repository.openGist(commitId, user);
+        } finally {
+            lock.unlock();
+        }
+        // git objects are immutable, so the response is written after the lock
+        // is released and a slow client does not hold up updates to the gist
+        try {
+            gist.write(writer);
+        } finally {
+            gist.close();
+        }
+    }
+
+    @Override
+    public void writeFile(String gistId, String commitId, String fileName, UserDetails user, GistFileWriter writer) {
+        OpenGistFile file;
+        Lock lock = acquireReadLock(gistId);
+        try {
+            File repositoryFolder = getAndValidateRepositoryFolder(gistId);
+            GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
+            this.ensureReadable(repository, user);
+            file = repository.openFile(commitId, fileName, user);
+        } finally {
+            lock.unlock();
+        }
+        // the blob is immutable, so it is streamed after the lock is released
+        // and a slow client does not hold up updates to the gist
+        try {
+            writer.write(fileName, file);
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+                    "Could not write content of {} for gist {}", fileName, gistId);
+            logger.warn(error.getFormattedMessage(), e);
+            throw new GistRepositoryError(error, e);
+        } finally {
+            file.close();
+        }
+    }
+
+    @Override
+    public GistVersion getGistVersion(String gistId, String commitId, UserDetails user) {
+        Lock lock = acquireReadLock(gistId);
+        try {
+            File repositoryFolder = getAndValidateRepositoryFolder(gistId);
+            GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
+            this.ensureReadable(repository, user);
+            return repository.readVersion(commitId, user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public GistResponse createGist(GistRequest request, UserDetails user) {
         this.ensureCreateable(request, user);
         String gistId = idGenerator.generateId();
         File repositoryFolder = getRepositoryFolder(gistId);
         GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
-        return repository.createGist(request, gistId, user);
+        GistResponse response = repository.createGist(request, gistId, user);
+        recordChange(gistId);
+        return response;
     }
 
     @Override
     public GistResponse forkGist(String gistToForkId, User user) {
-        Lock lock = acquireGistLock(gistToForkId);
+        Lock lock = acquireWriteLock(gistToForkId);
         try {
             File gistToForkRepositoryFolder = getAndValidateRepositoryFolder(gistToForkId);
             GistRepository gistToForkRepository = repositoryFactory.getRepository(gistToForkRepositoryFolder);
@@ -162,12 +292,43 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public GistResponse editGist(String gistId, GistRequest request, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        return this.editGist(gistId, request, true, user);
+    }
+
+    @Override
+    public GistResponse editGist(String gistId, GistRequest request, boolean readResponse, UserDetails user) {
+        Lock lock = acquireWriteLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
             this.ensureWritable(repository, user);
-            return repository.updateGist(request, user);
+            GistResponse response = repository.updateGist(request, user, readResponse);
+            recordChange(gistId);
+            return response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void editGist(String gistId, List<GistRequest> requests, boolean readResponse, UserDetails user,
+            GistChangeListener listener) {
+        Lock lock = acquireWriteLock(gistId);
+        try {
+            File repositoryFolder = getAndValidateRepositoryFolder(gistId);
+            GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
+            this.ensureWritable(repository, user);
+            for (int i = 0; i < requests.size(); i++) {
+                GistResponse response;
+                try {
+                    response = repository.updateGist(requests.get(i), user, readResponse);
+                } catch (RuntimeException e) {
+                    listener.failed(i, e);
+                    continue;
+                }
+                recordChange(gistId);
+                listener.applied(i, response);
+            }
         } finally {
             lock.unlock();
         }
@@ -175,13 +336,39 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public void deleteGist(String gistId, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireWriteLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
             this.ensureWritable(repository, user);
-            FileUtils.moveDirectoryToDirectory(repositoryFolder, new File(recycleRoot, gistId), true);
-            FileUtils.forceDelete(repositoryFolder);
+            if (repositoryPool != null) {
+                repositoryPool.evict(repositoryFolder);
+            }
+            Map<String, File> forkFolders = findForkGitFolders(repositoryFolder);
+            // the forks are locked before the gist moves, as their alternates
+            // must follow it
+            List<Lock> forkLocks = new ArrayList<>();
+            try {
+                for (String forkId : forkFolders.keySet()) {
+                    forkLocks.add(acquireWriteLock(forkId));
+                }
+                File removedFolder = recycler.remove(gistId, repositoryFolder);
+                Future<?> detached = null;
+                if (forkObjectRelinker != null && !forkFolders.isEmpty()) {
+                    detached = forkObjectRelinker.relink(forkFolders,
+                            new RepositoryLayout(repositoryFolder).getBareFolder(),
+                            new RepositoryLayout(removedFolder).getBareFolder());
+                }
+                catalogStore.remove(gistId);
+                if (maintenanceTracker != null) {
+                    maintenanceTracker.remove(gistId);
+                }
+                recycler.recycle(gistId, removedFolder, forkFolders, detached);
+            } finally {
+                for (Lock forkLock : forkLocks) {
+                    forkLock.unlock();
+                }
+            }
         } catch (IOException e) {
             GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE,
                     "Could not delete gist {}, an internal error has occurred", gistId);
@@ -194,7 +381,7 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public List<Fork> getForks(String gistId, User activeUser) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireReadLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository repository = repositoryFactory.getRepository(repositoryFolder);
@@ -211,14 +398,15 @@ public class GitGistRepositoryService implements GistRepositoryService {
     }
 
     @Override
-    public List<GistCommentResponse> getComments(String gistId, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+    public ResultPage<GistCommentResponse> getComments(String gistId, DateTime since, int page, int perPage,
+            UserDetails user) {
+        Lock lock = acquireReadLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository gistRepository = repositoryFactory.getRepository(repositoryFolder);
             this.ensureReadable(gistRepository, user);
             GistCommentRepository repository = gistRepository.getCommentRepository();
-            return repository.getComments(user);
+            return repository.getComments(since, page, perPage, user);
         } finally {
             lock.unlock();
         }
@@ -226,7 +414,7 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public GistCommentResponse getComment(String gistId, long commentId, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireReadLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository gistRepository = repositoryFactory.getRepository(repositoryFolder);
@@ -240,7 +428,7 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public GistCommentResponse createComment(String gistId, GistComment comment, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireWriteLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository gistRepository = repositoryFactory.getRepository(repositoryFolder);
@@ -254,7 +442,7 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public GistCommentResponse editComment(String gistId, long commentId, GistComment comment, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireWriteLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository gistRepository = repositoryFactory.getRepository(repositoryFolder);
@@ -268,7 +456,7 @@ public class GitGistRepositoryService implements GistRepositoryService {
 
     @Override
     public void deleteComment(String gistId, long commentId, UserDetails user) {
-        Lock lock = acquireGistLock(gistId);
+        Lock lock = acquireWriteLock(gistId);
         try {
             File repositoryFolder = getAndValidateRepositoryFolder(gistId);
             GistRepository gistRepository = repositoryFactory.getRepository(repositoryFolder);
@@ -280,8 +468,176 @@ public class GitGistRepositoryService implements GistRepositoryService {
         }
     }
 
-    private Lock acquireGistLock(String gistId) {
-        Lock lock = hazelcastInstance.getLock(gistId);
+    /**
+     * Moves the objects the gist holds itself into the shared object pool
+     * under the write lock of the gist. Its forks may borrow the moved objects,
+     * so they are locked and evicted from the repository pool before any
+     * object is removed from the gist.
+     *
+     * @return the number of objects that were not already in the pool.
+     */
+    public int compactObjects(String gistId) {
+        if (objectPool == null || !objectPool.isEnabled()) {
+            return 0;
+        }
+        Lock lock = acquireWriteLock(gistId);
+        try {
+            File repositoryFolder = findRepositoryFolder(gistId);
+            if (repositoryFolder == null) {
+                return 0;
+            }
+            File bareFolder = new RepositoryLayout(repositoryFolder).getBareFolder();
+            Map<String, File> forkFolders = findForkGitFolders(repositoryFolder);
+            List<Lock> forkLocks = new ArrayList<>();
+            try {
+                for (String forkId : forkFolders.keySet()) {
+                    forkLocks.add(acquireWriteLock(forkId));
+                }
+                evict(bareFolder, forkFolders.values());
+                try {
+                    return objectPool.compact(bareFolder);
+                } finally {
+                    evict(bareFolder, forkFolders.values());
+                }
+            } finally {
+                unlock(forkLocks);
+            }
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE,
+                    "Could not move the objects of gist {} into the shared object pool", gistId);
+            logger.error(error.getFormattedMessage(), e);
+            throw new GistRepositoryError(error, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Collects the git repository of the gist once it holds at least the given
+     * number of loose objects. The gist is skipped rather than waited for when
+     * it or one of the forks that may borrow its objects is in use.
+     *
+     * @return what was done, a result with the skip action if the gist had too
+     *         few loose objects, or null if the gist was in use.
+     */
+    public RepositoryMaintenanceResult maintainRepository(String gistId, int looseObjects) {
+        Lock lock = lockManager.getLock(gistId).writeLock();
+        if (!lock.tryLock()) {
+            logger.debug("Skipping the maintenance of gist {}, it is in use", gistId);
+            return null;
+        }
+        try {
+            File repositoryFolder = getAndValidateRepositoryFolder(gistId);
+            File bareFolder = new RepositoryLayout(repositoryFolder).getBareFolder();
+            int loose = RepositoryGarbageCollector.countLooseObjects(bareFolder);
+            if (loose < looseObjects) {
+                RepositoryMaintenanceResult result = new RepositoryMaintenanceResult(gistId);
+                result.setAction(RepositoryGarbageCollector.SKIP_ACTION);
+                result.setLooseObjects(loose);
+                result.setRemainingLooseObjects(loose);
+                return result;
+            }
+            Map<String, File> forkFolders = findForkGitFolders(repositoryFolder);
+            List<Lock> forkLocks = new ArrayList<>();
+            try {
+                for (String forkId : forkFolders.keySet()) {
+                    Lock forkLock = lockManager.getLock(forkId).writeLock();
+                    if (!forkLock.tryLock()) {
+                        logger.debug("Skipping the maintenance of gist {}, its fork {} is in use", gistId, forkId);
+                        return null;
+                    }
+                    forkLocks.add(forkLock);
+                }
+                evict(bareFolder, forkFolders.values());
+                try {
+                    return new RepositoryGarbageCollector(objectPool).collect(gistId, bareFolder);
+                } finally {
+                    evict(bareFolder, forkFolders.values());
+                }
+            } finally {
+                unlock(forkLocks);
+            }
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_GIST_UPDATE_FAILURE,
+                    "Could not collect the repository of gist {}", gistId);
+            logger.error(error.getFormattedMessage(), e);
+            throw new GistRepositoryError(error, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Permanently deletes the gists that were deleted before the given time.
+     * The forks of a recycled gist are first given their own copy of any of
+     * its objects they still borrow under their write locks, a gist whose forks
+     * cannot be detached is kept for a later purge.
+     *
+     * @return the number of recycled gists deleted.
+     */
+    public int purgeRecycledGists(long deletedBefore) {
+        int purged = 0;
+        for (File entry : recycler.findDeletedBefore(deletedBefore)) {
+            try {
+                File recycledFolder = recycler.getGistFolder(entry);
+                if (recycledFolder != null) {
+                    detachForks(recycledFolder);
+                }
+                recycler.purge(entry);
+                purged++;
+            } catch (IOException | GistRepositoryError | GistRepositoryException e) {
+                logger.warn("Could not purge the recycled gist {}", entry, e);
+            }
+        }
+        return purged;
+    }
+
+    private void detachForks(File recycledFolder) throws IOException {
+        File objectsFolder = ObjectAlternates.getObjectsFolder(new RepositoryLayout(recycledFolder).getBareFolder());
+        for (Map.Entry<String, File> fork : findForkGitFolders(recycledFolder).entrySet()) {
+            File forkFolder = fork.getValue();
+            Lock lock = acquireWriteLock(fork.getKey());
+            try {
+                if (ObjectAlternates.detach(ObjectAlternates.getObjectsFolder(forkFolder), objectsFolder)
+                        && repositoryPool != null) {
+                    repositoryPool.evict(forkFolder);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void evict(File bareFolder, Collection<File> forkFolders) {
+        if (repositoryPool != null) {
+            repositoryPool.evict(bareFolder);
+            for (File forkFolder : forkFolders) {
+                repositoryPool.evict(forkFolder);
+            }
+        }
+    }
+
+    private void unlock(List<Lock> locks) {
+        for (Lock lock : locks) {
+            lock.unlock();
+        }
+    }
+
+    private void recordChange(String gistId) {
+        if (maintenanceTracker != null) {
+            maintenanceTracker.record(gistId);
+        }
+    }
+
+    private Lock acquireReadLock(String gistId) {
+        return acquireGistLock(gistId, lockManager.getLock(gistId).readLock());
+    }
+
+    private Lock acquireWriteLock(String gistId) {
+        return acquireGistLock(gistId, lockManager.getLock(gistId).writeLock());
+    }
+
+    private Lock acquireGistLock(String gistId, Lock lock) {
         try {
             if (!lock.tryLock(lockTimeout, TimeUnit.SECONDS)) {
                 GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_AVAILABLE,
@@ -299,16 +655,54 @@ public class GitGistRepositoryService implements GistRepositoryService {
     }
 
     private File getAndValidateRepositoryFolder(String id) {
+        File repositoryFolder = findRepositoryFolder(id);
+        if (repositoryFolder != null) {
+            return repositoryFolder;
+        }
+        GistError error = new GistError(GistErrorCode.ERR_GIST_NOT_EXIST, "Gist with id {} does not exist", id);
+        logger.error(error.getFormattedMessage());
+        throw new GistRepositoryException(error);
+
+    }
+
+    private File findRepositoryFolder(String id) {
         for (RepositoryStorageLocator locator : this.locators) {
             File repositoryFolder = locator.getStoragePath(id);
             if (repositoryFolder.exists()) {
                 return repositoryFolder;
             }
         }
-        GistError error = new GistError(GistErrorCode.ERR_GIST_NOT_EXIST, "Gist with id {} does not exist", id);
-        logger.error(error.getFormattedMessage());
-        throw new GistRepositoryException(error);
+        return null;
+    }
 
+    /**
+     * Finds the git folders of the forks of the gist and of their forks in
+     * turn, which may borrow objects from the gist through git alternates. The
+     * forks are found from the metadata files, without opening the forks,
+     * which would change their layout without holding their locks.
+     *
+     * @return the git folders of the forks by their gist id.
+     */
+    private Map<String, File> findForkGitFolders(File repositoryFolder) {
+        Map<String, File> folders = new LinkedHashMap<>();
+        Set<String> visited = new HashSet<>();
+        Deque<File> pending = new ArrayDeque<>();
+        pending.add(repositoryFolder);
+        while (!pending.isEmpty()) {
+            GistMetadata metadata = metadataStore.load(new RepositoryLayout(pending.remove()).getMetadataFile());
+            visited.add(metadata.getId());
+            for (Fork fork : metadata.getForks()) {
+                if (fork.getId() == null || !visited.add(fork.getId())) {
+                    continue;
+                }
+                File forkFolder = findRepositoryFolder(fork.getId());
+                if (forkFolder != null) {
+                    folders.put(fork.getId(), new RepositoryLayout(forkFolder).getBareFolder());
+                    pending.add(forkFolder);
+                }
+            }
+        }
+        return folders;
     }
 
     private File getRepositoryFolder(String id) {
@@ -20,6 +20,7 @@ import org.ajoberstar.grgit.Repository;
 import org.ajoberstar.grgit.operation.LogOp;
 import org.ajoberstar.grgit.operation.ShowOp;
 import org.apache.log4j.Logger;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -78,6 +79,11 @@ public class GitHistoryOperation implements Callable<List<GistHistory>> {
 		this.repository = git.getRepository();
 		this.commitId = commitId;
 	}
+
+	public GitHistoryOperation(org.eclipse.jgit.lib.Repository repository, String commitId) {
+		this.repository = new Repository(repository.getDirectory(), Git.wrap(repository), null);
+		this.commitId = commitId;
+	}
 	
 	public Repository getRepository() {
 		return repository;
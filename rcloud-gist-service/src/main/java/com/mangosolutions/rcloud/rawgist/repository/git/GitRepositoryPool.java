@@ -0,0 +1,178 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.repository.GistError;
+import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+
+/**
+ * A bounded pool of open JGit repositories keyed by their git folder, so that
+ * the config, refs and pack indexes of frequently used gists are not re-read
+ * from disk on every request.
+ * <p>
+ * {@link #open(File)} returns a repository that the caller must close, this
+ * only releases the caller's use of it. The pool keeps its own use of the
+ * repository until it is the least recently used once the pool is full, it has
+ * been idle for longer than the idle timeout or it is evicted, after which it
+ * is closed once the last caller has released it.
+ */
+@Component
+public class GitRepositoryPool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GitRepositoryPool.class);
+
+    public static final int DEFAULT_MAX_OPEN = 256;
+
+    public static final int DEFAULT_IDLE_TIMEOUT = 300;
+
+    private final int maxOpen;
+
+    private final long idleTimeout;
+
+    private final LinkedHashMap<File, PooledRepository> repositories = new LinkedHashMap<>(16, 0.75f, true);
+
+    public GitRepositoryPool() {
+        this(DEFAULT_MAX_OPEN, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param maxOpen
+     *            the maximum number of repositories held open by the pool, 0
+     *            disables pooling.
+     * @param idleTimeout
+     *            the number of seconds a repository is held open after its last
+     *            use.
+     */
+    @Autowired
+    public GitRepositoryPool(@Value("${gists.maxOpenRepositories:" + DEFAULT_MAX_OPEN + "}") int maxOpen,
+            @Value("${gists.repositoryIdleTimeout:" + DEFAULT_IDLE_TIMEOUT + "}") int idleTimeout) {
+        this.maxOpen = maxOpen;
+        this.idleTimeout = TimeUnit.SECONDS.toMillis(idleTimeout);
+    }
+
+    public Repository open(File gitFolder) {
+        if (maxOpen <= 0) {
+            return openRepository(gitFolder);
+        }
+        File key = gitFolder.getAbsoluteFile();
+        List<Repository> expired = new ArrayList<>();
+        Repository repository;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            PooledRepository pooled = repositories.get(key);
+            if (pooled == null) {
+                pooled = new PooledRepository(openRepository(key));
+                repositories.put(key, pooled);
+            }
+            pooled.lastUsed = now;
+            repository = pooled.repository;
+            repository.incrementOpen();
+            Iterator<PooledRepository> it = repositories.values().iterator();
+            while (it.hasNext()) {
+                PooledRepository eldest = it.next();
+                if (repositories.size() > maxOpen || now - eldest.lastUsed > idleTimeout) {
+                    it.remove();
+                    expired.add(eldest.repository);
+                } else {
+                    break;
+                }
+            }
+        }
+        release(expired);
+        return repository;
+    }
+
+    /**
+     * Removes every repository held for the folder or any folder below it from
+     * the pool, used before a gist is moved or deleted.
+     */
+    public void evict(File folder) {
+        String prefix = folder.getAbsolutePath() + File.separator;
+        List<Repository> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<File, PooledRepository>> it = repositories.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<File, PooledRepository> entry = it.next();
+                File key = entry.getKey();
+                if (key.equals(folder.getAbsoluteFile()) || key.getPath().startsWith(prefix)) {
+                    it.remove();
+                    evicted.add(entry.getValue().repository);
+                }
+            }
+        }
+        release(evicted);
+    }
+
+    public synchronized int size() {
+        return repositories.size();
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        List<Repository> open = new ArrayList<>();
+        synchronized (this) {
+            for (PooledRepository pooled : repositories.values()) {
+                open.add(pooled.repository);
+            }
+            repositories.clear();
+        }
+        release(open);
+    }
+
+    private void release(List<Repository> repositories) {
+        for (Repository repository : repositories) {
+            logger.debug("Releasing repository {}", repository.getDirectory());
+            repository.close();
+        }
+    }
+
+    public static Repository openRepository(File gitFolder) {
+        try {
+            return new FileRepositoryBuilder().setGitDir(gitFolder).setMustExist(true).build();
+        } catch (IOException e) {
+            GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+                    "Could not open the repository of this gist");
+            logger.error(error.getFormattedMessage() + " with path {}", gitFolder, e);
+            throw new GistRepositoryError(error, e);
+        }
+    }
+
+    private static class PooledRepository {
+
+        private final Repository repository;
+
+        private long lastUsed;
+
+        PooledRepository(Repository repository) {
+            this.repository = repository;
+        }
+
+    }
+
+}
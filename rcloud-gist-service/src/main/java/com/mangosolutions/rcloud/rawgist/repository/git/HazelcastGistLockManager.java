@@ -0,0 +1,234 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Lock manager for clustered deployments using the Hazelcast distributed lock
+ * of the gist.
+ * <p>
+ * In exclusive mode readers and writers all take the distributed lock. When
+ * shared reads are enabled readers only take the read lock of a
+ * {@link LocalGistLockManager} and writers take its write lock followed by the
+ * distributed lock, so readers on one node share access without a cluster
+ * round trip and are excluded by writers on the same node.
+ */
+public class HazelcastGistLockManager implements GistLockManager {
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private final LocalGistLockManager localLockManager;
+
+    public HazelcastGistLockManager(HazelcastInstance hazelcastInstance) {
+        this(hazelcastInstance, false);
+    }
+
+    public HazelcastGistLockManager(HazelcastInstance hazelcastInstance, boolean sharedReads) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.localLockManager = sharedReads ? new LocalGistLockManager() : null;
+    }
+
+    @Override
+    public ReadWriteLock getLock(String gistId) {
+        final Lock clusterLock = hazelcastInstance.getLock(gistId);
+        if (localLockManager == null) {
+            return new ReadWriteLock() {
+
+                @Override
+                public Lock readLock() {
+                    return clusterLock;
+                }
+
+                @Override
+                public Lock writeLock() {
+                    return clusterLock;
+                }
+            };
+        }
+        final ReadWriteLock localLock = localLockManager.getLock(gistId);
+        return new ReadWriteLock() {
+
+            @Override
+            public Lock readLock() {
+                return localLock.readLock();
+            }
+
+            @Override
+            public Lock writeLock() {
+                return new LockPair(localLock.writeLock(), clusterLock);
+            }
+        };
+    }
+
+    /**
+     * Acquires the first lock and then the second, releasing in the reverse
+     * order. Conditions are those of the first lock, waiting on one releases
+     * the second lock and takes it again once the wait is over.
+     */
+    private static class LockPair implements Lock {
+
+        private final Lock first;
+
+        private final Lock second;
+
+        LockPair(Lock first, Lock second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void lock() {
+            first.lock();
+            try {
+                second.lock();
+            } catch (RuntimeException e) {
+                first.unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            first.lockInterruptibly();
+            try {
+                second.lockInterruptibly();
+            } catch (InterruptedException | RuntimeException e) {
+                first.unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!first.tryLock()) {
+                return false;
+            }
+            boolean locked = false;
+            try {
+                locked = second.tryLock();
+            } finally {
+                if (!locked) {
+                    first.unlock();
+                }
+            }
+            return locked;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(time);
+            if (!first.tryLock(time, unit)) {
+                return false;
+            }
+            boolean locked = false;
+            try {
+                locked = second.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } finally {
+                if (!locked) {
+                    first.unlock();
+                }
+            }
+            return locked;
+        }
+
+        @Override
+        public void unlock() {
+            try {
+                second.unlock();
+            } finally {
+                first.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            return new PairCondition(first.newCondition(), second);
+        }
+
+    }
+
+    private static class PairCondition implements Condition {
+
+        private final Condition condition;
+
+        private final Lock second;
+
+        PairCondition(Condition condition, Lock second) {
+            this.condition = condition;
+            this.second = second;
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            second.unlock();
+            try {
+                condition.await();
+            } finally {
+                second.lock();
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            second.unlock();
+            try {
+                condition.awaitUninterruptibly();
+            } finally {
+                second.lock();
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            second.unlock();
+            try {
+                return condition.awaitNanos(nanosTimeout);
+            } finally {
+                second.lock();
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            second.unlock();
+            try {
+                return condition.await(time, unit);
+            } finally {
+                second.lock();
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            second.unlock();
+            try {
+                return condition.awaitUntil(deadline);
+            } finally {
+                second.lock();
+            }
+        }
+
+        @Override
+        public void signal() {
+            condition.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condition.signalAll();
+        }
+
+    }
+
+}
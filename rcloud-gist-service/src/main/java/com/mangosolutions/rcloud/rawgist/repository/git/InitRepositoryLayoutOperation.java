@@ -26,6 +26,8 @@ public class InitRepositoryLayoutOperation implements Callable<RepositoryLayout>
 
 	private File repositoryRoot;
 
+	private SharedObjectPool objectPool;
+
 	public InitRepositoryLayoutOperation(File repositoryRoot) {
 		this.repositoryRoot = repositoryRoot;
 	}
@@ -38,6 +40,14 @@ public class InitRepositoryLayoutOperation implements Callable<RepositoryLayout>
 		this.repositoryRoot = repositoryRoot;
 	}
 
+	public SharedObjectPool getObjectPool() {
+		return objectPool;
+	}
+
+	public void setObjectPool(SharedObjectPool objectPool) {
+		this.objectPool = objectPool;
+	}
+
 	@Override
 	public RepositoryLayout call() {
 		RepositoryLayout layout = new RepositoryLayout(repositoryRoot);
@@ -58,7 +68,10 @@ public class InitRepositoryLayoutOperation implements Callable<RepositoryLayout>
 				initOp.setDir(bareFolder);
 				initOp.setBare(true);
 				initOp.call();
-			} catch (GrgitException e) {
+				if(objectPool != null) {
+					objectPool.link(bareFolder);
+				}
+			} catch (GrgitException | IOException e) {
 				GistError error = new GistError(GistErrorCode.FATAL_GIST_INITIALISATION, "Could not create gist storage location for gist");
 				logger.error(error.getFormattedMessage() + " with folder path {}", bareFolder);
 				throw new GistRepositoryError(error, e);
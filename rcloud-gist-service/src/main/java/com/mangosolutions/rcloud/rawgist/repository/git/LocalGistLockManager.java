@@ -0,0 +1,37 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Lock manager for single node deployments. Gists are hashed onto a fixed
+ * set of in-process read/write locks, readers share access and writers are
+ * exclusive. No cluster communication takes place.
+ */
+public class LocalGistLockManager implements GistLockManager {
+
+    public static final int DEFAULT_STRIPES = 1024;
+
+    private final Striped<ReadWriteLock> locks;
+
+    public LocalGistLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public LocalGistLockManager(int stripes) {
+        this.locks = Striped.readWriteLock(stripes);
+    }
+
+    @Override
+    public ReadWriteLock getLock(String gistId) {
+        return locks.get(gistId);
+    }
+
+}
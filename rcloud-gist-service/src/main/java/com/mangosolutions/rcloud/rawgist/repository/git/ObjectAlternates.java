@@ -0,0 +1,241 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Reads and changes the <code>objects/info/alternates</code> file of a bare
+ * git repository, which lists the object folders of other repositories whose
+ * objects the repository can use without holding copies of them.
+ * <p>
+ * Changes read, modify and replace the alternates file, the caller must hold
+ * the write lock of the gist whose alternates change so that concurrent
+ * changes are not lost.
+ */
+public class ObjectAlternates {
+
+    private static final String OBJECTS_FOLDER = "objects";
+
+    private static final String INFO_FOLDER = "info";
+
+    private static final String ALTERNATES_FILE = "alternates";
+
+    private static final String PACK_FOLDER = "pack";
+
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private ObjectAlternates() {
+    }
+
+    public static File getObjectsFolder(File gitFolder) {
+        return new File(gitFolder, OBJECTS_FOLDER);
+    }
+
+    public static List<File> read(File objectsFolder) throws IOException {
+        List<File> alternates = new ArrayList<>();
+        File alternatesFile = getAlternatesFile(objectsFolder);
+        if (alternatesFile.exists()) {
+            for (String line : FileUtils.readLines(alternatesFile, StandardCharsets.UTF_8)) {
+                if (!StringUtils.isBlank(line) && !line.startsWith("#")) {
+                    alternates.add(new File(line.trim()));
+                }
+            }
+        }
+        return alternates;
+    }
+
+    /**
+     * Replaces the alternates of the object folder, an empty list removes the
+     * alternates file.
+     */
+    public static void write(File objectsFolder, List<File> alternates) throws IOException {
+        File alternatesFile = getAlternatesFile(objectsFolder);
+        if (alternates.isEmpty()) {
+            Files.deleteIfExists(alternatesFile.toPath());
+            return;
+        }
+        FileUtils.forceMkdir(alternatesFile.getParentFile());
+        Path tempFile = createTempFile(alternatesFile);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (File alternate : alternates) {
+                    writer.write(alternate.getAbsolutePath());
+                    writer.write('\n');
+                }
+            }
+            Files.move(tempFile, alternatesFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Adds an object folder to the alternates of the object folder.
+     */
+    public static void add(File objectsFolder, File alternate) throws IOException {
+        List<File> alternates = read(objectsFolder);
+        if (!contains(alternates, alternate)) {
+            alternates.add(alternate.getAbsoluteFile());
+            write(objectsFolder, alternates);
+        }
+    }
+
+    /**
+     * Points an alternate of the object folder at the new location of the
+     * object folder it refers to.
+     *
+     * @return true if the object folder had the alternate.
+     */
+    public static boolean replace(File objectsFolder, File alternate, File movedAlternate) throws IOException {
+        List<File> alternates = read(objectsFolder);
+        boolean replaced = false;
+        for (int i = 0; i < alternates.size(); i++) {
+            if (isSame(alternates.get(i), alternate)) {
+                alternates.set(i, movedAlternate.getAbsoluteFile());
+                replaced = true;
+            }
+        }
+        if (replaced) {
+            write(objectsFolder, alternates);
+        }
+        return replaced;
+    }
+
+    /**
+     * Stops the object folder borrowing from the alternate by copying in the
+     * objects of the alternate, the alternates of the alternate take its place
+     * so that the objects it borrowed in turn remain available.
+     *
+     * @return true if the object folder had the alternate.
+     */
+    public static boolean detach(File objectsFolder, File alternate) throws IOException {
+        List<File> alternates = read(objectsFolder);
+        if (!contains(alternates, alternate)) {
+            return false;
+        }
+        copyObjects(alternate, objectsFolder);
+        List<File> detached = new ArrayList<>();
+        for (File existing : alternates) {
+            if (!isSame(existing, alternate)) {
+                detached.add(existing);
+            }
+        }
+        for (File inherited : read(alternate)) {
+            if (!contains(detached, inherited) && !isSame(inherited, objectsFolder)) {
+                detached.add(inherited);
+            }
+        }
+        write(objectsFolder, detached);
+        return true;
+    }
+
+    /**
+     * Copies the pack files and loose objects that the target does not already
+     * have. Each file is copied under a temporary name and then renamed, and a
+     * pack is renamed before its index, so a reader never sees a partial object
+     * or an index without its pack.
+     */
+    private static void copyObjects(File source, File target) throws IOException {
+        File[] folders = source.listFiles();
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            if (!folder.isDirectory() || INFO_FOLDER.equals(folder.getName())) {
+                continue;
+            }
+            File targetFolder = new File(target, folder.getName());
+            if (PACK_FOLDER.equals(folder.getName())) {
+                copyPacks(folder, targetFolder);
+            } else {
+                copyFiles(folder, targetFolder);
+            }
+        }
+    }
+
+    private static void copyPacks(File packFolder, File targetFolder) throws IOException {
+        File[] packs = packFolder.listFiles();
+        if (packs == null) {
+            return;
+        }
+        for (File pack : packs) {
+            String name = pack.getName();
+            if (name.endsWith(".pack")) {
+                String baseName = name.substring(0, name.length() - ".pack".length());
+                copyFile(pack, targetFolder);
+                copyFile(new File(packFolder, baseName + ".idx"), targetFolder);
+            }
+        }
+    }
+
+    private static void copyFiles(File folder, File targetFolder) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile() && !file.getName().startsWith(TEMP_PREFIX)) {
+                copyFile(file, targetFolder);
+            }
+        }
+    }
+
+    private static void copyFile(File file, File targetFolder) throws IOException {
+        File target = new File(targetFolder, file.getName());
+        if (!file.exists() || target.exists()) {
+            return;
+        }
+        FileUtils.forceMkdir(targetFolder);
+        Path tempFile = createTempFile(target);
+        try {
+            Files.copy(file.toPath(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFile, target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Creates a uniquely named temporary file beside the file, so that
+     * concurrent writers never share a temporary file.
+     */
+    private static Path createTempFile(File file) throws IOException {
+        return Files.createTempFile(file.getParentFile().toPath(), TEMP_PREFIX + file.getName(), null);
+    }
+
+    private static File getAlternatesFile(File objectsFolder) {
+        return new File(new File(objectsFolder, INFO_FOLDER), ALTERNATES_FILE);
+    }
+
+    public static boolean contains(List<File> alternates, File alternate) {
+        for (File existing : alternates) {
+            if (isSame(existing, alternate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSame(File first, File second) {
+        return first.getAbsoluteFile().equals(second.getAbsoluteFile());
+    }
+
+}
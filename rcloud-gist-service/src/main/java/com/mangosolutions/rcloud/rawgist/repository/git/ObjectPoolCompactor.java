@@ -0,0 +1,138 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryException;
+
+/**
+ * Migrates existing gists to the shared object pool. A run walks every gist
+ * under the repository root on a background thread and moves the objects of
+ * each into the pool, one gist at a time under its write lock, so the service
+ * stays available while it runs. A gist that fails is logged and skipped, a
+ * later run picks it up again.
+ */
+public class ObjectPoolCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectPoolCompactor.class);
+
+    private final GitGistRepositoryService repositoryService;
+
+    private final MetadataStore metadataStore;
+
+    private final File repositoryRoot;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile int gists;
+
+    private volatile long objects;
+
+    private volatile int failures;
+
+    private volatile DateTime startedAt;
+
+    private volatile DateTime finishedAt;
+
+    public ObjectPoolCompactor(GitGistRepositoryService repositoryService, MetadataStore metadataStore,
+            File repositoryRoot) {
+        this.repositoryService = repositoryService;
+        this.metadataStore = metadataStore;
+        this.repositoryRoot = repositoryRoot;
+    }
+
+    /**
+     * Starts a run in the background.
+     *
+     * @return false if a run is already in progress.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        gists = 0;
+        objects = 0;
+        failures = 0;
+        startedAt = new DateTime();
+        finishedAt = null;
+        executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    compactAll();
+                } finally {
+                    finishedAt = new DateTime();
+                    running.set(false);
+                }
+            }
+
+        });
+        return true;
+    }
+
+    /**
+     * Moves the objects of every gist under the repository root into the pool.
+     */
+    public void compactAll() {
+        logger.info("Moving the objects of the gists in {} into the shared object pool", repositoryRoot);
+        Iterator<File> metadataFiles = GistFolders.iterateMetadataFiles(repositoryRoot);
+        while (metadataFiles.hasNext() && !Thread.currentThread().isInterrupted()) {
+            File metadataFile = metadataFiles.next();
+            try {
+                GistMetadata metadata = metadataStore.load(metadataFile);
+                if (metadata != null && metadata.getId() != null) {
+                    objects += repositoryService.compactObjects(metadata.getId());
+                    gists++;
+                }
+            } catch (GistRepositoryException | GistRepositoryError e) {
+                failures++;
+                logger.warn("Could not move the objects of the gist in {} into the shared object pool",
+                        metadataFile.getParentFile(), e);
+            }
+        }
+        logger.info("Moved the objects of {} gists into the shared object pool, {} objects were added, {} gists failed",
+                gists, objects, failures);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("gists", gists);
+        status.put("objects", objects);
+        status.put("failures", failures);
+        status.put("started_at", startedAt);
+        status.put("finished_at", finishedAt);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
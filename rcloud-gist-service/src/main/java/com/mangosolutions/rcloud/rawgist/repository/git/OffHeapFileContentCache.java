@@ -0,0 +1,112 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.model.FileContent;
+
+/**
+ * A node local {@link FileContentCache} that holds the content in direct
+ * buffers outside of the java heap, bounded by the number of bytes held rather
+ * than the number of files. Git objects never change, so the cache needs no
+ * invalidation, the least recently used content is dropped once the cache is
+ * full.
+ */
+@Component
+public class OffHeapFileContentCache implements FileContentCache {
+
+    public static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 9;
+
+    private final long maxSize;
+
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedSize = 0;
+
+    public OffHeapFileContentCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *            the number of bytes of content held by the cache, 0 disables
+     *            the cache.
+     */
+    @Autowired
+    public OffHeapFileContentCache(@Value("${gists.fileContentCacheSize:" + DEFAULT_MAX_SIZE + "}") long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public FileContent load(String objectId) {
+        ByteBuffer entry;
+        synchronized (this) {
+            entry = entries.get(objectId);
+        }
+        if (entry == null) {
+            return null;
+        }
+        // evicted buffers stay valid for as long as they are referenced
+        ByteBuffer buffer = entry.duplicate();
+        FileContent content = new FileContent();
+        content.setSize(buffer.getLong());
+        content.setTruncated(buffer.get() != 0);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        content.setContent(new String(bytes, StandardCharsets.UTF_8));
+        return content;
+    }
+
+    @Override
+    public FileContent save(String objectId, FileContent content) {
+        if (maxSize <= 0 || content.getContent() == null) {
+            return content;
+        }
+        byte[] bytes = content.getContent().getBytes(StandardCharsets.UTF_8);
+        int entrySize = HEADER_SIZE + bytes.length;
+        if (entrySize > maxSize) {
+            return content;
+        }
+        ByteBuffer entry = ByteBuffer.allocateDirect(entrySize);
+        entry.putLong(content.getSize() == null ? bytes.length : content.getSize());
+        entry.put((byte) (Boolean.TRUE.equals(content.getTruncated()) ? 1 : 0));
+        entry.put(bytes);
+        entry.flip();
+        synchronized (this) {
+            ByteBuffer previous = entries.put(objectId, entry);
+            if (previous != null) {
+                usedSize -= previous.capacity();
+            }
+            usedSize += entrySize;
+            Iterator<ByteBuffer> it = entries.values().iterator();
+            while (usedSize > maxSize && it.hasNext()) {
+                usedSize -= it.next().capacity();
+                it.remove();
+            }
+        }
+        return content;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedSize() {
+        return usedSize;
+    }
+
+}
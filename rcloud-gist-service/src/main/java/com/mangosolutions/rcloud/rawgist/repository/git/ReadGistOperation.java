@@ -8,6 +8,12 @@ package com.mangosolutions.rcloud.rawgist.repository.git;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -18,27 +24,31 @@ import java.util.concurrent.Callable;
 
 import javax.activation.MimetypesFileTypeMap;
 
-import org.ajoberstar.grgit.Grgit;
-import org.ajoberstar.grgit.operation.OpenOp;
 import org.apache.commons.io.Charsets;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.util.StringUtils;
 
+import com.google.common.hash.Hashing;
 import com.mangosolutions.rcloud.rawgist.model.FileContent;
+import com.mangosolutions.rcloud.rawgist.model.FileContentSource;
 import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistIdentity;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
@@ -46,6 +56,12 @@ import com.mangosolutions.rcloud.rawgist.repository.GistCommentRepository;
 import com.mangosolutions.rcloud.rawgist.repository.GistError;
 import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
 import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryException;
+import com.mangosolutions.rcloud.rawgist.repository.GistResponseWriter;
+import com.mangosolutions.rcloud.rawgist.repository.GistVersion;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGist;
+import com.mangosolutions.rcloud.rawgist.repository.OpenGistFile;
+import com.mangosolutions.rcloud.rawgist.repository.ResultPage;
 
 public class ReadGistOperation implements Callable<GistResponse> {
 
@@ -74,12 +90,12 @@ public class ReadGistOperation implements Callable<GistResponse> {
 	private FileContentCache fileContentCache = new FileContentCache() {
 
 		@Override
-		public FileContent load(String contentId, String path) {
+		public FileContent load(String objectId) {
 			return null;
 		}
 
 		@Override
-		public FileContent save(String contentId, String path, FileContent content) {
+		public FileContent save(String objectId, FileContent content) {
 			return content;
 		}
 
@@ -92,6 +108,17 @@ public class ReadGistOperation implements Callable<GistResponse> {
 
 	private String commitId = null;
 
+	private boolean summary = false;
+
+	private int historyLimit = 0;
+
+	private long truncateSize = 0;
+
+	private boolean streaming = false;
+
+	private final Map<String, ObjectId> streamedFiles = new HashMap<>();
+
+	private final Map<ObjectId, byte[]> writtenContent = new HashMap<>();
 
 	public ReadGistOperation(RepositoryLayout layout, String gistId, String commitId, UserDetails user) {
 		this.layout = layout;
@@ -113,30 +140,39 @@ public class ReadGistOperation implements Callable<GistResponse> {
 		this(new RepositoryLayout(repositoryFolder), gistId, user);
 	}
 
+	private GitRepositoryPool repositoryPool;
+
 	@Override
 	public GistResponse call() {
-		OpenOp openOp = new OpenOp();
-		openOp.setDir(layout.getBareFolder());
-		try (Grgit git = openOp.call()) {
+		try (Repository repository = openRepository()) {
+			return this.readGist(repository);
+		}
+	}
 
-			return this.readGist(git);
+	protected Repository openRepository() {
+		File bareFolder = layout.getBareFolder();
+		if(repositoryPool != null) {
+			return repositoryPool.open(bareFolder);
 		}
+		return GitRepositoryPool.openRepository(bareFolder);
 	}
 
-	protected GistResponse readGist(Grgit git) {
+	protected GistResponse readGist(Repository repository) {
 		try {
-			Repository repository = git.getRepository().getJgit().getRepository();
 			RevCommit revCommit = resolveCommit(repository);
 			GistResponse response = new GistResponse();
 
 			Map<String, FileContent> fileContent = Collections.emptyMap();
-			List<GistHistory> history = Collections.emptyList();
+			List<GistHistory> history = summary ? null : Collections.<GistHistory>emptyList();
 			if(revCommit != null) {
 				fileContent = getFileContent(repository, revCommit);
-				history = getHistory(git, revCommit);
+				if(!summary) {
+					history = historyLimit > 0 ? getHistory(repository, revCommit, 1, historyLimit).getItems()
+							: getHistory(repository, revCommit);
+				}
 			}
 			response.setFiles(fileContent);
-			response.setComments(this.commentRepository.getComments(user).size());
+			response.setComments(this.commentRepository.getCommentCount(user));
 			response.setHistory(history);
 			applyMetadata(response);
 			return response;
@@ -158,7 +194,7 @@ public class ReadGistOperation implements Callable<GistResponse> {
 
             while(treeWalk.next()) {
 
-            	FileContent content = readContent(repository, treeWalk);
+            	FileContent content = summary ? readSummary(repository, treeWalk) : readContent(repository, treeWalk);
             	fileContent.put(content.getFilename(), content);
             }
         }
@@ -183,22 +219,15 @@ public class ReadGistOperation implements Callable<GistResponse> {
 
 		ObjectId objectId = treeWalk.getObjectId(0);
 		String fileName = treeWalk.getPathString();
-		FileContent content = fileContentCache.load(objectId.getName(), fileName);
-		if(content == null) {
-			content = new FileContent();
+		FileContent cached = fileContentCache.load(objectId.getName());
+		if(cached == null) {
 			try {
-				content.setFilename(fileName);
-				ObjectLoader loader = repository.open(objectId);
-
-				content.setContent(new String(loader.getBytes(), Charsets.UTF_8));
-				content.setSize(loader.getSize());
-				content.setTruncated(false);
-				String language = FilenameUtils.getExtension(fileName);
-				if (!GitGistRepository.B64_BINARY_EXTENSION.equals(language) && !StringUtils.isEmpty(language)) {
-					content.setLanguage(language);
+				byte[] written = writtenContent.get(objectId);
+				if(written != null) {
+					cached = readWrittenBlob(objectId, written);
+				} else {
+					cached = streaming ? readStreamedBlob(repository, objectId, fileName) : readBlob(repository, objectId);
 				}
-				content.setType(MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(fileName));
-				fileContentCache.save(objectId.getName(), fileName, content);
 			} catch (IOException e) {
 				GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
 						"Could not read content of {} for gist {}", fileName, gistId);
@@ -206,9 +235,285 @@ public class ReadGistOperation implements Callable<GistResponse> {
 				throw new GistRepositoryError(error, e);
 			}
 		}
+		FileContent content = new FileContent();
+		content.setFilename(fileName);
+		content.setContent(cached.getContent());
+		content.setSize(cached.getSize());
+		content.setTruncated(cached.getTruncated());
+		content.setLanguage(getLanguage(fileName));
+		content.setType(MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(fileName));
 		return content;
 	}
 
+	private FileContent readBlob(Repository repository, ObjectId objectId) throws IOException {
+		FileContent blob = new FileContent();
+		ObjectLoader loader = repository.open(objectId);
+		long size = loader.getSize();
+		if(truncateSize > 0 && size > truncateSize) {
+			byte[] prefix = new byte[(int) truncateSize];
+			try (InputStream in = loader.openStream()) {
+				IOUtils.readFully(in, prefix);
+			}
+			blob.setContent(decodePrefix(prefix));
+			blob.setTruncated(true);
+		} else {
+			blob.setContent(new String(loader.getBytes(), Charsets.UTF_8));
+			blob.setTruncated(false);
+		}
+		blob.setSize(size);
+		fileContentCache.save(objectId.getName(), blob);
+		return blob;
+	}
+
+	/**
+	 * Uses the content of a file that was written by this operation rather
+	 * than reading it back from the repository.
+	 */
+	private FileContent readWrittenBlob(ObjectId objectId, byte[] written) {
+		FileContent blob = new FileContent();
+		if(truncateSize > 0 && written.length > truncateSize) {
+			blob.setContent(decodePrefix(Arrays.copyOf(written, (int) truncateSize)));
+			blob.setTruncated(true);
+		} else {
+			blob.setContent(new String(written, Charsets.UTF_8));
+			blob.setTruncated(false);
+		}
+		blob.setSize((long) written.length);
+		fileContentCache.save(objectId.getName(), blob);
+		return blob;
+	}
+
+	/**
+	 * Reads only the size of a file that is written from the repository when
+	 * the response is written, a file that is truncated is read as usual.
+	 */
+	private FileContent readStreamedBlob(Repository repository, ObjectId objectId, String fileName) throws IOException {
+		long size;
+		try (ObjectReader reader = repository.newObjectReader()) {
+			size = reader.getObjectSize(objectId, Constants.OBJ_BLOB);
+		}
+		if(truncateSize > 0 && size > truncateSize) {
+			return readBlob(repository, objectId);
+		}
+		FileContent blob = new FileContent();
+		blob.setSize(size);
+		blob.setTruncated(false);
+		streamedFiles.put(fileName, objectId);
+		return blob;
+	}
+
+	private String getLanguage(String fileName) {
+		String language = FilenameUtils.getExtension(fileName);
+		if (!GitGistRepository.B64_BINARY_EXTENSION.equals(language) && !StringUtils.isEmpty(language)) {
+			return language;
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes the first truncateSize bytes of a file, dropping a character
+	 * that is cut off at the end of the prefix.
+	 */
+	private String decodePrefix(byte[] prefix) {
+		int length = prefix.length;
+		int start = length - 1;
+		while(start > 0 && (prefix[start] & 0xC0) == 0x80) {
+			start--;
+		}
+		int lead = prefix[start] & 0xFF;
+		int charLength = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+		if(start + charLength > length) {
+			length = start;
+		}
+		return new String(prefix, 0, length, Charsets.UTF_8);
+	}
+
+	/**
+	 * Reads the gist, leaving the repository open so that the content of files
+	 * that are not already cached or truncated can be streamed from it when
+	 * the gist is written. Those files have no content in the response.
+	 */
+	public OpenGist openGist() {
+		this.streaming = true;
+		final Repository repository = openRepository();
+		final GistResponse response;
+		try {
+			response = this.readGist(repository);
+		} catch (RuntimeException e) {
+			repository.close();
+			throw e;
+		}
+		return new OpenGist() {
+
+			@Override
+			public void write(GistResponseWriter writer) {
+				try {
+					writer.write(response, new FileContentSource() {
+
+						@Override
+						public Reader openContent(FileContent file) throws IOException {
+							ObjectId objectId = streamedFiles.get(file.getFilename());
+							if(objectId == null) {
+								return null;
+							}
+							return new InputStreamReader(repository.open(objectId).openStream(), Charsets.UTF_8);
+						}
+
+					});
+				} catch (IOException e) {
+					GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+							"Could not write content of gist {}", gistId);
+					logger.error(error.getFormattedMessage() + " with path {}", layout.getRootFolder(), e);
+					throw new GistRepositoryError(error, e);
+				}
+			}
+
+			@Override
+			public void close() {
+				repository.close();
+			}
+
+		};
+	}
+
+	/**
+	 * Resolves a file of the gist, at the commit of this operation or the
+	 * latest commit, to its git object. The content is streamed from the
+	 * object when the file is written, without holding it in memory.
+	 */
+	public OpenGistFile openFile(final String fileName) {
+		final Repository repository = openRepository();
+		final ObjectLoader loader;
+		try {
+			RevCommit revCommit = resolveCommit(repository);
+			TreeWalk treeWalk = revCommit == null ? null : TreeWalk.forPath(repository, fileName, revCommit.getTree());
+			if(treeWalk == null) {
+				GistError error = new GistError(GistErrorCode.ERR_FILE_NOT_EXIST,
+						"File {} does not exist in gist {}", fileName, gistId);
+				logger.warn(error.getFormattedMessage());
+				throw new GistRepositoryException(error);
+			}
+			try {
+				loader = repository.open(treeWalk.getObjectId(0));
+			} finally {
+				treeWalk.close();
+			}
+		} catch (IOException e) {
+			repository.close();
+			throw fileNotReadable(fileName, e);
+		} catch (RuntimeException e) {
+			repository.close();
+			throw e;
+		}
+		return new OpenGistFile() {
+
+			@Override
+			public long getSize() {
+				return loader.getSize();
+			}
+
+			@Override
+			public long write(OutputStream out) {
+				try (InputStream in = loader.openStream()) {
+					return IOUtils.copyLarge(in, out);
+				} catch (IOException e) {
+					throw fileNotReadable(fileName, e);
+				}
+			}
+
+			@Override
+			public void close() {
+				repository.close();
+			}
+
+		};
+	}
+
+	private GistRepositoryError fileNotReadable(String fileName, IOException e) {
+		GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+				"Could not read content of {} for gist {}", fileName, gistId);
+		logger.error(error.getFormattedMessage() + " with path {}", this.layout.getRootFolder(), e);
+		return new GistRepositoryError(error, e);
+	}
+
+	/**
+	 * Derives the version of the gist from the commit being read, the metadata
+	 * and the comments, without reading the content of any file.
+	 */
+	public GistVersion readVersion() {
+		String commit = commitId;
+		if(StringUtils.isEmpty(commit)) {
+			try (Repository repository = openRepository()) {
+				Ref head = repository.exactRef(REF_HEAD_MASTER);
+				commit = head == null ? ObjectId.zeroId().getName() : head.getObjectId().getName();
+			} catch (IOException e) {
+				GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+						"Could not read content of gist {}", gistId);
+				logger.error(error.getFormattedMessage() + " with path {}", this.layout.getRootFolder(), e);
+				throw new GistRepositoryError(error, e);
+			}
+		}
+		GistMetadata metadata = this.getMetadata();
+		StringBuilder version = new StringBuilder(commit);
+		version.append('|').append(metadata.getId())
+			.append('|').append(metadata.getOwner())
+			.append('|').append(metadata.getDescription())
+			.append('|').append(metadata.isPublic())
+			.append('|').append(getMillis(metadata.getCreatedAt()))
+			.append('|').append(getMillis(metadata.getUpdatedAt()))
+			.append('|').append(metadata.getForkOf() == null ? null : metadata.getForkOf().getId())
+			.append('|').append(metadata.getAdditionalProperties());
+		version.append('|').append(commentRepository.getCommentsVersion(user));
+		String etag = Hashing.sha1().hashString(version, Charsets.UTF_8).toString();
+		long lastModified = Math.max(getMillis(metadata.getUpdatedAt()), layout.getCommentsJournalFile().lastModified());
+		return new GistVersion(etag, lastModified > 0 ? lastModified : -1, metadata.getOwner());
+	}
+
+	/**
+	 * Reads a page of the history of the gist, from the commit of this
+	 * operation or the latest commit, without the history limit.
+	 */
+	public ResultPage<GistHistory> readHistory(int page, int perPage) {
+		try (Repository repository = openRepository()) {
+			RevCommit revCommit = resolveCommit(repository);
+			if(revCommit == null) {
+				return new ResultPage<GistHistory>(Collections.<GistHistory>emptyList(), page, perPage, 0);
+			}
+			return getHistory(repository, revCommit, page, perPage);
+		} catch (IOException e) {
+			GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+					"Could not read content of gist {}", gistId);
+			logger.error(error.getFormattedMessage() + " with path {}", this.layout.getRootFolder(), e);
+			throw new GistRepositoryError(error, e);
+		}
+	}
+
+	private long getMillis(DateTime dateTime) {
+		return dateTime == null ? -1 : dateTime.getMillis();
+	}
+
+	private FileContent readSummary(Repository repository, TreeWalk treeWalk) {
+		ObjectId objectId = treeWalk.getObjectId(0);
+		String fileName = treeWalk.getPathString();
+		FileContent summary = new FileContent();
+		summary.setFilename(fileName);
+		summary.setLanguage(getLanguage(fileName));
+		FileContent content = fileContentCache.load(objectId.getName());
+		if(content != null) {
+			summary.setSize(content.getSize());
+			return summary;
+		}
+		try (ObjectReader reader = repository.newObjectReader()) {
+			summary.setSize(reader.getObjectSize(objectId, Constants.OBJ_BLOB));
+		} catch (IOException e) {
+			GistError error = new GistError(GistErrorCode.ERR_GIST_CONTENT_NOT_READABLE,
+					"Could not read content of {} for gist {}", fileName, gistId);
+			logger.error(error.getFormattedMessage() + " with path {}", this.layout.getRootFolder(), e);
+			throw new GistRepositoryError(error, e);
+		}
+		return summary;
+	}
+
 	private void applyMetadata(GistResponse response) {
 
 		GistMetadata metadata = this.getMetadata();
@@ -232,12 +537,67 @@ public class ReadGistOperation implements Callable<GistResponse> {
 		return metadataStore.load(layout.getMetadataFile());
 	}
 
-	private List<GistHistory> getHistory(Grgit git, RevCommit commit) {
-		GitHistoryOperation historyOperation = new GitHistoryOperation(git, commit.getName());
+	private List<GistHistory> getHistory(Repository repository, RevCommit commit) throws IOException {
+		List<GistHistory> cached = historyCache.load(commit.getName());
+		if(cached != null && !cached.isEmpty()) {
+			return cached;
+		}
+		GistHistoryIndex historyIndex = new GistHistoryIndex(layout.getHistoryIndexFile());
+		List<GistHistory> history = historyIndex.load(repository, commit.getName());
+		if(history != null) {
+			historyCache.save(commit.getName(), history);
+			return history;
+		}
+		GitHistoryOperation historyOperation = new GitHistoryOperation(repository, commit.getName());
 		historyOperation.setHistoryCache(historyCache);
 		return historyOperation.call();
 	}
 
+	/**
+	 * Reads a page of the history from the end of the history index, only the
+	 * complete history is held in the history cache.
+	 */
+	private ResultPage<GistHistory> getHistory(Repository repository, RevCommit commit, int page, int perPage)
+			throws IOException {
+		List<GistHistory> cached = historyCache.load(commit.getName());
+		if(cached != null && !cached.isEmpty()) {
+			return ResultPage.of(cached, page, perPage);
+		}
+		GistHistoryIndex historyIndex = new GistHistoryIndex(layout.getHistoryIndexFile());
+		ResultPage<GistHistory> history = historyIndex.loadPage(repository, commit.getName(), page, perPage);
+		if(history != null) {
+			return history;
+		}
+		return ResultPage.of(getHistory(repository, commit), page, perPage);
+	}
+
+	/**
+	 * Records the content of a file written by this operation, so that the
+	 * response after the change does not read it back from the repository.
+	 */
+	protected void addWrittenContent(ObjectId blobId, byte[] content) {
+		writtenContent.put(blobId, content);
+	}
+
+	/**
+	 * Caches the history of a new commit as its entry followed by the cached
+	 * history of its parent, the history is left to be read from the history
+	 * index when the parent's history is not cached.
+	 */
+	protected void cacheHistory(Repository repository, RevCommit commit, GistHistory entry) throws IOException {
+		List<GistHistory> parentHistory = Collections.emptyList();
+		if(commit.getParentCount() > 0) {
+			parentHistory = historyCache.load(commit.getParent(0).getName());
+			if(parentHistory == null || parentHistory.isEmpty()) {
+				return;
+			}
+		}
+		List<GistHistory> history = new ArrayList<>(parentHistory.size() + 1);
+		history.add(entry == null ? GistHistoryIndex.createEntry(repository, commit) : entry);
+		history.addAll(parentHistory);
+		historyCache.save(commit.getName(), history);
+	}
+
 	public UserDetails getUser() {
 		return user;
 	}
@@ -290,6 +650,51 @@ public class ReadGistOperation implements Callable<GistResponse> {
 		this.commitId = commitId;
 	}
 
+	public boolean isSummary() {
+		return summary;
+	}
+
+	/**
+	 * When set only the file metadata of the gist is read, the file content and
+	 * the history are left out of the response.
+	 */
+	public void setSummary(boolean summary) {
+		this.summary = summary;
+	}
+
+	public int getHistoryLimit() {
+		return historyLimit;
+	}
+
+	/**
+	 * Sets the maximum number of history entries, newest first, included in
+	 * the gist response, 0 includes the complete history.
+	 */
+	public void setHistoryLimit(int historyLimit) {
+		this.historyLimit = historyLimit;
+	}
+
+	public long getTruncateSize() {
+		return truncateSize;
+	}
+
+	/**
+	 * Sets the size in bytes above which only the start of a file is included
+	 * in the gist response and the file is marked as truncated, 0 includes
+	 * every file in full.
+	 */
+	public void setTruncateSize(long truncateSize) {
+		this.truncateSize = truncateSize;
+	}
+
+	public GitRepositoryPool getRepositoryPool() {
+		return repositoryPool;
+	}
+
+	public void setRepositoryPool(GitRepositoryPool repositoryPool) {
+		this.repositoryPool = repositoryPool;
+	}
+
 	public void setFileContentCache(FileContentCache fileContentCache) {
 		this.fileContentCache = fileContentCache;
 	}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Permanently deletes the gists that have been in the recycle folder for
+ * longer than the retention period, on a schedule. A negative retention keeps
+ * deleted gists forever.
+ */
+@Component
+public class RecyclePurger {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecyclePurger.class);
+
+    public static final String DEFAULT_CRON = "0 30 4 * * *";
+
+    public static final int DEFAULT_RETENTION = 30;
+
+    @Autowired
+    private GitGistRepositoryService repositoryService;
+
+    @Value("${gists.recycle.retention:" + DEFAULT_RETENTION + "}")
+    private int retention = DEFAULT_RETENTION;
+
+    @Scheduled(cron = "${gists.recycle.cron:" + DEFAULT_CRON + "}")
+    public void purge() {
+        if (retention < 0) {
+            return;
+        }
+        long deletedBefore = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retention);
+        int purged = repositoryService.purgeRecycledGists(deletedBefore);
+        logger.info("Purged {} gists deleted more than {} days ago", purged, retention);
+    }
+
+    public int getRetention() {
+        return retention;
+    }
+
+    public void setRetention(int retention) {
+        this.retention = retention;
+    }
+
+}
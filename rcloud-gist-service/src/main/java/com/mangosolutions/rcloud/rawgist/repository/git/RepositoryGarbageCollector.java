@@ -0,0 +1,178 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.internal.storage.pack.PackWriter;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Packs the loose objects that commits leave in a gist repository.
+ * <p>
+ * A repository that borrows objects through git alternates is not given to the
+ * JGit {@link GC}, which would copy the borrowed objects into its pack. A gist
+ * linked to the shared object pool has its objects moved into the pool
+ * instead, and any other such repository only has its own loose objects
+ * packed. Every other repository is collected by the JGit {@link GC}, which
+ * only prunes unreachable objects once they have expired.
+ */
+public class RepositoryGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryGarbageCollector.class);
+
+    public static final String GC_ACTION = "gc";
+
+    public static final String PACK_ACTION = "pack";
+
+    public static final String POOL_ACTION = "pool";
+
+    public static final String SKIP_ACTION = "skip";
+
+    private static final String PACK_FOLDER = "pack";
+
+    private final SharedObjectPool objectPool;
+
+    public RepositoryGarbageCollector(SharedObjectPool objectPool) {
+        this.objectPool = objectPool;
+    }
+
+    /**
+     * Collects the repository, the caller must hold the write locks of the
+     * gist and of the forks that may borrow its objects, and evict them from
+     * the repository pool.
+     */
+    public RepositoryMaintenanceResult collect(String gistId, File gitFolder) throws IOException {
+        long start = System.currentTimeMillis();
+        RepositoryMaintenanceResult result = new RepositoryMaintenanceResult(gistId);
+        result.setLooseObjects(countLooseObjects(gitFolder));
+        File objectsFolder = ObjectAlternates.getObjectsFolder(gitFolder);
+        List<File> alternates = ObjectAlternates.read(objectsFolder);
+        if (objectPool != null && objectPool.isEnabled() && ObjectAlternates.contains(alternates,
+                ObjectAlternates.getObjectsFolder(objectPool.getPoolFolder()))) {
+            result.setAction(POOL_ACTION);
+            objectPool.compact(gitFolder);
+        } else if (!alternates.isEmpty()) {
+            result.setAction(PACK_ACTION);
+            packLooseObjects(gitFolder);
+        } else {
+            result.setAction(GC_ACTION);
+            try (Repository repository = GitRepositoryPool.openRepository(gitFolder)) {
+                new GC((FileRepository) repository).gc();
+            } catch (ParseException e) {
+                throw new IOException("Could not read the prune expiry of " + gitFolder, e);
+            }
+        }
+        result.setRemainingLooseObjects(countLooseObjects(gitFolder));
+        result.setDuration(System.currentTimeMillis() - start);
+        result.setCompletedAt(new DateTime());
+        logger.debug("Collected gist {} with {}, {} loose objects before and {} after", gistId, result.getAction(),
+                result.getLooseObjects(), result.getRemainingLooseObjects());
+        return result;
+    }
+
+    public static int countLooseObjects(File gitFolder) {
+        List<File> looseFiles = new ArrayList<>();
+        findLooseObjects(ObjectAlternates.getObjectsFolder(gitFolder), looseFiles, new LinkedHashSet<ObjectId>());
+        return looseFiles.size();
+    }
+
+    /**
+     * Writes the loose objects the repository holds itself into a new pack
+     * and then removes them, objects borrowed through alternates are left out.
+     * The pack is renamed into place before its index, and the loose objects
+     * are only removed once both are in place.
+     *
+     * @return the number of objects packed.
+     */
+    public static int packLooseObjects(File gitFolder) throws IOException {
+        File objectsFolder = ObjectAlternates.getObjectsFolder(gitFolder);
+        List<File> looseFiles = new ArrayList<>();
+        Set<ObjectId> objectIds = new LinkedHashSet<>();
+        findLooseObjects(objectsFolder, looseFiles, objectIds);
+        if (objectIds.isEmpty()) {
+            return 0;
+        }
+        File packFolder = new File(objectsFolder, PACK_FOLDER);
+        Files.createDirectories(packFolder.toPath());
+        File tempPack = File.createTempFile("pack_", ".tmp", packFolder);
+        File tempIndex = File.createTempFile("idx_", ".tmp", packFolder);
+        try (Repository repository = GitRepositoryPool.openRepository(gitFolder);
+                ObjectReader reader = repository.newObjectReader();
+                RevWalk walk = new RevWalk(reader);
+                PackWriter writer = new PackWriter(repository, reader)) {
+            List<RevObject> objects = new ArrayList<>(objectIds.size());
+            for (ObjectId objectId : objectIds) {
+                objects.add(walk.lookupAny(objectId, reader.open(objectId).getType()));
+            }
+            writer.preparePack(objects.iterator());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempPack.toPath()))) {
+                writer.writePack(NullProgressMonitor.INSTANCE, NullProgressMonitor.INSTANCE, out);
+            }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempIndex.toPath()))) {
+                writer.writeIndex(out);
+            }
+            String packName = "pack-" + writer.computeName().name();
+            Files.move(tempPack.toPath(), new File(packFolder, packName + ".pack").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempIndex.toPath(), new File(packFolder, packName + ".idx").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPack.toPath());
+            Files.deleteIfExists(tempIndex.toPath());
+        }
+        for (File looseFile : looseFiles) {
+            Files.deleteIfExists(looseFile.toPath());
+            looseFile.getParentFile().delete();
+        }
+        return objectIds.size();
+    }
+
+    static void findLooseObjects(File objectsFolder, List<File> looseFiles, Set<ObjectId> objectIds) {
+        File[] folders = objectsFolder.listFiles();
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            if (!folder.isDirectory() || folder.getName().length() != 2) {
+                continue;
+            }
+            File[] files = folder.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String name = folder.getName() + file.getName();
+                if (file.isFile() && ObjectId.isId(name)) {
+                    looseFiles.add(file);
+                    objectIds.add(ObjectId.fromString(name));
+                }
+            }
+        }
+    }
+
+}
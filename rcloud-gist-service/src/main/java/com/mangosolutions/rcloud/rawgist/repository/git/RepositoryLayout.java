@@ -23,6 +23,10 @@ public class RepositoryLayout implements Serializable {
 
 	public static final String COMMENTS_FILE = "comments.json";
 
+	public static final String COMMENTS_JOURNAL_FILE = "comments.journal";
+
+	public static final String HISTORY_INDEX_FILE = "history.idx";
+
 	private File rootFolder;
 
 	private File commentsFolder;
@@ -35,6 +39,8 @@ public class RepositoryLayout implements Serializable {
 
 	private File workingFolder;
 
+	private File historyIndexFile;
+
 	public RepositoryLayout(File root) {
 		rootFolder = root;
 		commentsFolder = new File(root, COMMENT_REPOSITORY_FOLDER);
@@ -42,6 +48,7 @@ public class RepositoryLayout implements Serializable {
 		bareFolder = new File(root, GIST_BARE_REPOSITORY_FOLDER);
 		metadataFile = new File(rootFolder, GIST_META_FILE);
 		workingFolder = new File(rootFolder, GIST_WORKING_REPOSITORY_FOLDER);
+		historyIndexFile = new File(rootFolder, HISTORY_INDEX_FILE);
 	}
 
 	public File getCommentsFolder() {
@@ -60,6 +67,10 @@ public class RepositoryLayout implements Serializable {
 		this.commentsFile = commentsFile;
 	}
 
+	public File getCommentsJournalFile() {
+		return new File(commentsFolder, COMMENTS_JOURNAL_FILE);
+	}
+
 	public File getBareFolder() {
 		return bareFolder;
 	}
@@ -92,6 +103,14 @@ public class RepositoryLayout implements Serializable {
 		this.workingFolder = workingFolder;
 	}
 
+	public File getHistoryIndexFile() {
+		return historyIndexFile;
+	}
+
+	public void setHistoryIndexFile(File historyIndexFile) {
+		this.historyIndexFile = historyIndexFile;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -99,6 +118,7 @@ public class RepositoryLayout implements Serializable {
 		result = prime * result + ((commentsFile == null) ? 0 : commentsFile.hashCode());
 		result = prime * result + ((commentsFolder == null) ? 0 : commentsFolder.hashCode());
 		result = prime * result + ((bareFolder == null) ? 0 : bareFolder.hashCode());
+		result = prime * result + ((historyIndexFile == null) ? 0 : historyIndexFile.hashCode());
 		result = prime * result + ((metadataFile == null) ? 0 : metadataFile.hashCode());
 		result = prime * result + ((rootFolder == null) ? 0 : rootFolder.hashCode());
 		result = prime * result + ((workingFolder == null) ? 0 : workingFolder.hashCode());
@@ -129,6 +149,11 @@ public class RepositoryLayout implements Serializable {
 				return false;
 		} else if (!bareFolder.equals(other.bareFolder))
 			return false;
+		if (historyIndexFile == null) {
+			if (other.historyIndexFile != null)
+				return false;
+		} else if (!historyIndexFile.equals(other.historyIndexFile))
+			return false;
 		if (metadataFile == null) {
 			if (other.metadataFile != null)
 				return false;
@@ -151,7 +176,7 @@ public class RepositoryLayout implements Serializable {
 	public String toString() {
 		return "RepositoryLayout [rootFolder=" + rootFolder + ", commentsFolder=" + commentsFolder + ", commentsFile="
 				+ commentsFile + ", gistFolder=" + bareFolder + ", metadataFile=" + metadataFile + ", workingFolder="
-				+ workingFolder + "]";
+				+ workingFolder + ", historyIndexFile=" + historyIndexFile + "]";
 	}
 
 
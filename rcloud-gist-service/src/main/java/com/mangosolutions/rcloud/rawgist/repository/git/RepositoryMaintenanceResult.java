@@ -0,0 +1,115 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.Serializable;
+
+import org.joda.time.DateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * What the maintenance of one gist repository did, the action is one of the
+ * actions of the {@link RepositoryGarbageCollector}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({ "id", "action", "loose_objects", "remaining_loose_objects", "duration", "completed_at",
+        "error" })
+public class RepositoryMaintenanceResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    private String action;
+
+    private int looseObjects;
+
+    private int remainingLooseObjects;
+
+    private long duration;
+
+    private DateTime completedAt;
+
+    private String error;
+
+    public RepositoryMaintenanceResult() {
+    }
+
+    public RepositoryMaintenanceResult(String id) {
+        this.id = id;
+    }
+
+    @JsonProperty("id")
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @JsonProperty("action")
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    @JsonProperty("loose_objects")
+    public int getLooseObjects() {
+        return looseObjects;
+    }
+
+    public void setLooseObjects(int looseObjects) {
+        this.looseObjects = looseObjects;
+    }
+
+    @JsonProperty("remaining_loose_objects")
+    public int getRemainingLooseObjects() {
+        return remainingLooseObjects;
+    }
+
+    public void setRemainingLooseObjects(int remainingLooseObjects) {
+        this.remainingLooseObjects = remainingLooseObjects;
+    }
+
+    /**
+     * The time taken in milliseconds.
+     */
+    @JsonProperty("duration")
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    @JsonProperty("completed_at")
+    public DateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(DateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    @JsonProperty("error")
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryException;
+
+/**
+ * Collects the repositories of the most changed gists on a schedule, which is
+ * expected to start a quiet period. No new repository is started once the
+ * window has passed. Each gist is collected under its write lock and a gist
+ * that is in use is left for the next run, as is a gist with fewer loose
+ * objects than the threshold. The shared object pool has its loose objects
+ * packed at the end of a run.
+ */
+@Component
+public class RepositoryMaintenanceScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryMaintenanceScheduler.class);
+
+    public static final String DEFAULT_CRON = "0 0 3 * * *";
+
+    public static final int DEFAULT_WINDOW = 60;
+
+    public static final int DEFAULT_LOOSE_OBJECTS = 64;
+
+    public static final int DEFAULT_MAX_REPOSITORIES = 500;
+
+    private static final int MAX_RESULTS = 100;
+
+    private static final String OBJECT_POOL_ID = SharedObjectPool.OBJECT_POOL_FOLDER;
+
+    @Autowired
+    private RepositoryMaintenanceTracker tracker;
+
+    @Autowired
+    private GitGistRepositoryService repositoryService;
+
+    @Autowired(required = false)
+    private SharedObjectPool objectPool;
+
+    @Value("${gists.maintenance.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${gists.maintenance.cron:" + DEFAULT_CRON + "}")
+    private String cron = DEFAULT_CRON;
+
+    @Value("${gists.maintenance.window:" + DEFAULT_WINDOW + "}")
+    private int window = DEFAULT_WINDOW;
+
+    @Value("${gists.maintenance.looseObjects:" + DEFAULT_LOOSE_OBJECTS + "}")
+    private int looseObjects = DEFAULT_LOOSE_OBJECTS;
+
+    @Value("${gists.maintenance.maxRepositories:" + DEFAULT_MAX_REPOSITORIES + "}")
+    private int maxRepositories = DEFAULT_MAX_REPOSITORIES;
+
+    private final Deque<RepositoryMaintenanceResult> results = new ArrayDeque<>();
+
+    private volatile boolean running;
+
+    private volatile DateTime startedAt;
+
+    private volatile DateTime finishedAt;
+
+    public RepositoryMaintenanceScheduler() {
+    }
+
+    public RepositoryMaintenanceScheduler(RepositoryMaintenanceTracker tracker,
+            GitGistRepositoryService repositoryService, SharedObjectPool objectPool) {
+        this.tracker = tracker;
+        this.repositoryService = repositoryService;
+        this.objectPool = objectPool;
+    }
+
+    @Scheduled(cron = "${gists.maintenance.cron:" + DEFAULT_CRON + "}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+
+    public synchronized void run() {
+        running = true;
+        startedAt = new DateTime();
+        finishedAt = null;
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(window);
+        int collected = 0;
+        try {
+            logger.info("Starting repository maintenance of up to {} of {} changed gists", maxRepositories,
+                    tracker.size());
+            for (String gistId : tracker.getBusiest(maxRepositories)) {
+                if (System.currentTimeMillis() > deadline) {
+                    logger.info("Stopping repository maintenance, the {} minute window has passed", window);
+                    break;
+                }
+                if (maintain(gistId)) {
+                    collected++;
+                }
+            }
+            packObjectPool();
+        } finally {
+            finishedAt = new DateTime();
+            running = false;
+            logger.info("Finished repository maintenance, {} repositories were collected", collected);
+        }
+    }
+
+    /**
+     * Maintains the repository of the gist, the gist is no longer tracked once
+     * it has been collected or found to have too few loose objects, unless it
+     * has changed since. A gist that is in use is kept for the next run.
+     */
+    private boolean maintain(String gistId) {
+        int changes = tracker.getChanges(gistId);
+        try {
+            RepositoryMaintenanceResult result = repositoryService.maintainRepository(gistId, looseObjects);
+            if (result != null) {
+                tracker.remove(gistId, changes);
+                if (!RepositoryGarbageCollector.SKIP_ACTION.equals(result.getAction())) {
+                    addResult(result);
+                    return true;
+                }
+            }
+        } catch (GistRepositoryException e) {
+            if (e.getGistError().getCode() == GistErrorCode.ERR_GIST_NOT_EXIST) {
+                tracker.remove(gistId);
+            } else {
+                logger.warn("Could not maintain the repository of gist {}", gistId, e);
+            }
+        } catch (GistRepositoryError e) {
+            RepositoryMaintenanceResult result = new RepositoryMaintenanceResult(gistId);
+            result.setError(e.getGistError().getFormattedMessage());
+            result.setCompletedAt(new DateTime());
+            addResult(result);
+        }
+        return false;
+    }
+
+    private void packObjectPool() {
+        if (objectPool == null || !objectPool.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int loose = RepositoryGarbageCollector.countLooseObjects(objectPool.getPoolFolder());
+        if (loose < looseObjects) {
+            return;
+        }
+        RepositoryMaintenanceResult result = new RepositoryMaintenanceResult(OBJECT_POOL_ID);
+        result.setAction(RepositoryGarbageCollector.PACK_ACTION);
+        result.setLooseObjects(loose);
+        try {
+            objectPool.packLooseObjects();
+        } catch (IOException e) {
+            logger.error("Could not pack the loose objects of the shared object pool", e);
+            result.setError(e.getMessage());
+        }
+        result.setRemainingLooseObjects(RepositoryGarbageCollector.countLooseObjects(objectPool.getPoolFolder()));
+        result.setDuration(System.currentTimeMillis() - start);
+        result.setCompletedAt(new DateTime());
+        addResult(result);
+    }
+
+    private void addResult(RepositoryMaintenanceResult result) {
+        synchronized (results) {
+            results.addFirst(result);
+            while (results.size() > MAX_RESULTS) {
+                results.removeLast();
+            }
+        }
+    }
+
+    public List<RepositoryMaintenanceResult> getResults() {
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("cron", cron);
+        status.put("window", window);
+        status.put("loose_objects", looseObjects);
+        status.put("running", running);
+        status.put("pending", tracker.size());
+        status.put("started_at", startedAt);
+        status.put("finished_at", finishedAt);
+        status.put("results", getResults());
+        return status;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getLooseObjects() {
+        return looseObjects;
+    }
+
+    public void setLooseObjects(int looseObjects) {
+        this.looseObjects = looseObjects;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    public int getMaxRepositories() {
+        return maxRepositories;
+    }
+
+    public void setMaxRepositories(int maxRepositories) {
+        this.maxRepositories = maxRepositories;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the changes made to each gist on this node since its repository was
+ * last maintained, every change leaves new loose objects in the repository.
+ */
+@Component
+public class RepositoryMaintenanceTracker {
+
+    private final ConcurrentMap<String, AtomicInteger> changes = new ConcurrentHashMap<>();
+
+    public void record(String gistId) {
+        AtomicInteger count = changes.get(gistId);
+        if (count == null) {
+            AtomicInteger added = new AtomicInteger();
+            count = changes.putIfAbsent(gistId, added);
+            if (count == null) {
+                count = added;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void remove(String gistId) {
+        changes.remove(gistId);
+    }
+
+    /**
+     * Removes the gist if it has had no more than the given number of changes,
+     * so that the changes made since they were counted are not lost.
+     */
+    public void remove(String gistId, int counted) {
+        AtomicInteger count = changes.get(gistId);
+        if (count != null && count.get() <= counted) {
+            changes.remove(gistId, count);
+        }
+    }
+
+    public int getChanges(String gistId) {
+        AtomicInteger count = changes.get(gistId);
+        return count == null ? 0 : count.get();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Returns the ids of the gists with the most changes, most changed first.
+     */
+    public List<String> getBusiest(int max) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(changes.size());
+        for (Map.Entry<String, AtomicInteger> entry : changes.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().get()));
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+
+            @Override
+            public int compare(Map.Entry<String, Integer> entry1, Map.Entry<String, Integer> entry2) {
+                return entry2.getValue().compareTo(entry1.getValue());
+            }
+
+        });
+        List<String> busiest = new ArrayList<>(Math.min(max, entries.size()));
+        for (int i = 0; i < entries.size() && i < max; i++) {
+            busiest.add(entries.get(i).getKey());
+        }
+        return busiest;
+    }
+
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.internal.storage.file.PackFile;
+import org.eclipse.jgit.internal.storage.file.PackIndex.MutableEntry;
+import org.eclipse.jgit.lib.ObjectDatabase;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mangosolutions.rcloud.rawgist.repository.GistError;
+import com.mangosolutions.rcloud.rawgist.repository.GistErrorCode;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryError;
+
+/**
+ * A bare repository under the gist root that holds a single copy of objects
+ * shared by many gists. Gist repositories borrow from it through git
+ * alternates, so once a gist is linked an object that is already in the pool
+ * is not written to the gist again. {@link #compact(File)} moves the objects a
+ * gist holds itself into the pool.
+ * <p>
+ * Objects are never removed from the pool, an object that no gist refers to
+ * any more stays in the pool. Compaction adds loose objects which
+ * {@link #packLooseObjects()} packs.
+ */
+@Component
+public class SharedObjectPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedObjectPool.class);
+
+    public static final String OBJECT_POOL_FOLDER = ".objects";
+
+    private static final String[] PACK_EXTENSIONS = { ".keep", ".bitmap", ".pack", ".idx" };
+
+    private final File poolFolder;
+
+    private final boolean enabled;
+
+    public SharedObjectPool(File repositoryRoot, boolean enabled) {
+        this.poolFolder = new File(repositoryRoot, OBJECT_POOL_FOLDER);
+        this.enabled = enabled;
+    }
+
+    @Autowired
+    public SharedObjectPool(@Value("${gists.root}") String repositoryRoot,
+            @Value("${gists.objectPool:false}") boolean enabled) {
+        this(new File(repositoryRoot), enabled);
+    }
+
+    @PostConstruct
+    public void initialise() {
+        if (enabled && !poolFolder.exists()) {
+            try (Repository pool = new FileRepositoryBuilder().setGitDir(poolFolder).setBare().build()) {
+                pool.create(true);
+                logger.info("Created the shared object pool {}", poolFolder);
+            } catch (IOException e) {
+                GistError error = new GistError(GistErrorCode.FATAL_GIST_INITIALISATION,
+                        "Could not create the shared object pool");
+                logger.error(error.getFormattedMessage() + " with folder path {}", poolFolder, e);
+                throw new GistRepositoryError(error, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public File getPoolFolder() {
+        return poolFolder;
+    }
+
+    /**
+     * Adds the pool to the alternates of the gist git folder. The caller must
+     * hold the lock of the gist, or be creating it.
+     */
+    public void link(File gitFolder) throws IOException {
+        if (enabled) {
+            ObjectAlternates.add(ObjectAlternates.getObjectsFolder(gitFolder),
+                    ObjectAlternates.getObjectsFolder(poolFolder));
+        }
+    }
+
+    /**
+     * Links the gist git folder to the pool and moves the loose and packed
+     * objects it holds itself into the pool. The objects are written to the
+     * pool before any of the gist's copies are removed, so every object stays
+     * readable throughout. The caller must hold the write locks of the gist and
+     * of the forks that may borrow its objects, and evict them all from the
+     * repository pool before and after.
+     *
+     * @return the number of objects that were not in the pool.
+     */
+    public int compact(File gitFolder) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        link(gitFolder);
+        File objectsFolder = ObjectAlternates.getObjectsFolder(gitFolder);
+        List<File> looseFiles = new ArrayList<>();
+        List<File> packFiles = new ArrayList<>();
+        Set<ObjectId> objectIds = new LinkedHashSet<>();
+        int added = 0;
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(gitFolder).setMustExist(true).build();
+                Repository pool = new FileRepositoryBuilder().setGitDir(poolFolder).setMustExist(true).build()) {
+            RepositoryGarbageCollector.findLooseObjects(objectsFolder, looseFiles, objectIds);
+            findPackedObjects(repository.getObjectDatabase(), packFiles, objectIds);
+            try (ObjectInserter inserter = pool.newObjectInserter()) {
+                for (ObjectId objectId : objectIds) {
+                    if (!pool.hasObject(objectId)) {
+                        ObjectLoader loader = repository.open(objectId);
+                        try (InputStream in = loader.openStream()) {
+                            inserter.insert(loader.getType(), loader.getSize(), in);
+                        }
+                        added++;
+                    }
+                }
+                inserter.flush();
+            }
+        }
+        for (File packFile : packFiles) {
+            String baseName = packFile.getName().substring(0, packFile.getName().length() - ".pack".length());
+            for (String extension : PACK_EXTENSIONS) {
+                Files.deleteIfExists(new File(packFile.getParentFile(), baseName + extension).toPath());
+            }
+        }
+        for (File looseFile : looseFiles) {
+            Files.deleteIfExists(looseFile.toPath());
+            looseFile.getParentFile().delete();
+        }
+        logger.debug("Moved {} objects of {} into the shared object pool, {} were new", objectIds.size(), gitFolder,
+                added);
+        return added;
+    }
+
+    /**
+     * Packs the loose objects that compaction has added to the pool, the
+     * objects of the pool are never pruned.
+     *
+     * @return the number of objects packed.
+     */
+    public synchronized int packLooseObjects() throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        return RepositoryGarbageCollector.packLooseObjects(poolFolder);
+    }
+
+    private void findPackedObjects(ObjectDatabase database, List<File> packFiles, Set<ObjectId> objectIds) {
+        if (!(database instanceof ObjectDirectory)) {
+            return;
+        }
+        for (PackFile pack : ((ObjectDirectory) database).getPacks()) {
+            packFiles.add(pack.getPackFile());
+            for (MutableEntry entry : pack) {
+                objectIds.add(entry.toObjectId());
+            }
+        }
+    }
+
+}
@@ -91,7 +91,7 @@ public class GrantedAuthorityGistSecurityManager implements GistSecurityManager
             return false;
         }
         return this.hasUserAuthority(userDetails)
-                && (this.getCollaborators(otherUser).contains(userDetails.getUsername())
+                && (this.collaborationDataStore.isCollaborator(otherUser, userDetails.getUsername())
                         || userDetails.getUsername().equals(otherUser));
     }
 
@@ -106,20 +106,8 @@ public class GrantedAuthorityGistSecurityManager implements GistSecurityManager
     }
 
     private boolean hasCollaboratorRole(GistRepository repository, UserDetails userDetails) {
-        boolean collaborator = false;
-        Collection<String> collaborations = getCollaborators(repository);
-        if (hasUserAuthority(userDetails) && collaborations.contains(userDetails.getUsername())) {
-            collaborator = true;
-        }
-        return collaborator;
-    }
-
-    private Collection<String> getCollaborators(GistRepository repository) {
-        return this.getCollaborators(repository.getMetadata().getOwner());
-    }
-
-    private Collection<String> getCollaborators(String user) {
-        return this.collaborationDataStore.getCollaborators(user);
+        return hasUserAuthority(userDetails) && this.collaborationDataStore
+                .isCollaborator(repository.getMetadata().getOwner(), userDetails.getUsername());
     }
 
     private boolean hasOwnerRole(GistRepository repository, UserDetails userDetails) {
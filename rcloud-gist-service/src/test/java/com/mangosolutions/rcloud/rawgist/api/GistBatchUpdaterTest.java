@@ -0,0 +1,172 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.api;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mangosolutions.rcloud.rawgist.model.GistRequest;
+import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+import com.mangosolutions.rcloud.rawgist.model.GistUpdate;
+import com.mangosolutions.rcloud.rawgist.model.GistUpdateResult;
+import com.mangosolutions.rcloud.rawgist.repository.GistChangeListener;
+import com.mangosolutions.rcloud.rawgist.repository.GistRepositoryService;
+
+public class GistBatchUpdaterTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+
+    private GistRepositoryService repository;
+
+    private GistBatchUpdater batchUpdater;
+
+    @Before
+    public void setUp() {
+        repository = mock(GistRepositoryService.class);
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                String gistId = (String) invocation.getArguments()[0];
+                List<?> requests = (List<?>) invocation.getArguments()[1];
+                GistChangeListener listener = (GistChangeListener) invocation.getArguments()[4];
+                for (int i = 0; i < requests.size(); i++) {
+                    GistResponse response = new GistResponse();
+                    response.setDescription(((GistRequest) requests.get(i)).getDescription());
+                    applied.add(gistId + ":" + response.getDescription());
+                    listener.applied(i, response);
+                }
+                return null;
+            }
+
+        }).when(repository).editGist(anyString(), anyListOf(GistRequest.class), anyBoolean(), any(User.class),
+                any(GistChangeListener.class));
+        batchUpdater = new GistBatchUpdater(1, 10, 1);
+        ReflectionTestUtils.setField(batchUpdater, "repository", repository);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        batchUpdater.shutdown();
+    }
+
+    @Test
+    public void changesBeyondTheQueueAreRejectedTest() throws Exception {
+        final List<GistUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GistUpdate update = new GistUpdate();
+            update.setId("gist" + i);
+            update.setGist(new GistRequest());
+            updates.add(update);
+        }
+        final User user = new User("mock_user", "", Collections.<GrantedAuthority>emptyList());
+        final List<GistUpdateResult> results = new ArrayList<>();
+        Thread caller = new Thread() {
+
+            @Override
+            public void run() {
+                results.addAll(batchUpdater.update(updates, false, user));
+            }
+
+        };
+        caller.start();
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        // the caller waits for the results once every change has been queued
+        waitUntilWaiting(caller);
+        release.countDown();
+        caller.join(10000);
+
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(HttpStatus.OK.value(), results.get(0).getStatus());
+        Assert.assertEquals(HttpStatus.OK.value(), results.get(1).getStatus());
+        Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), results.get(2).getStatus());
+        Assert.assertEquals("gist2", results.get(2).getId());
+    }
+
+    @Test
+    public void changesToTheSameGistAreAppliedInOrderTest() {
+        List<GistUpdate> updates = Arrays.asList(update("gist0", "first"), update("gist1", "other"),
+                update("gist0", "second"), update("gist0", "third"));
+        User user = new User("mock_user", "", Collections.<GrantedAuthority>emptyList());
+        release.countDown();
+
+        List<GistUpdateResult> results = batchUpdater.update(updates, true, user);
+
+        Assert.assertEquals(4, results.size());
+        String[] descriptions = { "first", "other", "second", "third" };
+        for (int i = 0; i < descriptions.length; i++) {
+            Assert.assertEquals(HttpStatus.OK.value(), results.get(i).getStatus());
+            Assert.assertEquals(updates.get(i).getId(), results.get(i).getId());
+            Assert.assertEquals(descriptions[i], results.get(i).getGist().getDescription());
+        }
+        Assert.assertEquals(Arrays.asList("gist0:first", "gist0:second", "gist0:third"),
+                filter(applied, "gist0:"));
+        verify(repository, times(1)).editGist(eq("gist0"), anyListOf(GistRequest.class), anyBoolean(),
+                any(User.class), any(GistChangeListener.class));
+    }
+
+    private GistUpdate update(String gistId, String description) {
+        GistRequest request = new GistRequest();
+        request.setDescription(description);
+        GistUpdate update = new GistUpdate();
+        update.setId(gistId);
+        update.setGist(request);
+        return update;
+    }
+
+    private List<String> filter(List<String> values, String prefix) {
+        List<String> filtered = new ArrayList<>();
+        synchronized (values) {
+            for (String value : values) {
+                if (value.startsWith(prefix)) {
+                    filtered.add(value);
+                }
+            }
+        }
+        return filtered;
+    }
+
+    private void waitUntilWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+}
@@ -6,13 +6,17 @@
 *******************************************************************************/
 package com.mangosolutions.rcloud.rawgist.api;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -29,6 +33,7 @@ import org.junit.runner.RunWith;
 import org.slf4j.helpers.MessageFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
@@ -48,6 +53,7 @@ import org.springframework.web.context.WebApplicationContext;
 
 import com.jayway.jsonpath.JsonPath;
 import com.mangosolutions.rcloud.rawgist.Application;
+import com.mangosolutions.rcloud.rawgist.GistServiceProperties;
 import com.mangosolutions.rcloud.rawgist.repository.git.CollaborationDataStore;
 
 @RunWith(SpringRunner.class)
@@ -74,6 +80,9 @@ public class GistRestControllerTest {
     @Autowired
     private GistTestHelper gistTestHelper;
 
+    @Autowired
+    private GistServiceProperties serviceProperties;
+
     @Before
     public void setup() throws Exception {
         this.mvc = MockMvcBuilders.webAppContextSetup(this.webApplicationContext)
@@ -141,6 +150,30 @@ public class GistRestControllerTest {
                 .andExpect(status().isOk()).andExpect(jsonPath("$.owner.login", is("mock_user"))).andReturn();
     }
 
+    @Test
+    @WithMockUser(username = "mock_user", roles = { "USER" })
+    public void testBatchUpdateGists() throws Exception {
+        String otherGistId = gistTestHelper.createGist("mock_user", "Another gist", "file2.txt", "Other content");
+        String payloadTemplate = "[{\"id\": \"{}\", \"gist\": {\"files\": {\"batch.txt\": {\"content\": \"{}\"}}}},"
+                + "{\"id\": \"{}\", \"gist\": {\"description\": \"Changed\"}},"
+                + "{\"id\": \"{}\", \"gist\": {\"description\": \"Missing\"}}]";
+        String payload = this.buildMessage(payloadTemplate, defaultGistId, "Batch content", otherGistId,
+                "missing_gist");
+        mvc.perform(patch("/gists").accept(GITHUB_BETA_MEDIA_TYPE).contentType(GITHUB_BETA_MEDIA_TYPE)
+                .content(payload)).andExpect(status().isOk()).andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(jsonPath("$[0].id", is(defaultGistId))).andExpect(jsonPath("$[0].status", is(200)))
+                .andExpect(jsonPath("$[0].gist.files['batch.txt'].content", is("Batch content")))
+                .andExpect(jsonPath("$[1].status", is(200)))
+                .andExpect(jsonPath("$[1].gist.description", is("Changed")))
+                .andExpect(jsonPath("$[2].status", is(400)))
+                .andExpect(jsonPath("$[2].error", is("ERR_GIST_NOT_EXIST")));
+        mvc.perform(patch("/gists?include_gist=false").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).content(payload)).andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(200))).andExpect(jsonPath("$[0].gist").doesNotExist());
+        mvc.perform(get("/gists/" + otherGistId).accept(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.description", is("Changed")));
+    }
+
     @Test
     @WithMockUser(username = "another_mock_collab_user", roles = { "USER" })
     public void testUpdateGistWithWrongCollaboratorUserShouldBeForbidden() throws Exception {
@@ -224,6 +257,121 @@ public class GistRestControllerTest {
                 .andExpect(jsonPath("$.length()", is(1))).andReturn();
     }
 
+    @Test
+    @WithMockUser("mock_user")
+    public void testListGistPagesWithMockUser() throws Exception {
+        gistTestHelper.createGist("mock_user", "The second gist", "file2.txt", "This is some more content");
+        gistTestHelper.createGist("mock_user", "The third gist", "file3.txt", "This is even more content");
+        mvc.perform(get("/gists?per_page=2").accept(GITHUB_BETA_MEDIA_TYPE).contentType(GITHUB_BETA_MEDIA_TYPE))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].description", is("The third gist")))
+                .andExpect(jsonPath("$[0].files['file3.txt'].size", is(25)))
+                .andExpect(jsonPath("$[0].files['file3.txt'].content").doesNotExist())
+                .andExpect(jsonPath("$[0].history").doesNotExist())
+                .andExpect(header().string(HttpHeaders.LINK, containsString("page=2&per_page=2>; rel=\"next\"")));
+        mvc.perform(get("/gists?page=2&per_page=2").accept(GITHUB_BETA_MEDIA_TYPE).contentType(GITHUB_BETA_MEDIA_TYPE))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(this.defaultGistId)))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("page=1&per_page=2>; rel=\"prev\"")));
+        mvc.perform(get("/gists?since=2100-01-01T00:00:00Z").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(0))).andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    @WithMockUser(username = "mock_user", roles = { "USER" })
+    public void testGetCommitPagesWithMockUser() throws Exception {
+        String payloadTemplate = "{\"files\": {\"{}\": {\"content\": \"{}\"}}}";
+        for (int i = 0; i < 2; i++) {
+            String payload = this.buildMessage(payloadTemplate, "commit" + i + ".txt", "Some content " + i);
+            mvc.perform(patch("/gists/" + defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                    .contentType(GITHUB_BETA_MEDIA_TYPE).content(payload)).andExpect(status().isOk());
+        }
+        mvc.perform(get("/gists/" + defaultGistId + "/commits?per_page=2").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].user.login", is("mock_user")))
+                .andExpect(jsonPath("$[0].changeStatus.additions", is(1)))
+                .andExpect(jsonPath("$[0].url", containsString("/gists/" + defaultGistId + "/")))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("page=2&per_page=2>; rel=\"next\"")));
+        mvc.perform(get("/gists/" + defaultGistId + "/commits?page=2&per_page=2").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)));
+    }
+
+    @Test
+    @WithMockUser(username = "mock_user", roles = { "USER" })
+    public void testGetCommentPagesWithMockUser() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mvc.perform(post("/gists/" + defaultGistId + "/comments").accept(GITHUB_BETA_MEDIA_TYPE)
+                    .contentType(GITHUB_BETA_MEDIA_TYPE).content("{\"body\": \"Comment " + i + "\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mvc.perform(get("/gists/" + defaultGistId + "/comments?per_page=2").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andExpect(jsonPath("$[0].body", is("Comment 0")))
+                .andExpect(jsonPath("$[0].url", containsString("/gists/" + defaultGistId + "/comments/1")))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("page=2&per_page=2>; rel=\"next\"")));
+        mvc.perform(get("/gists/" + defaultGistId + "/comments?page=2&per_page=2").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1))).andExpect(jsonPath("$[0].body", is("Comment 2")))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("page=1&per_page=2>; rel=\"prev\"")));
+        mvc.perform(get("/gists/" + defaultGistId + "/comments?since=2100-01-01T00:00:00Z")
+                .accept(GITHUB_BETA_MEDIA_TYPE).contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(0))).andExpect(header().doesNotExist(HttpHeaders.LINK));
+        mvc.perform(get("/gists/" + defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.comments", is(3)));
+    }
+
+    @Test
+    @WithMockUser("mock_user")
+    public void testGetRawFileWithMockUser() throws Exception {
+        MvcResult result = mvc.perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.files['file1.txt'].raw_url", containsString("/raw/file1.txt"))).andReturn();
+        String rawUrl = JsonPath.read(result.getResponse().getContentAsString(), "$.files['file1.txt'].raw_url");
+        mvc.perform(get(rawUrl)).andExpect(status().isOk())
+                .andExpect(content().string("This is some default content"));
+        mvc.perform(get("/gists/" + this.defaultGistId + "/raw/file1.txt")).andExpect(status().isOk())
+                .andExpect(content().string("This is some default content"));
+        mvc.perform(get("/gists/" + this.defaultGistId + "/raw/missing.txt")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser("mock_user")
+    public void testGetRawFileIsServedAsText() throws Exception {
+        String gistId = gistTestHelper.createGist("mock_user", "An html gist", "page.html",
+                "<script>alert(1)</script>");
+        mvc.perform(get("/gists/" + gistId + "/raw/page.html")).andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/plain; charset=utf-8"))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(header().string("Content-Disposition", "inline; filename*=UTF-8''page.html"))
+                .andExpect(header().string("Content-Length", "25"))
+                .andExpect(content().string("<script>alert(1)</script>"));
+        gistId = gistTestHelper.createGist("mock_user", "A binary gist", "image.png.b64", "aGVsbG8=");
+        mvc.perform(get("/gists/" + gistId + "/raw/image.png.b64")).andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/octet-stream"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename*=UTF-8''image.png.b64"));
+    }
+
+    @Test
+    @WithMockUser("mock_user")
+    public void testGetStreamedGistWithMockUser() throws Exception {
+        serviceProperties.setStreamResponses(true);
+        try {
+            mvc.perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                    .contentType(GITHUB_BETA_MEDIA_TYPE)).andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(jsonPath("$.id", is(this.defaultGistId)))
+                    .andExpect(jsonPath("$.files['file1.txt'].content", is("This is some default content")))
+                    .andExpect(jsonPath("$.files['file1.txt'].raw_url", containsString("/raw/file1.txt")));
+        } finally {
+            serviceProperties.setStreamResponses(false);
+        }
+    }
+
     @Test
     @WithMockUser("mock_user_2")
     public void testListGistWithMockUser2() throws Exception {
@@ -244,6 +392,51 @@ public class GistRestControllerTest {
                 .andExpect(jsonPath("$.id", is(this.defaultGistId))).andReturn();
     }
 
+    @Test
+    @WithMockUser("mock_user")
+    public void testConditionalGetGistWithMockUser() throws Exception {
+        MvcResult result = mvc
+                .perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                        .contentType(GITHUB_BETA_MEDIA_TYPE))
+                .andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, notNullValue()))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, notNullValue())).andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        String lastModified = result.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mvc.perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified()).andExpect(content().string(""));
+        mvc.perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+
+        String payload = this.buildMessage("{\"description\": \"{}\"}", "a new description");
+        mvc.perform(patch("/gists/" + defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).content(payload)).andExpect(status().isOk());
+        mvc.perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.description", is("a new description")))
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    @WithMockUser("mock_user")
+    public void testCommentChangesCachedGistWithMockUser() throws Exception {
+        MvcResult result = mvc
+                .perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                        .contentType(GITHUB_BETA_MEDIA_TYPE))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.comments", is(0))).andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(post("/gists/" + defaultGistId + "/comments").accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).content("{\"body\": \"A comment\"}"))
+                .andExpect(status().isCreated());
+        mvc.perform(get("/gists/" + this.defaultGistId).accept(GITHUB_BETA_MEDIA_TYPE)
+                .contentType(GITHUB_BETA_MEDIA_TYPE).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk()).andExpect(jsonPath("$.comments", is(1)))
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
     @Test
     @WithMockUser("mock_user")
     public void testForkRepositoryWithMockUser() throws Exception {
@@ -0,0 +1,63 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.CollaborationDataStore;
+import com.mangosolutions.rcloud.rawgist.repository.git.CollaborationIndex;
+
+public class CollaborationIndexTest {
+
+	@Test
+	public void indexesCollaboratorsTest() {
+		Map<String, List<String>> collaborations = new HashMap<>();
+		collaborations.put("james", Arrays.asList("steve", "angela"));
+		collaborations.put("grace", Arrays.asList("angela"));
+		collaborations.put("nobody", Collections.<String>emptyList());
+		CollaborationIndex index = new CollaborationIndex(collaborations);
+
+		Assert.assertEquals(Arrays.asList("steve", "angela"), Arrays.asList(index.getCollaborators("james").toArray()));
+		Assert.assertTrue(index.isCollaborator("james", "steve"));
+		Assert.assertFalse(index.isCollaborator("grace", "steve"));
+		Assert.assertFalse(index.isCollaborator("unknown", "steve"));
+		Assert.assertTrue(index.getCollaborators("nobody").isEmpty());
+
+		Assert.assertEquals("steve", index.getCollaboratorIdentities("james").get(0).getLogin());
+		Assert.assertSame(index.getCollaboratorIdentities("james"), index.getCollaboratorIdentities("james"));
+		Assert.assertSame(index.getCollaborators("james"), index.getCollaborators("james"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void collaboratorsCannotBeModifiedTest() {
+		Map<String, List<String>> collaborations = new HashMap<>();
+		collaborations.put("james", Arrays.asList("steve"));
+		new CollaborationIndex(collaborations).getCollaborators("james").add("mallory");
+	}
+
+	@Test
+	public void updateReplacesIndexTest() {
+		Map<String, List<String>> collaborations = new HashMap<>();
+		collaborations.put("james", Arrays.asList("steve"));
+		CollaborationDataStore store = new CollaborationDataStore(collaborations);
+
+		Map<String, List<String>> updated = new HashMap<>();
+		updated.put("james", Arrays.asList("dino"));
+		store.updateCollaborators(updated);
+
+		Assert.assertFalse(store.isCollaborator("james", "steve"));
+		Assert.assertTrue(store.isCollaborator("james", "dino"));
+	}
+
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
+import com.mangosolutions.rcloud.rawgist.repository.git.CommentJournal;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryLayout;
+
+public class CommentJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JodaModule());
+
+	private File journalFile;
+
+	private File legacyFile;
+
+	@Before
+	public void setup() throws Exception {
+		File commentsFolder = folder.newFolder(RepositoryLayout.COMMENT_REPOSITORY_FOLDER);
+		journalFile = new File(commentsFolder, RepositoryLayout.COMMENTS_JOURNAL_FILE);
+		legacyFile = new File(commentsFolder, RepositoryLayout.COMMENTS_FILE);
+	}
+
+	@Test
+	public void appendsAndReadsCommentsTest() throws Exception {
+		CommentJournal journal = newJournal();
+		Assert.assertTrue(readAll(journal).isEmpty());
+		Assert.assertEquals(Long.valueOf(1), journal.append(comment(null, "first")).getId());
+		Assert.assertEquals(Long.valueOf(2), journal.append(comment(null, "second")).getId());
+		journal.append(comment(1L, "first edited"));
+		Assert.assertEquals("first edited", journal.read(1L).getBody());
+		Assert.assertTrue(journal.remove(2L));
+		Assert.assertFalse(journal.remove(2L));
+		Assert.assertNull(journal.read(2L));
+		Assert.assertEquals(Long.valueOf(3), journal.append(comment(null, "third")).getId());
+		assertBodies(readAll(journal), "first edited", "third");
+		assertBodies(readAll(newJournal()), "first edited", "third");
+	}
+
+	@Test
+	public void countsCommentsFromIndexTest() throws Exception {
+		CommentJournal journal = newJournal();
+		Assert.assertEquals(0, journal.count());
+		journal.append(comment(null, "first"));
+		journal.append(comment(null, "second"));
+		String version = journal.version();
+		Assert.assertEquals(2, journal.count());
+		journal.append(comment(2L, "second edited"));
+		Assert.assertEquals(2, journal.count());
+		Assert.assertNotEquals(version, journal.version());
+		journal.remove(1L);
+		Assert.assertEquals(1, journal.count());
+		Assert.assertEquals(1, newJournal().count());
+		Assert.assertEquals(journal.version(), newJournal().version());
+	}
+
+	@Test
+	public void countsCommentsFromSummaryTest() throws Exception {
+		CommentJournal journal = newJournal();
+		journal.append(comment(null, "first"));
+		journal.append(comment(null, "second"));
+		String version = journal.version();
+		// the summary is used without reading the records of the journal
+		byte[] records = FileUtils.readFileToByteArray(journalFile);
+		for (int i = 0; i < records.length; i++) {
+			if (records[i] != '\n') {
+				records[i] = ' ';
+			}
+		}
+		FileUtils.writeByteArrayToFile(journalFile, records);
+		Assert.assertEquals(2, newJournal().count());
+		Assert.assertEquals(version, newJournal().version());
+	}
+
+	@Test
+	public void rebuildsStaleSummaryTest() throws Exception {
+		CommentJournal journal = newJournal();
+		journal.append(comment(null, "first"));
+		File summaryFile = new File(journalFile.getParentFile(), journalFile.getName() + ".summary");
+		Assert.assertTrue(summaryFile.delete());
+		Assert.assertEquals(1, newJournal().count());
+		Assert.assertTrue(summaryFile.exists());
+
+		FileUtils.writeByteArrayToFile(journalFile,
+				objectMapper.writeValueAsBytes(CommentJournal.JournalRecord.removed(1L)), true);
+		FileUtils.writeStringToFile(journalFile, "\n", StandardCharsets.UTF_8, true);
+		Assert.assertEquals(0, newJournal().count());
+		Assert.assertEquals(journal.version(), newJournal().version());
+	}
+
+	@Test
+	public void readsPagesOfCommentsTest() throws Exception {
+		CommentJournal journal = newJournal();
+		for (int i = 1; i <= 5; i++) {
+			journal.append(comment(null, "comment " + i));
+		}
+		GistCommentResponse edited = comment(2L, "comment 2 edited");
+		edited.setUpdatedAt(new DateTime().plusDays(1));
+		journal.append(edited);
+		ResultPage<GistCommentResponse> page = journal.readPage(null, 2, 2);
+		assertBodies(page.getItems(), "comment 3", "comment 4");
+		Assert.assertEquals(5, page.getTotalItems());
+		Assert.assertEquals(3, page.getLastPage());
+		assertBodies(journal.readPage(null, 4, 2).getItems());
+		page = journal.readPage(new DateTime().plusHours(1), 1, 2);
+		assertBodies(page.getItems(), "comment 2 edited");
+		Assert.assertEquals(1, page.getTotalItems());
+	}
+
+	@Test
+	public void readsRecordsAppendedByAnotherJournalTest() throws Exception {
+		CommentJournal journal = newJournal();
+		CommentJournal other = newJournal();
+		journal.append(comment(null, "first"));
+		Assert.assertEquals("first", other.read(1L).getBody());
+		other.append(comment(null, "second"));
+		other.remove(1L);
+		assertBodies(readAll(journal), "second");
+	}
+
+	@Test
+	public void compactsJournalTest() throws Exception {
+		CommentJournal journal = newJournal();
+		for (int i = 1; i <= 100; i++) {
+			journal.append(comment(null, "comment " + i));
+		}
+		for (int i = 1; i <= 100; i++) {
+			journal.remove(i);
+		}
+		Assert.assertTrue(readAll(journal).isEmpty());
+		Assert.assertTrue(FileUtils.readLines(journalFile, StandardCharsets.UTF_8).size() < 100);
+		Assert.assertEquals(Long.valueOf(101), newJournal().append(comment(null, "after")).getId());
+		assertBodies(readAll(journal), "after");
+	}
+
+	@Test
+	public void versionIsNotRepeatedAfterCompactionTest() throws Exception {
+		CommentJournal journal = newJournal();
+		Set<String> versions = new HashSet<>();
+		Assert.assertTrue(versions.add(journal.version()));
+		for (int i = 1; i <= 100; i++) {
+			journal.append(comment(null, "comment " + i));
+			Assert.assertTrue(versions.add(journal.version()));
+			journal.remove(i);
+			Assert.assertTrue(versions.add(journal.version()));
+		}
+		Assert.assertTrue(FileUtils.readLines(journalFile, StandardCharsets.UTF_8).size() < 100);
+		Assert.assertEquals(journal.version(), newJournal().version());
+	}
+
+	@Test
+	public void migratesLegacyCommentsTest() throws Exception {
+		objectMapper.writeValue(legacyFile, Arrays.asList(comment(1L, "first"), comment(4L, "fourth")));
+		CommentJournal journal = newJournal();
+		assertBodies(readAll(journal), "first", "fourth");
+		Assert.assertFalse(legacyFile.exists());
+		Assert.assertTrue(journalFile.exists());
+		Assert.assertEquals(Long.valueOf(5), journal.append(comment(null, "fifth")).getId());
+	}
+
+	private List<GistCommentResponse> readAll(CommentJournal journal) throws Exception {
+		return journal.readPage(null, 1, 1000).getItems();
+	}
+
+	private CommentJournal newJournal() {
+		return new CommentJournal(journalFile, legacyFile, objectMapper);
+	}
+
+	private GistCommentResponse comment(Long id, String body) {
+		GistCommentResponse comment = new GistCommentResponse();
+		comment.setId(id);
+		comment.setBody(body);
+		comment.setCreatedAt(new DateTime());
+		comment.setUpdatedAt(new DateTime());
+		return comment;
+	}
+
+	private void assertBodies(List<GistCommentResponse> comments, String... bodies) {
+		Assert.assertEquals(bodies.length, comments.size());
+		for (int i = 0; i < bodies.length; i++) {
+			Assert.assertEquals(bodies[i], comments.get(i).getBody());
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistCatalogEntry;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistCatalogStore;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistMetadata;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryLayout;
+
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@AutoConfigureJsonTesters
+@JsonTest
+public class GistCatalogStoreTest {
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GistCatalogStore catalogStore;
+
+	@Before
+	public void setup() {
+		catalogStore = new GistCatalogStore(folder.getRoot(), objectMapper);
+		catalogStore.initialise();
+	}
+
+	@Test
+	public void findByOwnerTest() {
+		catalogStore.save(createMetadata("gist1", "owner1", new DateTime(1000L)));
+		catalogStore.save(createMetadata("gist2", "owner2", new DateTime(2000L)));
+		catalogStore.save(createMetadata("gist3", "owner1", new DateTime(3000L)));
+		List<GistCatalogEntry> entries = catalogStore.findByOwner("owner1");
+		Assert.assertEquals(2, entries.size());
+		Assert.assertEquals("gist3", entries.get(0).getId());
+		Assert.assertEquals("gist1", entries.get(1).getId());
+		Assert.assertTrue(catalogStore.findByOwner("owner3").isEmpty());
+	}
+
+	@Test
+	public void updateAndRemoveTest() {
+		catalogStore.save(createMetadata("gist1", "owner1", new DateTime(1000L)));
+		GistMetadata metadata = createMetadata("gist1", "owner1", new DateTime(2000L));
+		metadata.setDescription("updated description");
+		catalogStore.save(metadata);
+		List<GistCatalogEntry> entries = catalogStore.findByOwner("owner1");
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("updated description", entries.get(0).getDescription());
+		catalogStore.remove("gist1");
+		Assert.assertTrue(catalogStore.findByOwner("owner1").isEmpty());
+		Assert.assertNull(catalogStore.load("gist1"));
+	}
+
+	@Test
+	public void reloadFromJournalTest() {
+		catalogStore.save(createMetadata("gist1", "owner1", new DateTime(1000L)));
+		catalogStore.save(createMetadata("gist2", "owner1", new DateTime(2000L)));
+		catalogStore.remove("gist2");
+		GistCatalogStore reloadedStore = new GistCatalogStore(folder.getRoot(), objectMapper);
+		reloadedStore.initialise();
+		List<GistCatalogEntry> entries = reloadedStore.findByOwner("owner1");
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("gist1", entries.get(0).getId());
+	}
+
+	@Test
+	public void seesChangesFromAnotherStoreTest() {
+		GistCatalogStore otherStore = new GistCatalogStore(folder.getRoot(), objectMapper);
+		otherStore.initialise();
+		otherStore.save(createMetadata("gist1", "owner1", new DateTime(1000L)));
+		Assert.assertEquals(1, catalogStore.findByOwner("owner1").size());
+		catalogStore.remove("gist1");
+		Assert.assertTrue(otherStore.findByOwner("owner1").isEmpty());
+	}
+
+	@Test
+	public void rebuildFromGistMetadataTest() throws IOException {
+		File gistFolder = new File(folder.getRoot(), "a/b/c/gist1");
+		gistFolder.mkdirs();
+		objectMapper.writeValue(new File(gistFolder, RepositoryLayout.GIST_META_FILE),
+				createMetadata("gist1", "owner1", new DateTime(1000L)));
+		File recycledFolder = new File(folder.getRoot(), ".recycle/gist2");
+		recycledFolder.mkdirs();
+		objectMapper.writeValue(new File(recycledFolder, RepositoryLayout.GIST_META_FILE),
+				createMetadata("gist2", "owner1", new DateTime(1000L)));
+		new File(folder.getRoot(), GistCatalogStore.CATALOG_FOLDER + "/" + GistCatalogStore.JOURNAL_FILE).delete();
+		List<GistCatalogEntry> entries = catalogStore.findByOwner("owner1");
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("gist1", entries.get(0).getId());
+	}
+
+	@Test
+	public void compactJournalTest() {
+		for (int i = 0; i < 2500; i++) {
+			catalogStore.save(createMetadata("gist1", "owner1", new DateTime(i)));
+		}
+		File journal = new File(folder.getRoot(), GistCatalogStore.CATALOG_FOLDER + "/" + GistCatalogStore.JOURNAL_FILE);
+		GistCatalogStore reloadedStore = new GistCatalogStore(folder.getRoot(), objectMapper);
+		reloadedStore.initialise();
+		Assert.assertEquals(new DateTime(2499L).getMillis(),
+				reloadedStore.load("gist1").getUpdatedAt().getMillis());
+		Assert.assertTrue(journal.length() < 500 * 1000);
+	}
+
+	private GistMetadata createMetadata(String id, String owner, DateTime updatedAt) {
+		GistMetadata metadata = new GistMetadata();
+		metadata.setId(id);
+		metadata.setOwner(owner);
+		metadata.setDescription("description of " + id);
+		metadata.setCreatedAt(updatedAt);
+		metadata.setUpdatedAt(updatedAt);
+		return metadata;
+	}
+
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistHistoryIndex;
+
+public class GistHistoryIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private File indexFile;
+
+	private GistHistoryIndex historyIndex;
+
+	@Before
+	public void setup() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		indexFile = new File(folder.getRoot(), "history.idx");
+		historyIndex = new GistHistoryIndex(indexFile);
+	}
+
+	@After
+	public void tearDown() {
+		git.close();
+	}
+
+	@Test
+	public void buildsIndexForExistingHistoryTest() throws Exception {
+		RevCommit first = commit("file1.txt", "content", "user1");
+		commit("file2.txt", "content", "user2");
+		RevCommit third = commit("file1.txt", "changed content", "user1");
+		List<GistHistory> history = historyIndex.load(git.getRepository(), third.getName());
+		Assert.assertEquals(3, history.size());
+		Assert.assertEquals(third.getName(), history.get(0).getVersion());
+		Assert.assertEquals("user1", history.get(0).getUser().getLogin());
+		Assert.assertEquals(0, history.get(0).getChangeStatus().getAdditions());
+		Assert.assertEquals(1, history.get(0).getChangeStatus().getTotal());
+		Assert.assertEquals("user2", history.get(1).getUser().getLogin());
+		Assert.assertEquals(1, history.get(1).getChangeStatus().getAdditions());
+		Assert.assertEquals(first.getName(), history.get(2).getVersion());
+		Assert.assertEquals(3, FileUtils.readLines(indexFile, StandardCharsets.UTF_8).size());
+	}
+
+	@Test
+	public void appendsNewCommitsTest() throws Exception {
+		RevCommit first = commit("file1.txt", "content", "user1");
+		historyIndex.append(git.getRepository(), first);
+		RevCommit second = commit("file2.txt", "content", "user1");
+		historyIndex.append(git.getRepository(), second);
+		git.rm().addFilepattern("file1.txt").call();
+		RevCommit third = git.commit().setMessage("").setAuthor("user2", "").call();
+		historyIndex.append(git.getRepository(), third);
+		List<String> lines = FileUtils.readLines(indexFile, StandardCharsets.UTF_8);
+		Assert.assertEquals(3, lines.size());
+		Assert.assertTrue(lines.get(2).startsWith(third.getName()));
+		long modified = indexFile.lastModified();
+		List<GistHistory> history = historyIndex.load(git.getRepository(), second.getName());
+		Assert.assertEquals(2, history.size());
+		Assert.assertEquals(second.getName(), history.get(0).getVersion());
+		Assert.assertEquals(first.getName(), history.get(1).getVersion());
+		Assert.assertEquals(1, historyIndex.load(git.getRepository(), third.getName()).get(0).getChangeStatus()
+				.getDeletions());
+		Assert.assertEquals(modified, indexFile.lastModified());
+	}
+
+	@Test
+	public void doesNotAppendToOutOfDateIndexTest() throws Exception {
+		commit("file1.txt", "content", "user1");
+		RevCommit second = commit("file2.txt", "content", "user1");
+		historyIndex.append(git.getRepository(), second);
+		Assert.assertFalse(indexFile.exists());
+		Assert.assertEquals(2, historyIndex.load(git.getRepository(), second.getName()).size());
+	}
+
+	@Test
+	public void ignoresIncompleteAppendTest() throws Exception {
+		RevCommit first = commit("file1.txt", "content", "user1");
+		historyIndex.append(git.getRepository(), first);
+		RevCommit second = commit("file2.txt", "content", "user1");
+		FileUtils.write(indexFile, second.getName() + "\t12", StandardCharsets.UTF_8, true);
+		RevCommit third = commit("file3.txt", "content", "user1");
+		historyIndex.append(git.getRepository(), third);
+		List<GistHistory> history = historyIndex.load(git.getRepository(), third.getName());
+		Assert.assertEquals(3, history.size());
+		Assert.assertEquals(second.getName(), history.get(1).getVersion());
+		Assert.assertEquals(3, FileUtils.readLines(indexFile, StandardCharsets.UTF_8).size());
+	}
+
+	@Test
+	public void unknownCommitTest() throws Exception {
+		commit("file1.txt", "content", "user1");
+		Assert.assertNull(historyIndex.load(git.getRepository(), "0123456789012345678901234567890123456789"));
+	}
+
+	@Test
+	public void loadsPageFromEndOfIndexTest() throws Exception {
+		List<RevCommit> commits = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			RevCommit commit = commit("file" + i + ".txt", "content", "user" + i);
+			historyIndex.append(git.getRepository(), commit);
+			commits.add(commit);
+		}
+		ResultPage<GistHistory> page = historyIndex.loadPage(git.getRepository(), null, 2, 2);
+		Assert.assertEquals(5, page.getTotalItems());
+		Assert.assertEquals(2, page.getItems().size());
+		Assert.assertEquals(commits.get(2).getName(), page.getItems().get(0).getVersion());
+		Assert.assertEquals(commits.get(1).getName(), page.getItems().get(1).getVersion());
+		page = historyIndex.loadPage(git.getRepository(), commits.get(3).getName(), 2, 3);
+		Assert.assertEquals(4, page.getTotalItems());
+		Assert.assertEquals(1, page.getItems().size());
+		Assert.assertEquals(commits.get(0).getName(), page.getItems().get(0).getVersion());
+		page = historyIndex.loadPage(git.getRepository(), commits.get(0).getName(), 1, 30);
+		Assert.assertEquals(1, page.getTotalItems());
+		Assert.assertEquals(commits.get(0).getName(), page.getItems().get(0).getVersion());
+		Assert.assertEquals(0, historyIndex.loadPage(git.getRepository(), null, 3, 5).getItems().size());
+		Assert.assertNull(historyIndex.loadPage(git.getRepository(), "0123456789012345678901234567890123456789", 1,
+				30));
+	}
+
+	@Test
+	public void loadsPageAcrossReadsOfIndexTest() throws Exception {
+		String author = StringUtils.repeat("a", 200);
+		List<RevCommit> commits = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			RevCommit commit = commit("file" + i + ".txt", "content", author + i);
+			historyIndex.append(git.getRepository(), commit);
+			commits.add(commit);
+		}
+		Assert.assertTrue(indexFile.length() > 8192);
+		ResultPage<GistHistory> page = historyIndex.loadPage(git.getRepository(), commits.get(30).getName(), 3, 10);
+		Assert.assertEquals(31, page.getTotalItems());
+		Assert.assertEquals(10, page.getItems().size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(commits.get(10 - i).getName(), page.getItems().get(i).getVersion());
+			Assert.assertEquals(author + (10 - i), page.getItems().get(i).getUser().getLogin());
+		}
+	}
+
+	@Test
+	public void loadsPageFromOutOfDateIndexTest() throws Exception {
+		RevCommit first = commit("file1.txt", "content", "user1");
+		historyIndex.append(git.getRepository(), first);
+		commit("file2.txt", "content", "user1");
+		RevCommit third = commit("file3.txt", "content", "user1");
+		ResultPage<GistHistory> page = historyIndex.loadPage(git.getRepository(), null, 1, 1);
+		Assert.assertEquals(3, page.getTotalItems());
+		Assert.assertEquals(third.getName(), page.getItems().get(0).getVersion());
+		Assert.assertEquals(3, FileUtils.readLines(indexFile, StandardCharsets.UTF_8).size());
+	}
+
+	private RevCommit commit(String filename, String content, String author) throws Exception {
+		FileUtils.write(new File(git.getRepository().getWorkTree(), filename), content, StandardCharsets.UTF_8);
+		git.add().addFilepattern(filename).call();
+		return git.commit().setMessage("").setAuthor(author, "").call();
+	}
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ILock;
+import com.mangosolutions.rcloud.rawgist.repository.git.HazelcastGistLockManager;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.LocalGistLockManager;
+
+public class GistLockManagerTest {
+
+	private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void readersShareAccessTest() throws Exception {
+		LocalGistLockManager lockManager = new LocalGistLockManager();
+		Lock readLock = lockManager.getLock("gist1").readLock();
+		Assert.assertTrue(readLock.tryLock(1, TimeUnit.SECONDS));
+		try {
+			Assert.assertTrue(tryLockFromOtherThread(lockManager.getLock("gist1").readLock()));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Test
+	public void writerExcludesReadersTest() throws Exception {
+		LocalGistLockManager lockManager = new LocalGistLockManager();
+		Lock writeLock = lockManager.getLock("gist1").writeLock();
+		Assert.assertTrue(writeLock.tryLock(1, TimeUnit.SECONDS));
+		try {
+			Assert.assertFalse(tryLockFromOtherThread(lockManager.getLock("gist1").readLock()));
+			Assert.assertFalse(tryLockFromOtherThread(lockManager.getLock("gist1").writeLock()));
+		} finally {
+			writeLock.unlock();
+		}
+		Assert.assertTrue(tryLockFromOtherThread(lockManager.getLock("gist1").writeLock()));
+	}
+
+	@Test
+	public void sameGistSameLockTest() {
+		LocalGistLockManager lockManager = new LocalGistLockManager();
+		ReadWriteLock lock = lockManager.getLock("gist1");
+		Assert.assertSame(lock, lockManager.getLock(new String("gist1")));
+	}
+
+	@Test
+	public void sharedReadConditionReleasesClusterLockTest() throws Exception {
+		HazelcastInstance hazelcastInstance = mock(HazelcastInstance.class);
+		ILock clusterLock = mock(ILock.class);
+		when(hazelcastInstance.getLock("gist1")).thenReturn(clusterLock);
+		Lock writeLock = new HazelcastGistLockManager(hazelcastInstance, true).getLock("gist1").writeLock();
+		writeLock.lock();
+		try {
+			Condition condition = writeLock.newCondition();
+			Assert.assertFalse(condition.await(1, TimeUnit.MILLISECONDS));
+		} finally {
+			writeLock.unlock();
+		}
+		InOrder inOrder = inOrder(clusterLock);
+		inOrder.verify(clusterLock).lock();
+		inOrder.verify(clusterLock).unlock();
+		inOrder.verify(clusterLock).lock();
+		inOrder.verify(clusterLock).unlock();
+	}
+
+	private boolean tryLockFromOtherThread(final Lock lock) throws Exception {
+		return executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				if (lock.tryLock(100, TimeUnit.MILLISECONDS)) {
+					lock.unlock();
+					return true;
+				}
+				return false;
+			}
+		}).get();
+	}
+
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistFolders;
+import com.mangosolutions.rcloud.rawgist.repository.git.GistRecycler;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryLayout;
+
+public class GistRecyclerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	private File root;
+
+	private GistRecycler recycler;
+
+	@Before
+	public void setup() throws Exception {
+		root = folder.newFolder("gists");
+		recycler = new GistRecycler(root, objectMapper);
+	}
+
+	@Test
+	public void recyclesDeletedGistTest() throws Exception {
+		File gistFolder = createGist("ab/cd/abcdef");
+		File removed = recycler.remove("abcdef", gistFolder);
+		Assert.assertFalse(gistFolder.exists());
+		Assert.assertEquals(new File(new File(recycler.getRecycleRoot(), "abcdef"), "abcdef"), removed);
+
+		recycler.recycle("abcdef", removed, Collections.<String, File>emptyMap(), null).get();
+		File entry = removed.getParentFile();
+		Map<?, ?> tombstone = objectMapper.readValue(new File(entry, GistRecycler.TOMBSTONE_FILE), Map.class);
+		Assert.assertEquals("abcdef", tombstone.get("id"));
+		Assert.assertEquals(removed, recycler.getGistFolder(entry));
+	}
+
+	@Test
+	public void purgesExpiredGistsTest() throws Exception {
+		File removed = recycler.remove("abcdef", createGist("ab/cd/abcdef"));
+		recycler.recycle("abcdef", removed, Collections.<String, File>emptyMap(), null).get();
+		File entry = removed.getParentFile();
+
+		Assert.assertTrue(recycler.findDeletedBefore(System.currentTimeMillis() - 60000).isEmpty());
+		List<File> expired = recycler.findDeletedBefore(System.currentTimeMillis() + 60000);
+		Assert.assertEquals(Collections.singletonList(entry), expired);
+		recycler.purge(entry);
+		Assert.assertFalse(entry.exists());
+	}
+
+	@Test
+	public void purgesGistLeftBesideItsLocationTest() throws Exception {
+		File hiddenFolder = createGist("ab/cd/.abcdef.deleted");
+		File entry = new File(recycler.getRecycleRoot(), "abcdef");
+		FileUtils.write(new File(entry, GistRecycler.REMOVED_FILE), hiddenFolder.getAbsolutePath(),
+				StandardCharsets.UTF_8);
+
+		List<File> expired = recycler.findDeletedBefore(System.currentTimeMillis() + 60000);
+		Assert.assertEquals(Collections.singletonList(entry), expired);
+		Assert.assertEquals(hiddenFolder.getAbsoluteFile(), recycler.getGistFolder(entry));
+		recycler.purge(entry);
+		Assert.assertFalse(hiddenFolder.exists());
+		Assert.assertFalse(entry.exists());
+	}
+
+	@Test
+	public void movesGistLeftBesideItsLocationTest() throws Exception {
+		File hiddenFolder = createGist("ab/cd/.abcdef.deleted");
+		File entry = new File(recycler.getRecycleRoot(), "abcdef");
+		FileUtils.write(new File(entry, GistRecycler.REMOVED_FILE), hiddenFolder.getAbsolutePath(),
+				StandardCharsets.UTF_8);
+
+		recycler.recycle("abcdef", hiddenFolder, Collections.<String, File>emptyMap(), null).get();
+		Assert.assertFalse(hiddenFolder.exists());
+		Assert.assertFalse(new File(entry, GistRecycler.REMOVED_FILE).exists());
+		Assert.assertEquals(new File(entry, "abcdef"), recycler.getGistFolder(entry));
+	}
+
+	@Test
+	public void scanSkipsRecycledGistsTest() throws Exception {
+		File gistFolder = createGist("ab/cd/abcdef");
+		recycler.remove("123456", createGist("12/34/123456"));
+		createGist(".hidden/ef/ghijkl");
+		Iterator<File> metadataFiles = GistFolders.iterateMetadataFiles(root);
+		Assert.assertTrue(metadataFiles.hasNext());
+		Assert.assertEquals(new File(gistFolder, RepositoryLayout.GIST_META_FILE), metadataFiles.next());
+		Assert.assertFalse(metadataFiles.hasNext());
+	}
+
+	private File createGist(String path) throws Exception {
+		File gistFolder = new File(root, path);
+		FileUtils.write(new File(gistFolder, RepositoryLayout.GIST_META_FILE), "{}", StandardCharsets.UTF_8);
+		return gistFolder;
+	}
+
+}
@@ -6,8 +6,10 @@
 *******************************************************************************/
 package com.mangosolutions.rcloud.rawgist.repository;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -16,6 +18,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -34,12 +37,17 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mangosolutions.rcloud.rawgist.model.FileContent;
+import com.mangosolutions.rcloud.rawgist.model.FileContentSource;
 import com.mangosolutions.rcloud.rawgist.model.FileDefinition;
 import com.mangosolutions.rcloud.rawgist.model.GistComment;
 import com.mangosolutions.rcloud.rawgist.model.GistCommentResponse;
+import com.mangosolutions.rcloud.rawgist.model.GistHistory;
 import com.mangosolutions.rcloud.rawgist.model.GistRequest;
 import com.mangosolutions.rcloud.rawgist.model.GistResponse;
+import com.mangosolutions.rcloud.rawgist.repository.git.ForkGistOperation;
 import com.mangosolutions.rcloud.rawgist.repository.git.GistOperationFactory;
+import com.mangosolutions.rcloud.rawgist.repository.git.HistoryCache;
+import com.mangosolutions.rcloud.rawgist.repository.git.ObjectAlternates;
 import com.mangosolutions.rcloud.rawgist.repository.git.GitGistRepository;
 import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryLayout;
 
@@ -133,9 +141,148 @@ public class GitGistRepositoryTest {
 		Assert.assertEquals(3, files.size());
 	}
 
+	@Test
+	public void directCommitTest() throws IOException {
+		File workingFolder = new RepositoryLayout(repositoryFolder).getWorkingFolder();
+		FileUtils.forceDelete(workingFolder);
+		this.applyMixedChanges();
+		Assert.assertFalse(workingFolder.exists());
+	}
+
+	@Test
+	public void workingFolderCommitTest() {
+		gistOperationFactory.setDirectCommit(false);
+		this.applyMixedChanges();
+	}
+
+	private void applyMixedChanges() {
+		GistRequest request = this.createGistRequest(null,
+				new String[]{"i_am_file_1.R", null, "i_am_moved.R"},
+				new String[]{"i_am_file_2.R"},
+				new String[]{"i_am_file_3.R", "I am new content"});
+		GistResponse response = this.repository.updateGist(request, userDetails);
+		Map<String, FileContent> files = response.getFiles();
+		Assert.assertEquals(2, files.size());
+		Assert.assertEquals("I am the content of the file", files.get("i_am_moved.R").getContent());
+		Assert.assertEquals("I am new content", files.get("i_am_file_3.R").getContent());
+		Assert.assertEquals(3, response.getHistory().size());
+		Assert.assertEquals(1, response.getHistory().get(0).getChangeStatus().getDeletions());
+		response = this.repository.updateGist(this.createGistRequest(null,
+				new String[]{"i_am_file_3.R", "I am new content"}), userDetails);
+		Assert.assertEquals(3, response.getHistory().size());
+	}
+
+	@Test
+	public void updateReusesCachedHistoryTest() throws IOException {
+		final Map<String, List<GistHistory>> cache = new HashMap<>();
+		gistOperationFactory.setHistoryCache(new HistoryCache() {
+
+			@Override
+			public List<GistHistory> load(String commitId) {
+				return cache.get(commitId);
+			}
+
+			@Override
+			public List<GistHistory> save(String commitId, List<GistHistory> history) {
+				cache.put(commitId, history);
+				return history;
+			}
+
+		});
+		repository.readGist(userDetails);
+		Assert.assertEquals(1, cache.size());
+		File historyIndexFile = new RepositoryLayout(repositoryFolder).getHistoryIndexFile();
+		FileUtils.forceDelete(historyIndexFile);
+		GistResponse response = this.updateGist(new String[]{"i_am_file_3.R", "I am the content of a third file"});
+		Assert.assertFalse(historyIndexFile.exists());
+		Assert.assertEquals(3, response.getHistory().size());
+		Assert.assertEquals(1, response.getHistory().get(0).getChangeStatus().getAdditions());
+		Assert.assertEquals("I am the content of a third file", response.getFiles().get("i_am_file_3.R").getContent());
+	}
+
+	@Test
+	public void forkWithAlternatesTest() throws IOException {
+		gistOperationFactory.setForkMode(ForkGistOperation.ALTERNATES_FORK_MODE);
+		GitGistRepository fork = new GitGistRepository(folder.newFolder("fork"), gistOperationFactory);
+		GistResponse response = fork.forkGist(repository, UUID.randomUUID().toString(), userDetails);
+		Assert.assertEquals(2, response.getFiles().size());
+		Assert.assertEquals("I am the content of the file", response.getFiles().get("i_am_file_1.R").getContent());
+		Assert.assertEquals(2, response.getHistory().size());
+		File forkObjects = ObjectAlternates.getObjectsFolder(fork.getGistGitRepositoryFolder(userDetails));
+		Assert.assertEquals(1, ObjectAlternates.read(forkObjects).size());
+		response = fork.updateGist(this.createGistRequest(null, new String[]{"i_am_file_3.R", "Fork content"}),
+				userDetails);
+		Assert.assertEquals(3, response.getFiles().size());
+		Assert.assertEquals(2, repository.readGist(userDetails).getFiles().size());
+	}
+
+	@Test
+	public void historyLimitTest() {
+		GistResponse response = this.updateGist(new String[]{"i_am_file_3.R", "I am the content of a third file"});
+		Assert.assertEquals(3, response.getHistory().size());
+		gistOperationFactory.setHistoryLimit(2);
+		response = repository.readGist(userDetails);
+		Assert.assertEquals(2, response.getHistory().size());
+		ResultPage<GistHistory> history = repository.readHistory(1, 30, userDetails);
+		Assert.assertEquals(3, history.getItems().size());
+		Assert.assertEquals(3, history.getTotalItems());
+		Assert.assertEquals(history.getItems().get(0).getVersion(), response.getHistory().get(0).getVersion());
+		history = repository.readHistory(2, 2, userDetails);
+		Assert.assertEquals(1, history.getItems().size());
+		Assert.assertEquals(3, history.getTotalItems());
+		Assert.assertEquals(response.getHistory().get(1).getVersion(),
+				repository.readHistory(2, 1, userDetails).getItems().get(0).getVersion());
+	}
+
+	@Test
+	public void truncateLargeFileTest() {
+		String largeContent = StringUtils.repeat("I am a large file \u00e9", 100);
+		this.updateGist(new String[]{"large_file.txt", largeContent});
+		gistOperationFactory.setTruncateSize(100);
+		GistResponse response = repository.readGist(userDetails);
+		FileContent file = response.getFiles().get("large_file.txt");
+		Assert.assertTrue(file.getTruncated());
+		Assert.assertEquals(largeContent.getBytes(StandardCharsets.UTF_8).length, file.getSize().longValue());
+		Assert.assertTrue(largeContent.startsWith(file.getContent()));
+		Assert.assertFalse(response.getFiles().get("i_am_file_1.R").getTruncated());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (OpenGistFile openFile = repository.openFile(null, "large_file.txt", userDetails)) {
+			Assert.assertEquals(largeContent.getBytes(StandardCharsets.UTF_8).length, openFile.getSize());
+			openFile.write(out);
+		}
+		Assert.assertEquals(largeContent, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void writeGistTest() throws IOException {
+		String content = StringUtils.repeat("\"quoted\"\n\u00e9\ud83d\ude00\t", 2000);
+		this.updateGist(new String[]{"escaped_file.txt", content});
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (OpenGist openGist = repository.openGist(null, userDetails)) {
+			openGist.write(new GistResponseWriter() {
+
+				@Override
+				public void write(GistResponse response, FileContentSource contentSource) throws IOException {
+					Assert.assertNull(response.getFiles().get("escaped_file.txt").getContent());
+					objectMapper.writer().withAttribute(FileContentSource.class, contentSource).writeValue(out, response);
+				}
+
+			});
+		}
+		String expected = objectMapper.writeValueAsString(repository.readGist(userDetails));
+		Assert.assertEquals(objectMapper.readTree(expected), objectMapper.readTree(out.toByteArray()));
+		GistResponse streamed = objectMapper.readValue(out.toByteArray(), GistResponse.class);
+		Assert.assertEquals(content, streamed.getFiles().get("escaped_file.txt").getContent());
+	}
+
+	@Test(expected = GistRepositoryException.class)
+	public void writeMissingFileTest() {
+		repository.openFile(null, "missing_file.txt", userDetails);
+	}
+
 	@Test
 	public void getEmptyCommentsTest() {
-		List<GistCommentResponse> comments = commentRepository.getComments(userDetails);
+		List<GistCommentResponse> comments = getComments();
 		Assert.assertEquals(0, comments.size());
 	}
 
@@ -148,7 +295,7 @@ public class GitGistRepositoryTest {
 		Assert.assertEquals(expectedComment, response.getBody());
 		Assert.assertEquals(Long.valueOf(1), response.getId()); //Slightly fragile makes an assumption about the id of the comments
 		Assert.assertEquals(this.userDetails.getUsername(), response.getUser().getLogin());
-		List<GistCommentResponse> comments = commentRepository.getComments(userDetails);
+		List<GistCommentResponse> comments = getComments();
 		Assert.assertEquals(1, comments.size());
 	}
 
@@ -163,7 +310,7 @@ public class GitGistRepositoryTest {
 		Assert.assertEquals(expectedComment, response.getBody());
 		Assert.assertEquals(Long.valueOf(1), response.getId()); //Slightly fragile makes an assumption about the id of the comments
 		Assert.assertEquals(this.userDetails.getUsername(), response.getUser().getLogin());
-		List<GistCommentResponse> comments = commentRepository.getComments(userDetails);
+		List<GistCommentResponse> comments = getComments();
 		Assert.assertEquals(1, comments.size());
 	}
 
@@ -178,7 +325,7 @@ public class GitGistRepositoryTest {
 		response = commentRepository.createComment(comment, this.userDetails);
 
 		commentRepository.deleteComment(commentId, this.userDetails);
-		List<GistCommentResponse> comments = commentRepository.getComments(userDetails);
+		List<GistCommentResponse> comments = getComments();
 		Assert.assertEquals(1, comments.size());
 		response = comments.get(0);
 		Assert.assertEquals(expectedComment, response.getBody());
@@ -194,7 +341,7 @@ public class GitGistRepositoryTest {
 			comment.setBody(commentBody + i);
 			commentRepository.createComment(comment, this.userDetails);
 		}
-		List<GistCommentResponse> comments = commentRepository.getComments(this.userDetails);
+		List<GistCommentResponse> comments = getComments();
 		Assert.assertEquals(1000, comments.size());
 		for(int i = 0; i < comments.size(); i++) {
 			GistCommentResponse response = comments.get(i);
@@ -214,6 +361,10 @@ public class GitGistRepositoryTest {
 		return repository.createGist(request, this.gistId, userDetails);
 	}
 
+	private List<GistCommentResponse> getComments() {
+		return commentRepository.getComments(null, 1, 1000, userDetails).getItems();
+	}
+
 	private GistRequest createGistRequest(String description, String[]... contents) {
 		GistRequest request = new GistRequest();
 		request.setDescription(description);
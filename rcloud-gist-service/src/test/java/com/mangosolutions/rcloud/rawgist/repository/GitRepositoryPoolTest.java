@@ -0,0 +1,91 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.GitRepositoryPool;
+
+public class GitRepositoryPoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reusesOpenRepositoryTest() throws Exception {
+		File gitFolder = createRepository("gist1");
+		GitRepositoryPool pool = new GitRepositoryPool(2, 60);
+		Repository first = pool.open(gitFolder);
+		first.close();
+		Repository second = pool.open(gitFolder);
+		second.close();
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, pool.size());
+		pool.close();
+		Assert.assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedTest() throws Exception {
+		GitRepositoryPool pool = new GitRepositoryPool(2, 60);
+		Repository first = pool.open(createRepository("gist1"));
+		first.close();
+		pool.open(createRepository("gist2")).close();
+		pool.open(createRepository("gist3")).close();
+		Assert.assertEquals(2, pool.size());
+		Repository reopened = pool.open(first.getDirectory());
+		reopened.close();
+		Assert.assertNotSame(first, reopened);
+		pool.close();
+	}
+
+	@Test
+	public void evictsFolderTest() throws Exception {
+		GitRepositoryPool pool = new GitRepositoryPool(2, 60);
+		pool.open(createRepository("gist1")).close();
+		pool.open(createRepository("gist2")).close();
+		pool.evict(new File(folder.getRoot(), "gist1"));
+		Assert.assertEquals(1, pool.size());
+		pool.close();
+	}
+
+	@Test
+	public void evictsIdleRepositoriesTest() throws Exception {
+		GitRepositoryPool pool = new GitRepositoryPool(2, 0);
+		pool.open(createRepository("gist1")).close();
+		Thread.sleep(10);
+		pool.open(createRepository("gist2")).close();
+		Assert.assertEquals(1, pool.size());
+		pool.close();
+	}
+
+	@Test
+	public void poolingDisabledTest() throws Exception {
+		File gitFolder = createRepository("gist1");
+		GitRepositoryPool pool = new GitRepositoryPool(0, 60);
+		Repository first = pool.open(gitFolder);
+		first.close();
+		Repository second = pool.open(gitFolder);
+		second.close();
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals(0, pool.size());
+	}
+
+	private File createRepository(String name) throws Exception {
+		File gitFolder = new File(folder.getRoot(), name + "/repo");
+		Git.init().setBare(true).setDirectory(gitFolder).call().close();
+		return gitFolder;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.ForkObjectRelinker;
+import com.mangosolutions.rcloud.rawgist.repository.git.LocalGistLockManager;
+import com.mangosolutions.rcloud.rawgist.repository.git.ObjectAlternates;
+
+public class ObjectAlternatesTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File sourceGitFolder;
+
+	private File forkGitFolder;
+
+	private RevCommit commit;
+
+	@Before
+	public void setup() throws Exception {
+		File sourceFolder = folder.newFolder("source");
+		try (Git git = Git.init().setDirectory(sourceFolder).call()) {
+			FileUtils.write(new File(sourceFolder, "file1.txt"), "content", StandardCharsets.UTF_8);
+			git.add().addFilepattern("file1.txt").call();
+			commit = git.commit().setMessage("").call();
+			git.gc().call();
+			FileUtils.write(new File(sourceFolder, "file2.txt"), "loose content", StandardCharsets.UTF_8);
+			git.add().addFilepattern("file2.txt").call();
+			commit = git.commit().setMessage("").call();
+			sourceGitFolder = git.getRepository().getDirectory();
+		}
+		forkGitFolder = folder.newFolder("fork");
+		try (Repository fork = new FileRepositoryBuilder().setGitDir(forkGitFolder).setBare().build()) {
+			fork.create(true);
+		}
+		ObjectAlternates.add(ObjectAlternates.getObjectsFolder(forkGitFolder),
+				ObjectAlternates.getObjectsFolder(sourceGitFolder));
+	}
+
+	@Test
+	public void readsObjectsThroughAlternatesTest() throws Exception {
+		Assert.assertTrue(hasCommit(forkGitFolder));
+		Assert.assertEquals(1, ObjectAlternates.read(ObjectAlternates.getObjectsFolder(forkGitFolder)).size());
+	}
+
+	@Test
+	public void relinksForkWhenSourceMovesTest() throws Exception {
+		File movedGitFolder = new File(folder.getRoot(), "recycle/.git");
+		FileUtils.moveDirectory(sourceGitFolder, movedGitFolder);
+		Assert.assertFalse(hasCommit(forkGitFolder));
+		ForkObjectRelinker relinker = new ForkObjectRelinker(null, new LocalGistLockManager());
+		relinker.relink(Collections.singletonMap("fork", forkGitFolder), sourceGitFolder, movedGitFolder).get();
+		relinker.shutdown();
+		FileUtils.forceDelete(movedGitFolder);
+		Assert.assertTrue(hasCommit(forkGitFolder));
+		Assert.assertTrue(ObjectAlternates.read(ObjectAlternates.getObjectsFolder(forkGitFolder)).isEmpty());
+	}
+
+	@Test
+	public void forkInUseIsNotDetachedTest() throws Exception {
+		File movedGitFolder = new File(folder.getRoot(), "recycle/.git");
+		FileUtils.moveDirectory(sourceGitFolder, movedGitFolder);
+		LocalGistLockManager lockManager = new LocalGistLockManager();
+		ForkObjectRelinker relinker = new ForkObjectRelinker(null, lockManager);
+		relinker.setLockTimeout(0);
+		Lock lock = lockManager.getLock("fork").writeLock();
+		lock.lock();
+		try {
+			relinker.relink(Collections.singletonMap("fork", forkGitFolder), sourceGitFolder, movedGitFolder).get();
+		} finally {
+			lock.unlock();
+			relinker.shutdown();
+		}
+		Assert.assertEquals(Collections.singletonList(ObjectAlternates.getObjectsFolder(movedGitFolder).getAbsoluteFile()),
+				ObjectAlternates.read(ObjectAlternates.getObjectsFolder(forkGitFolder)));
+		Assert.assertTrue(hasCommit(forkGitFolder));
+	}
+
+	@Test
+	public void detachKeepsInheritedAlternatesTest() throws Exception {
+		File otherObjects = folder.newFolder("other", "objects");
+		ObjectAlternates.add(ObjectAlternates.getObjectsFolder(sourceGitFolder), otherObjects);
+		File forkObjects = ObjectAlternates.getObjectsFolder(forkGitFolder);
+		Assert.assertTrue(ObjectAlternates.detach(forkObjects, ObjectAlternates.getObjectsFolder(sourceGitFolder)));
+		Assert.assertEquals(Collections.singletonList(otherObjects.getAbsoluteFile()), ObjectAlternates.read(forkObjects));
+		Assert.assertFalse(ObjectAlternates.detach(forkObjects, ObjectAlternates.getObjectsFolder(sourceGitFolder)));
+	}
+
+	private boolean hasCommit(File gitFolder) throws Exception {
+		try (Repository repository = new FileRepositoryBuilder().setGitDir(gitFolder).build()) {
+			return repository.hasObject(commit) && repository.hasObject(commit.getTree());
+		}
+	}
+
+}
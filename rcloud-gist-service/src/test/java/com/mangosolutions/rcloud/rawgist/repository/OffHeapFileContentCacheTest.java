@@ -0,0 +1,69 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mangosolutions.rcloud.rawgist.model.FileContent;
+import com.mangosolutions.rcloud.rawgist.repository.git.OffHeapFileContentCache;
+
+public class OffHeapFileContentCacheTest {
+
+	@Test
+	public void loadsSavedContentTest() {
+		OffHeapFileContentCache cache = new OffHeapFileContentCache(1024);
+		Assert.assertNull(cache.load("object1"));
+		cache.save("object1", createContent("Some content \u00e9", 200L, true));
+		FileContent content = cache.load("object1");
+		Assert.assertEquals("Some content \u00e9", content.getContent());
+		Assert.assertEquals(200L, content.getSize().longValue());
+		Assert.assertTrue(content.getTruncated());
+		Assert.assertNull(content.getFilename());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedByBytesTest() {
+		OffHeapFileContentCache cache = new OffHeapFileContentCache(300);
+		String content = StringUtils.repeat("a", 91);
+		cache.save("object1", createContent(content, 91L, false));
+		cache.save("object2", createContent(content, 91L, false));
+		cache.save("object3", createContent(content, 91L, false));
+		Assert.assertEquals(300, cache.getUsedSize());
+		cache.load("object1");
+		cache.save("object4", createContent(content, 91L, false));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertNotNull(cache.load("object1"));
+		Assert.assertNull(cache.load("object2"));
+		Assert.assertNotNull(cache.load("object4"));
+	}
+
+	@Test
+	public void doesNotCacheContentLargerThanCacheTest() {
+		OffHeapFileContentCache cache = new OffHeapFileContentCache(100);
+		cache.save("object1", createContent(StringUtils.repeat("a", 100), 100L, false));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNull(cache.load("object1"));
+	}
+
+	@Test
+	public void disabledCacheTest() {
+		OffHeapFileContentCache cache = new OffHeapFileContentCache(0);
+		cache.save("object1", createContent("Some content", 12L, false));
+		Assert.assertNull(cache.load("object1"));
+	}
+
+	private FileContent createContent(String text, Long size, boolean truncated) {
+		FileContent content = new FileContent();
+		content.setContent(text);
+		content.setSize(size);
+		content.setTruncated(truncated);
+		return content;
+	}
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.ObjectAlternates;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryGarbageCollector;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryMaintenanceResult;
+
+public class RepositoryGarbageCollectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void collectsRepositoryTest() throws Exception {
+		File workFolder = folder.newFolder("gist");
+		RevCommit head = commit(workFolder, "file1.txt", "content");
+		File gitFolder = new File(workFolder, Constants.DOT_GIT);
+		Assert.assertTrue(RepositoryGarbageCollector.countLooseObjects(gitFolder) > 0);
+		RepositoryMaintenanceResult result = new RepositoryGarbageCollector(null).collect("gist", gitFolder);
+		Assert.assertEquals(RepositoryGarbageCollector.GC_ACTION, result.getAction());
+		Assert.assertEquals(3, result.getLooseObjects());
+		Assert.assertEquals(0, result.getRemainingLooseObjects());
+		Assert.assertEquals(head, readHead(gitFolder));
+	}
+
+	@Test
+	public void packsOnlyOwnObjectsOfBorrowingRepositoryTest() throws Exception {
+		File sourceFolder = folder.newFolder("source");
+		RevCommit sourceHead = commit(sourceFolder, "file1.txt", "content");
+		File sourceGitFolder = new File(sourceFolder, Constants.DOT_GIT);
+		File forkGitFolder = folder.newFolder("fork");
+		try (Repository fork = new FileRepositoryBuilder().setGitDir(forkGitFolder).setBare().build()) {
+			fork.create(true);
+		}
+		ObjectAlternates.add(ObjectAlternates.getObjectsFolder(forkGitFolder),
+				ObjectAlternates.getObjectsFolder(sourceGitFolder));
+		ObjectId forkHead;
+		try (Repository fork = new FileRepositoryBuilder().setGitDir(forkGitFolder).build();
+				ObjectInserter inserter = fork.newObjectInserter()) {
+			CommitBuilder commit = new CommitBuilder();
+			commit.setTreeId(sourceHead.getTree());
+			commit.setParentId(sourceHead);
+			commit.setAuthor(sourceHead.getAuthorIdent());
+			commit.setCommitter(sourceHead.getCommitterIdent());
+			commit.setMessage("fork");
+			forkHead = inserter.insert(commit);
+			inserter.flush();
+			RefUpdate refUpdate = fork.updateRef(Constants.R_HEADS + Constants.MASTER);
+			refUpdate.setNewObjectId(forkHead);
+			refUpdate.forceUpdate();
+		}
+		Assert.assertEquals(1, RepositoryGarbageCollector.countLooseObjects(forkGitFolder));
+
+		RepositoryMaintenanceResult result = new RepositoryGarbageCollector(null).collect("fork", forkGitFolder);
+		Assert.assertEquals(RepositoryGarbageCollector.PACK_ACTION, result.getAction());
+		Assert.assertEquals(0, result.getRemainingLooseObjects());
+		Assert.assertEquals(forkHead, readHead(forkGitFolder));
+		try (Repository fork = new FileRepositoryBuilder().setGitDir(forkGitFolder).build()) {
+			GC.RepoStatistics statistics = new GC((FileRepository) fork).getStatistics();
+			Assert.assertEquals(1, statistics.numberOfPackedObjects);
+			Assert.assertTrue(fork.hasObject(sourceHead.getTree()));
+		}
+	}
+
+	private RevCommit commit(File workFolder, String filename, String content) throws Exception {
+		try (Git git = Git.init().setDirectory(workFolder).call()) {
+			FileUtils.write(new File(workFolder, filename), content, StandardCharsets.UTF_8);
+			git.add().addFilepattern(filename).call();
+			return git.commit().setMessage("").call();
+		}
+	}
+
+	private ObjectId readHead(File gitFolder) throws Exception {
+		try (Repository repository = new FileRepositoryBuilder().setGitDir(gitFolder).setMustExist(true).build();
+				RevWalk walk = new RevWalk(repository)) {
+			ObjectId head = repository.resolve(Constants.HEAD);
+			Assert.assertTrue(repository.hasObject(walk.parseCommit(head).getTree()));
+			return head;
+		}
+	}
+
+}
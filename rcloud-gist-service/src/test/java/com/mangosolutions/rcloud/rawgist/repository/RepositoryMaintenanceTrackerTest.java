@@ -0,0 +1,77 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.GitGistRepositoryService;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryGarbageCollector;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryMaintenanceResult;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryMaintenanceScheduler;
+import com.mangosolutions.rcloud.rawgist.repository.git.RepositoryMaintenanceTracker;
+
+public class RepositoryMaintenanceTrackerTest {
+
+	@Test
+	public void tracksBusiestGistsTest() {
+		RepositoryMaintenanceTracker tracker = new RepositoryMaintenanceTracker();
+		tracker.record("gist1");
+		tracker.record("gist2");
+		tracker.record("gist2");
+		tracker.record("gist3");
+		tracker.record("gist3");
+		tracker.record("gist3");
+		Assert.assertEquals(Arrays.asList("gist3", "gist2"), tracker.getBusiest(2));
+		tracker.remove("gist3");
+		Assert.assertEquals(Arrays.asList("gist2", "gist1"), tracker.getBusiest(5));
+		Assert.assertEquals(2, tracker.getChanges("gist2"));
+	}
+
+	@Test
+	public void keepsChangesMadeSinceCountedTest() {
+		RepositoryMaintenanceTracker tracker = new RepositoryMaintenanceTracker();
+		tracker.record("gist1");
+		int counted = tracker.getChanges("gist1");
+		tracker.record("gist1");
+		tracker.remove("gist1", counted);
+		Assert.assertEquals(2, tracker.getChanges("gist1"));
+		tracker.remove("gist1", tracker.getChanges("gist1"));
+		Assert.assertEquals(0, tracker.size());
+	}
+
+	@Test
+	public void clearsCheckedGistsTest() {
+		RepositoryMaintenanceTracker tracker = new RepositoryMaintenanceTracker();
+		tracker.record("collected");
+		tracker.record("skipped");
+		tracker.record("in_use");
+		GitGistRepositoryService repositoryService = mock(GitGistRepositoryService.class);
+		RepositoryMaintenanceResult collected = new RepositoryMaintenanceResult("collected");
+		collected.setAction(RepositoryGarbageCollector.GC_ACTION);
+		RepositoryMaintenanceResult skipped = new RepositoryMaintenanceResult("skipped");
+		skipped.setAction(RepositoryGarbageCollector.SKIP_ACTION);
+		when(repositoryService.maintainRepository(eq("collected"), anyInt())).thenReturn(collected);
+		when(repositoryService.maintainRepository(eq("skipped"), anyInt())).thenReturn(skipped);
+		when(repositoryService.maintainRepository(eq("in_use"), anyInt())).thenReturn(null);
+
+		RepositoryMaintenanceScheduler scheduler = new RepositoryMaintenanceScheduler(tracker, repositoryService,
+				null);
+		scheduler.run();
+		Assert.assertEquals(Collections.singletonList("in_use"), tracker.getBusiest(5));
+		Assert.assertEquals(Collections.singletonList(collected), scheduler.getResults());
+	}
+
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.rawgist.repository;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mangosolutions.rcloud.rawgist.repository.git.ObjectAlternates;
+import com.mangosolutions.rcloud.rawgist.repository.git.SharedObjectPool;
+
+public class SharedObjectPoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SharedObjectPool objectPool;
+
+	@Before
+	public void setup() throws Exception {
+		objectPool = new SharedObjectPool(folder.newFolder("gists"), true);
+		objectPool.initialise();
+	}
+
+	@Test
+	public void compactMovesObjectsIntoPoolTest() throws Exception {
+		File gitFolder = createRepository("gist1", "shared content", "other content");
+		RevCommit head = readHead(gitFolder);
+		int added = objectPool.compact(gitFolder);
+		Assert.assertTrue(added > 0);
+		File objectsFolder = ObjectAlternates.getObjectsFolder(gitFolder);
+		Assert.assertEquals(0, FileUtils.listFiles(objectsFolder, null, true).size() - countInfoFiles(objectsFolder));
+		Assert.assertEquals(head, readHead(gitFolder));
+		try (Repository repository = openRepository(gitFolder)) {
+			Assert.assertTrue(repository.hasObject(head.getTree()));
+		}
+	}
+
+	@Test
+	public void compactSharesObjectsBetweenGistsTest() throws Exception {
+		File gitFolder1 = createRepository("gist1", "shared content", "other content");
+		File gitFolder2 = createRepository("gist2", "shared content", "different content");
+		int added1 = objectPool.compact(gitFolder1);
+		int added2 = objectPool.compact(gitFolder2);
+		Assert.assertTrue(added2 < added1);
+		Assert.assertEquals(0, objectPool.compact(gitFolder1));
+		Assert.assertNotNull(readHead(gitFolder2));
+	}
+
+	private File createRepository(String name, String packedContent, String looseContent) throws Exception {
+		File workFolder = folder.newFolder(name);
+		try (Git git = Git.init().setDirectory(workFolder).call()) {
+			FileUtils.write(new File(workFolder, "file1.txt"), packedContent, StandardCharsets.UTF_8);
+			git.add().addFilepattern("file1.txt").call();
+			git.commit().setMessage("").setAuthor("user", "").setCommitter("user", "").call();
+			git.gc().call();
+			FileUtils.write(new File(workFolder, "file2.txt"), looseContent, StandardCharsets.UTF_8);
+			git.add().addFilepattern("file2.txt").call();
+			git.commit().setMessage(name).call();
+			return git.getRepository().getDirectory();
+		}
+	}
+
+	private RevCommit readHead(File gitFolder) throws Exception {
+		try (Repository repository = openRepository(gitFolder); Git git = new Git(repository)) {
+			return git.log().setMaxCount(1).call().iterator().next();
+		}
+	}
+
+	private Repository openRepository(File gitFolder) throws Exception {
+		return new FileRepositoryBuilder().setGitDir(gitFolder).setMustExist(true).build();
+	}
+
+	private int countInfoFiles(File objectsFolder) {
+		return FileUtils.listFiles(new File(objectsFolder, "info"), null, true).size();
+	}
+
+}
@@ -48,6 +48,8 @@ public class GrantedAuthorityGistSecurityManagerTest {
     
     private Map<String, List<String>> collaborations;
 
+    private CollaborationDataStore collaborationDataStore;
+
     @Before
     public void setup() {
         mockGistRepository = mock(GistRepository.class);
@@ -55,7 +57,7 @@ public class GrantedAuthorityGistSecurityManagerTest {
         when(mockGistRepository.getMetadata()).thenReturn(metadata);
         metadata.setOwner(OWNER_NAME);
         collaborations = new HashMap<>();
-        CollaborationDataStore collaborationDataStore = new CollaborationDataStore(collaborations);
+        collaborationDataStore = new CollaborationDataStore(collaborations);
         securityManager = new GrantedAuthorityGistSecurityManager(collaborationDataStore);
     }
     
@@ -341,6 +343,7 @@ public class GrantedAuthorityGistSecurityManagerTest {
     
     private UserDetails createCollaboratorUserDetails() {
         collaborations.put(OWNER_NAME, Arrays.asList(COLLABORATOR_NAME));
+        collaborationDataStore.updateCollaborators(collaborations);
         return createNotOwnerUserDetails();
     }
     
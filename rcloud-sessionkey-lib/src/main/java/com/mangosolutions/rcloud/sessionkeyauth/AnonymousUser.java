@@ -20,4 +20,9 @@ public final class AnonymousUser extends User {
     public AnonymousUser(Collection<? extends GrantedAuthority> authorities) {
         super(ANONYMOUS_USER_NAME, "", authorities);
     }
+
+    @Override
+    public void eraseCredentials() {
+        // there are no credentials, and the user is shared between requests.
+    }
 }
@@ -16,11 +16,20 @@ public class KeyServerConfiguration {
 
 	private static final Integer DEFAULT_PORT_VALUE = 4301;
 
+	private static final int DEFAULT_CONNECT_TIMEOUT_VALUE = 2000;
+
+	private static final int DEFAULT_READ_TIMEOUT_VALUE = 5000;
+
+	private static final int DEFAULT_MAX_CONNECTIONS_VALUE = 20;
+
 	private String host = DEFAULT_HOST_VALUE;
 	private Integer port = DEFAULT_PORT_VALUE;
 	private String realm = DEFAULT_REALM_VALUE;
 	private String url = DEFAULT_URL_VALUE;
 	private boolean active = true;
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT_VALUE;
+	private int readTimeout = DEFAULT_READ_TIMEOUT_VALUE;
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS_VALUE;
 
 
 	public String getHost() {
@@ -64,13 +73,50 @@ public class KeyServerConfiguration {
 		this.active = active;
 	}
 
+	/**
+	 * The milliseconds to wait for a connection to the key server, or for a
+	 * free connection when they are pooled.
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * The milliseconds to wait for the key server to respond.
+	 */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * The largest number of pooled connections to the key server.
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (active ? 1231 : 1237);
+		result = prime * result + connectTimeout;
 		result = prime * result + ((host == null) ? 0 : host.hashCode());
+		result = prime * result + maxConnections;
 		result = prime * result + ((port == null) ? 0 : port.hashCode());
+		result = prime * result + readTimeout;
 		result = prime * result + ((realm == null) ? 0 : realm.hashCode());
 		result = prime * result + ((url == null) ? 0 : url.hashCode());
 		return result;
@@ -87,6 +133,12 @@ public class KeyServerConfiguration {
 		KeyServerConfiguration other = (KeyServerConfiguration) obj;
 		if (active != other.active)
 			return false;
+		if (connectTimeout != other.connectTimeout)
+			return false;
+		if (readTimeout != other.readTimeout)
+			return false;
+		if (maxConnections != other.maxConnections)
+			return false;
 		if (host == null) {
 			if (other.host != null)
 				return false;
@@ -113,7 +165,8 @@ public class KeyServerConfiguration {
 	@Override
 	public String toString() {
 		return "KeyServerConfiguration [host=" + host + ", port=" + port + ", realm=" + realm + ", url=" + url
-				+ ", active=" + active + "]";
+				+ ", active=" + active + ", connectTimeout=" + connectTimeout + ", readTimeout=" + readTimeout
+				+ ", maxConnections=" + maxConnections + "]";
 	}
 	
 	
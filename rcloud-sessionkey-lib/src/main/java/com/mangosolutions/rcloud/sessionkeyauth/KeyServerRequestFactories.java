@@ -0,0 +1,205 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.sessionkeyauth;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.util.UriTemplate;
+
+/**
+ * Creates the request factories used to call the key servers. Each request is
+ * given the timeouts of the key server it is sent to, which is found from the
+ * host and port of the request.
+ * <p>
+ * The pooled factory keeps connections to the key servers alive in a pool
+ * holding up to the maximum number of connections of each key server, a
+ * request waits up to the connect timeout for a free connection. The simple
+ * factory opens a connection for each request as the JDK allows.
+ */
+public final class KeyServerRequestFactories {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyServerRequestFactories.class);
+
+    private static final long IDLE_CONNECTION_SECONDS = 30;
+
+    private KeyServerRequestFactories() {
+    }
+
+    public static ClientHttpRequestFactory createRequestFactory(Map<String, KeyServerConfiguration> keyServers,
+            boolean pooled) {
+        Map<String, ServerSettings> servers = getServersByAuthority(keyServers);
+        return pooled ? createPooledRequestFactory(servers) : new SimpleRequestFactory(servers);
+    }
+
+    private static ClientHttpRequestFactory createPooledRequestFactory(Map<String, ServerSettings> servers) {
+        ServerSettings defaults = new ServerSettings();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(defaults.maxConnections);
+        int maxTotal = defaults.maxConnections;
+        for (ServerSettings server : servers.values()) {
+            connectionManager.setMaxPerRoute(server.route, server.maxConnections);
+            maxTotal += server.maxConnections;
+        }
+        connectionManager.setMaxTotal(maxTotal);
+        return new PooledRequestFactory(servers,
+                HttpClients.custom().setConnectionManager(connectionManager)
+                        .setDefaultRequestConfig(getRequestConfig(defaults)).evictExpiredConnections()
+                        .evictIdleConnections(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS).build());
+    }
+
+    /**
+     * Indexes the key servers by the host and port of their url, the larger
+     * of the settings is used where key servers share a host and port.
+     */
+    private static Map<String, ServerSettings> getServersByAuthority(
+            Map<String, KeyServerConfiguration> keyServers) {
+        Map<String, ServerSettings> servers = new HashMap<>();
+        for (KeyServerConfiguration keyServer : keyServers.values()) {
+            URI uri;
+            try {
+                uri = getUri(keyServer);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Could not resolve the url of key server {}, the default settings will be used",
+                        keyServer, e);
+                continue;
+            }
+            String authority = getAuthority(uri);
+            ServerSettings server = servers.get(authority);
+            if (server == null) {
+                server = new ServerSettings();
+                server.route = getRoute(uri);
+                server.connectTimeout = keyServer.getConnectTimeout();
+                server.readTimeout = keyServer.getReadTimeout();
+                server.maxConnections = keyServer.getMaxConnections();
+                servers.put(authority, server);
+            } else {
+                server.connectTimeout = Math.max(server.connectTimeout, keyServer.getConnectTimeout());
+                server.readTimeout = Math.max(server.readTimeout, keyServer.getReadTimeout());
+                server.maxConnections = Math.max(server.maxConnections, keyServer.getMaxConnections());
+            }
+        }
+        return servers;
+    }
+
+    private static URI getUri(KeyServerConfiguration server) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("token", "");
+        params.put("realm", server.getRealm());
+        params.put("host", server.getHost());
+        params.put("port", server.getPort());
+        return new UriTemplate(server.getUrl()).expand(params);
+    }
+
+    private static String getAuthority(URI uri) {
+        return uri.getHost() + ":" + getPort(uri);
+    }
+
+    private static int getPort(URI uri) {
+        if (uri.getPort() > 0) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    private static HttpRoute getRoute(URI uri) {
+        HttpHost host = new HttpHost(uri.getHost(), getPort(uri), uri.getScheme());
+        return new HttpRoute(host, null, "https".equalsIgnoreCase(uri.getScheme()));
+    }
+
+    private static RequestConfig getRequestConfig(ServerSettings server) {
+        return RequestConfig.custom().setConnectTimeout(server.connectTimeout)
+                .setConnectionRequestTimeout(server.connectTimeout).setSocketTimeout(server.readTimeout).build();
+    }
+
+    private static ServerSettings getServer(Map<String, ServerSettings> servers, URI uri) {
+        ServerSettings server = servers.get(getAuthority(uri));
+        return server == null ? new ServerSettings() : server;
+    }
+
+    /**
+     * The settings of the key servers at a host and port.
+     */
+    private static class ServerSettings {
+
+        private HttpRoute route;
+
+        private int connectTimeout;
+
+        private int readTimeout;
+
+        private int maxConnections;
+
+        ServerSettings() {
+            KeyServerConfiguration defaults = new KeyServerConfiguration();
+            this.connectTimeout = defaults.getConnectTimeout();
+            this.readTimeout = defaults.getReadTimeout();
+            this.maxConnections = defaults.getMaxConnections();
+        }
+
+    }
+
+    private static class PooledRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final Map<String, ServerSettings> servers;
+
+        PooledRequestFactory(Map<String, ServerSettings> servers, HttpClient httpClient) {
+            super(httpClient);
+            this.servers = servers;
+        }
+
+        @Override
+        protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(getRequestConfig(getServer(servers, uri)));
+            return context;
+        }
+
+    }
+
+    private static class SimpleRequestFactory extends SimpleClientHttpRequestFactory {
+
+        private final Map<String, ServerSettings> servers;
+
+        SimpleRequestFactory(Map<String, ServerSettings> servers) {
+            this.servers = servers;
+        }
+
+        @Override
+        protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+            super.prepareConnection(connection, httpMethod);
+            try {
+                ServerSettings server = getServer(servers, connection.getURL().toURI());
+                connection.setConnectTimeout(server.connectTimeout);
+                connection.setReadTimeout(server.readTimeout);
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid key server url " + connection.getURL(), e);
+            }
+        }
+
+    }
+
+}
@@ -18,6 +18,8 @@ public class SessionKeyServerResponse implements Serializable {
 
     private String source = null;
 
+    private long validatedAt = 0;
+
     public SessionKeyServerResult getResult() {
         return result;
     }
@@ -42,6 +44,18 @@ public class SessionKeyServerResponse implements Serializable {
         this.source = source;
     }
 
+    /**
+     * The time in milliseconds at which the key server gave this response, it
+     * is not part of the equality of responses.
+     */
+    public long getValidatedAt() {
+        return validatedAt;
+    }
+
+    public void setValidatedAt(long validatedAt) {
+        this.validatedAt = validatedAt;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -78,7 +92,8 @@ public class SessionKeyServerResponse implements Serializable {
 
     @Override
     public String toString() {
-        return "SessionKeyServerResponse [result=" + result + ", name=" + name + ", source=" + source + "]";
+        return "SessionKeyServerResponse [result=" + result + ", name=" + name + ", source=" + source
+                + ", validatedAt=" + validatedAt + "]";
     }
 
 }
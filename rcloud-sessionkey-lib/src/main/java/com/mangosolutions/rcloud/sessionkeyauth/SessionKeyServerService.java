@@ -8,34 +8,73 @@ package com.mangosolutions.rcloud.sessionkeyauth;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriTemplate;
 
-public class SessionKeyServerService {
+/**
+ * Validates session keys with the key server configured for the client id.
+ * <p>
+ * Concurrent validations of the same session key for the same client id share
+ * a single call to the key server, the first caller makes the call and the
+ * others wait for its result. The timeouts and connection limits of each key
+ * server are applied by the request factory of the rest template, see
+ * {@link KeyServerRequestFactories}.
+ * <p>
+ * Accepted session keys are cached in the {@value #ACCEPTED_CACHE} cache,
+ * rejected session keys are cached in the {@value #REJECTED_CACHE} cache, which
+ * is expected to expire entries sooner so that a client retrying a rejected
+ * session key does not call the key server on every request.
+ */
+public class SessionKeyServerService implements DisposableBean {
     
     private static final Logger logger = LoggerFactory.getLogger(SessionKeyServerService.class);
 
+    public static final String ACCEPTED_CACHE = "sessionkeys";
+
+    public static final String REJECTED_CACHE = "rejectedsessionkeys";
+
+    private static final String IS_ACCEPTED = "#result.result == "
+            + "T(com.mangosolutions.rcloud.sessionkeyauth.SessionKeyServerResult).YES";
+
     private RestTemplate restTemplate;
     
     private Map<String, KeyServerConfiguration> keyServers = new HashMap<>();
+
+    private final ConcurrentMap<List<String>, FutureTask<SessionKeyServerResponse>> inFlight = new ConcurrentHashMap<>();
     
     public SessionKeyServerService(Map<String, KeyServerConfiguration> keyServers) {
-        this(new RestTemplate(), keyServers);
+        this(keyServers, true);
+    }
+
+    public SessionKeyServerService(Map<String, KeyServerConfiguration> keyServers, boolean pooled) {
+        this(new RestTemplate(KeyServerRequestFactories.createRequestFactory(keyServers, pooled)), keyServers);
     }
     
     public SessionKeyServerService(RestTemplate restTemplate,
@@ -47,11 +86,69 @@ public class SessionKeyServerService {
         this.restTemplate = restTemplate;
     }
     
-    @Cacheable(value = "sessionkeys")
+    @Caching(cacheable = { @Cacheable(value = ACCEPTED_CACHE, unless = "#result == null || !(" + IS_ACCEPTED + ")"),
+            @Cacheable(value = REJECTED_CACHE, unless = "#result == null || " + IS_ACCEPTED) })
     public SessionKeyServerResponse authenticate(String clientId, String sessionKey) {
-        KeyServerConfiguration keyServer = getKeyServerConfiguration(clientId);
-        ResponseEntity<SessionKeyServerResponse> response = doAuthentication(sessionKey, keyServer);
-        return response.getBody();
+        return validate(clientId, sessionKey);
+    }
+
+    /**
+     * Validates the session key with the key server and replaces the cached
+     * response, a session key the key server no longer accepts is removed
+     * from the cache of accepted session keys.
+     */
+    @Caching(put = { @CachePut(value = ACCEPTED_CACHE, unless = "#result == null || !(" + IS_ACCEPTED + ")"),
+            @CachePut(value = REJECTED_CACHE, unless = "#result == null || " + IS_ACCEPTED) },
+            evict = @CacheEvict(value = ACCEPTED_CACHE, condition = "#result != null && !(" + IS_ACCEPTED + ")"))
+    public SessionKeyServerResponse refresh(String clientId, String sessionKey) {
+        return validate(clientId, sessionKey);
+    }
+
+    private SessionKeyServerResponse validate(final String clientId, final String sessionKey) {
+        List<String> key = Arrays.asList(clientId, sessionKey);
+        FutureTask<SessionKeyServerResponse> call = new FutureTask<>(new Callable<SessionKeyServerResponse>() {
+
+            @Override
+            public SessionKeyServerResponse call() {
+                KeyServerConfiguration keyServer = getKeyServerConfiguration(clientId);
+                ResponseEntity<SessionKeyServerResponse> response = doAuthentication(sessionKey, keyServer);
+                SessionKeyServerResponse body = response.getBody();
+                if (body != null) {
+                    body.setValidatedAt(System.currentTimeMillis());
+                }
+                return body;
+            }
+
+        });
+        FutureTask<SessionKeyServerResponse> existing = inFlight.putIfAbsent(key, call);
+        if (existing == null) {
+            try {
+                call.run();
+            } finally {
+                inFlight.remove(key, call);
+            }
+        } else {
+            call = existing;
+        }
+        return getResult(call);
+    }
+
+    private SessionKeyServerResponse getResult(FutureTask<SessionKeyServerResponse> call) {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted whilst waiting for the Session Key Server", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AuthenticationServiceException("Could not validate with the Session Key Server", cause);
+        }
     }
     
     private KeyServerConfiguration getKeyServerConfiguration(String clientId) {
@@ -122,4 +219,16 @@ public class SessionKeyServerService {
         this.restTemplate = restTemplate;
     }
 
+    /**
+     * Closes the connections held by the request factory, this is called when
+     * the service is replaced on a configuration refresh.
+     */
+    @Override
+    public void destroy() throws Exception {
+        ClientHttpRequestFactory requestFactory = restTemplate.getRequestFactory();
+        if (requestFactory instanceof DisposableBean) {
+            ((DisposableBean) requestFactory).destroy();
+        }
+    }
+
 }
@@ -6,27 +6,64 @@
 *******************************************************************************/
 package com.mangosolutions.rcloud.sessionkeyauth;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.AuthenticationUserDetailsService;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
 import org.springframework.util.StringUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Resolves the user of a session key from the key server.
+ * <p>
+ * When a refresh executor is set, an accepted session key whose cached
+ * response is older than the refresh interval is validated again in the
+ * background, whilst the cached response continues to be used. The refreshed
+ * response replaces the cached one, and a session key the key server no longer
+ * accepts is removed from the cache.
+ * <p>
+ * The users built from the responses, with their authorities, are held by
+ * session key and client id so that they are only built again when the key
+ * server names another user for the session key. The users are discarded by
+ * {@link #clearUsers()}, which must be called when the authorities a user is
+ * given may have changed.
+ */
 public class SessionKeyServerUserDetailsService
         implements AuthenticationUserDetailsService<PreAuthenticatedAuthenticationToken> {
 
     private static final Logger logger = LoggerFactory.getLogger(SessionKeyServerUserDetailsService.class);
 
+    private static final int DEFAULT_MAX_USERS = 10000;
+
     private SessionKeyServerService sessionKeyServerService;
 
     private GrantedAuthorityFactory grantedAuthorityFactory = new GrantedAuthorityFactory();
 
+    private Executor refreshExecutor;
+
+    private long refreshAfter = 0;
+
+    private volatile UserDetails anonymousUser;
+
+    private volatile Cache<List<String>, UserDetails> users = createUserCache(DEFAULT_MAX_USERS);
+
+    private final Set<List<String>> refreshing = Collections
+            .newSetFromMap(new ConcurrentHashMap<List<String>, Boolean>());
+
     public SessionKeyServerUserDetailsService(SessionKeyServerService sessionKeyServerService) {
         this.sessionKeyServerService = sessionKeyServerService;
     }
@@ -36,22 +73,57 @@ public class SessionKeyServerUserDetailsService
         if (token == null) {
             throw new UsernameNotFoundException("SessionKey token not correctly defined.");
         }
-        UserDetails userDetails = createAnonymousUser();
         String sessionKey = getSessionKey(token);
-        if (!isAnonymousUser(sessionKey)) {
-            SessionKeyServerResponse response = querySessionKeyServer(token, sessionKey);
-            userDetails = convertToUserDetails(response, sessionKey);
+        if (isAnonymousUser(sessionKey)) {
+            return getAnonymousUser();
         }
-        return userDetails;
+        SessionKeyServerResponse response = querySessionKeyServer(token, sessionKey);
+        return getUser(getClientId(token), sessionKey, response);
     }
 
     private SessionKeyServerResponse querySessionKeyServer(PreAuthenticatedAuthenticationToken token,
             String sessionKey) {
         String clientId = getClientId(token);
         SessionKeyServerResponse response = this.sessionKeyServerService.authenticate(clientId, sessionKey);
+        if (isRefreshDue(response)) {
+            refresh(clientId, sessionKey);
+        }
         return response;
     }
 
+    private boolean isRefreshDue(SessionKeyServerResponse response) {
+        return refreshExecutor != null && refreshAfter > 0 && response != null
+                && SessionKeyServerResult.YES.equals(response.getResult())
+                && System.currentTimeMillis() - response.getValidatedAt() >= refreshAfter;
+    }
+
+    private void refresh(final String clientId, final String sessionKey) {
+        final List<String> key = Arrays.asList(clientId, sessionKey);
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        sessionKeyServerService.refresh(clientId, sessionKey);
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not refresh the session key for client {}, the cached response is kept",
+                                clientId, e);
+                    } finally {
+                        refreshing.remove(key);
+                    }
+                }
+
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            logger.debug("Session key refresh for client {} was not queued", clientId, e);
+        }
+    }
+
     private boolean isAnonymousUser(String sessionKey) {
         return StringUtils.isEmpty(sessionKey);
     }
@@ -80,6 +152,61 @@ public class SessionKeyServerUserDetailsService
         this.grantedAuthorityFactory = factory;
     }
 
+    /**
+     * Sets the executor that validates session keys again in the background,
+     * and the age in milliseconds at which a cached response is refreshed.
+     * Refreshing is disabled when the executor is null or the age is not
+     * positive.
+     */
+    public void setRefresh(Executor refreshExecutor, long refreshAfter) {
+        this.refreshExecutor = refreshExecutor;
+        this.refreshAfter = refreshAfter;
+    }
+
+    /**
+     * Sets the number of users held between requests, 0 builds the user for
+     * every request.
+     */
+    public void setMaxUsers(int maxUsers) {
+        this.users = createUserCache(Math.max(0, maxUsers));
+    }
+
+    /**
+     * Discards the users held between requests, so that they are built again
+     * with their current authorities.
+     */
+    public void clearUsers() {
+        users.invalidateAll();
+        anonymousUser = null;
+    }
+
+    private UserDetails getUser(String clientId, String sessionKey, SessionKeyServerResponse response) {
+        List<String> key = Arrays.asList(clientId, sessionKey);
+        if (!SessionKeyServerResult.YES.equals(response.getResult())) {
+            users.invalidate(key);
+        }
+        UserDetails user = users.getIfPresent(key);
+        if (user != null && user.getUsername().equals(response.getName())) {
+            return user;
+        }
+        user = convertToUserDetails(response, sessionKey);
+        users.put(key, user);
+        return user;
+    }
+
+    private static Cache<List<String>, UserDetails> createUserCache(int maxUsers) {
+        return CacheBuilder.newBuilder().maximumSize(maxUsers).build();
+    }
+
+    private UserDetails getAnonymousUser() {
+        UserDetails user = anonymousUser;
+        if (user == null) {
+            user = createAnonymousUser();
+            anonymousUser = user;
+        }
+        return user;
+    }
+
     private UserDetails convertToUserDetails(SessionKeyServerResponse response, String sessionKey) {
         if (!SessionKeyServerResult.YES.equals(response.getResult())) {
             throw new UsernameNotFoundException(
@@ -87,7 +214,7 @@ public class SessionKeyServerUserDetailsService
         }
         String username = response.getName();
         Collection<GrantedAuthority> authorities = getAuthorities(username);
-        UserDetails details = new User(username, sessionKey, authorities);
+        UserDetails details = new SessionKeyUser(username, sessionKey, authorities);
         return details;
     }
 
@@ -0,0 +1,32 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.sessionkeyauth;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * A user authenticated by a session key. The user is shared by every request
+ * made with the session key, so its credentials are not erased after
+ * authentication, the session key is held as the key of the user in the
+ * {@link SessionKeyServerUserDetailsService} regardless.
+ */
+public final class SessionKeyUser extends User {
+
+    private static final long serialVersionUID = -2714590328367281146L;
+
+    public SessionKeyUser(String username, String sessionKey, Collection<? extends GrantedAuthority> authorities) {
+        super(username, sessionKey, authorities);
+    }
+
+    @Override
+    public void eraseCredentials() {
+        // shared between requests, see the class comment.
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+* Copyright (c) 2017 AT&T Intellectual Property, [http://www.att.com]
+*
+* SPDX-License-Identifier:   MIT
+*
+*******************************************************************************/
+package com.mangosolutions.rcloud.sessionkeyauth;
+
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+public class SessionKeyServerServiceTest {
+
+    private Map<String, KeyServerConfiguration> configs = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        configs.put("default", new KeyServerConfiguration());
+    }
+
+    @Test
+    public void testConcurrentValidationsShareOneCall() throws Exception {
+        final CountDownLatch called = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        RestTemplate restTemplate = new RestTemplate() {
+
+            @Override
+            public <T> ResponseEntity<T> exchange(RequestEntity<?> requestEntity, Class<T> responseType) {
+                calls.incrementAndGet();
+                called.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                SessionKeyServerResponse response = new SessionKeyServerResponse();
+                response.setResult(SessionKeyServerResult.YES);
+                response.setName("theuser");
+                return new ResponseEntity<T>(responseType.cast(response), HttpStatus.OK);
+            }
+
+        };
+        final SessionKeyServerService service = new SessionKeyServerService(restTemplate, configs);
+        final SessionKeyServerResponse[] responses = new SessionKeyServerResponse[3];
+        Thread[] threads = new Thread[responses.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    responses[index] = service.authenticate("default", "abc");
+                }
+
+            };
+        }
+        threads[0].start();
+        Assert.assertTrue(called.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < threads.length; i++) {
+            threads[i].start();
+            waitUntilWaiting(threads[i]);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        Assert.assertEquals(1, calls.get());
+        for (SessionKeyServerResponse response : responses) {
+            Assert.assertNotNull(response);
+            Assert.assertEquals("theuser", response.getName());
+        }
+
+        service.authenticate("default", "abc");
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testPooledRequestFactory() throws Exception {
+        SessionKeyServerService service = new SessionKeyServerService(configs, true);
+        Assert.assertTrue(
+                service.getRestTemplate().getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory);
+        service.destroy();
+    }
+
+    @Test
+    public void testSimpleRequestFactory() throws Exception {
+        SessionKeyServerService service = new SessionKeyServerService(configs, false);
+        Assert.assertTrue(service.getRestTemplate().getRequestFactory() instanceof SimpleClientHttpRequestFactory);
+        service.destroy();
+    }
+
+    @Test
+    public void testAcceptedAndRejectedCaches() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(CachingConfig.class);
+        try {
+            SessionKeyServerService service = context.getBean(SessionKeyServerService.class);
+            MockRestServiceServer server = MockRestServiceServer.bindTo(service.getRestTemplate()).build();
+            server.expect(ExpectedCount.once(), requestTo("http://127.0.0.1:4301/valid?token=abc&realm=rcloud"))
+                    .andRespond(withSuccess("YES\ntheuser\nthesource", MediaType.TEXT_PLAIN));
+            server.expect(ExpectedCount.once(), requestTo("http://127.0.0.1:4301/valid?token=bad&realm=rcloud"))
+                    .andRespond(withSuccess("NO", MediaType.TEXT_PLAIN));
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(SessionKeyServerResult.YES, service.authenticate("default", "abc").getResult());
+                Assert.assertEquals(SessionKeyServerResult.NO, service.authenticate("default", "bad").getResult());
+            }
+            server.verify();
+            CacheManager cacheManager = context.getBean(CacheManager.class);
+            Cache accepted = cacheManager.getCache(SessionKeyServerService.ACCEPTED_CACHE);
+            Cache rejected = cacheManager.getCache(SessionKeyServerService.REJECTED_CACHE);
+            SimpleKey acceptedKey = new SimpleKey("default", "abc");
+            SimpleKey rejectedKey = new SimpleKey("default", "bad");
+            Assert.assertNotNull(accepted.get(acceptedKey));
+            Assert.assertNull(accepted.get(rejectedKey));
+            Assert.assertNotNull(rejected.get(rejectedKey));
+            Assert.assertNull(rejected.get(acceptedKey));
+        } finally {
+            context.close();
+        }
+    }
+
+    private void waitUntilWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    static class CachingConfig {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        public SessionKeyServerService sessionKeyServerService() {
+            Map<String, KeyServerConfiguration> configs = new HashMap<>();
+            configs.put("default", new KeyServerConfiguration());
+            return new SessionKeyServerService(configs, false);
+        }
+
+    }
+
+}
@@ -11,18 +11,30 @@ import static org.springframework.test.web.client.match.MockRestRequestMatchers.
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.test.web.client.ExpectedCount;
 import org.springframework.test.web.client.MockRestServiceServer;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
@@ -71,6 +83,84 @@ public class SessionKeyServerUserDetailsServiceTest {
                 userDetails.getAuthorities().toArray(new GrantedAuthority[0])[1].getAuthority());
     }
 
+    @Test
+    public void testUserIsReused() {
+        final AtomicInteger resolved = new AtomicInteger();
+        detailsService.setGrantedAuthorityFactory(new GrantedAuthorityFactory() {
+
+            @Override
+            public Collection<GrantedAuthority> resolve(String username) {
+                resolved.incrementAndGet();
+                return super.resolve(username);
+            }
+
+        });
+        RestTemplate restTemplate = sessionKeyServerService.getRestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(ExpectedCount.times(3), requestTo("http://127.0.0.1:4301/valid?token=abc&realm=rcloud"))
+                .andRespond(withSuccess("YES\ntheuser\nthesource", MediaType.TEXT_PLAIN));
+        PreAuthenticatedAuthenticationToken token = new PreAuthenticatedAuthenticationToken("abc", null);
+        token.setDetails(details);
+        UserDetails first = detailsService.loadUserDetails(token);
+        UserDetails second = detailsService.loadUserDetails(token);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, resolved.get());
+
+        ((CredentialsContainer) first).eraseCredentials();
+        Assert.assertEquals("abc", first.getPassword());
+
+        detailsService.clearUsers();
+        UserDetails third = detailsService.loadUserDetails(token);
+        Assert.assertNotSame(first, third);
+        Assert.assertEquals("theuser", third.getUsername());
+        Assert.assertEquals(2, resolved.get());
+        server.verify();
+    }
+
+    @Test
+    public void testRefreshAhead() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(CachingConfig.class);
+        try {
+            SessionKeyServerService service = context.getBean(SessionKeyServerService.class);
+            CacheManager cacheManager = context.getBean(CacheManager.class);
+            SimpleKey key = new SimpleKey("default", "abc");
+            SessionKeyServerResponse cached = new SessionKeyServerResponse();
+            cached.setResult(SessionKeyServerResult.YES);
+            cached.setName("theuser");
+            cached.setValidatedAt(System.currentTimeMillis() - 60000);
+            cacheManager.getCache(SessionKeyServerService.ACCEPTED_CACHE).put(key, cached);
+            MockRestServiceServer server = MockRestServiceServer.bindTo(service.getRestTemplate()).build();
+            server.expect(ExpectedCount.once(), requestTo("http://127.0.0.1:4301/valid?token=abc&realm=rcloud"))
+                    .andRespond(withSuccess("NO", MediaType.TEXT_PLAIN));
+            SessionKeyServerUserDetailsService detailsService = new SessionKeyServerUserDetailsService(service);
+            detailsService.setRefresh(new Executor() {
+
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+
+            }, 30000);
+            PreAuthenticatedAuthenticationToken token = new PreAuthenticatedAuthenticationToken("abc", null);
+            token.setDetails(details);
+
+            // the cached response is used whilst it is refreshed
+            Assert.assertEquals("theuser", detailsService.loadUserDetails(token).getUsername());
+            server.verify();
+
+            Assert.assertNull(cacheManager.getCache(SessionKeyServerService.ACCEPTED_CACHE).get(key));
+            Assert.assertNotNull(cacheManager.getCache(SessionKeyServerService.REJECTED_CACHE).get(key));
+            try {
+                detailsService.loadUserDetails(token);
+                Assert.fail("The refreshed session key should have been rejected");
+            } catch (UsernameNotFoundException e) {
+                // expected
+            }
+        } finally {
+            context.close();
+        }
+    }
+
     @Test
     public void testAnonymousResponse() {
         PreAuthenticatedAuthenticationToken token = new PreAuthenticatedAuthenticationToken("", null);
@@ -171,4 +261,22 @@ public class SessionKeyServerUserDetailsServiceTest {
         Assert.fail("User should not have been found: " + details);
     }
 
+    @Configuration
+    @EnableCaching
+    static class CachingConfig {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        public SessionKeyServerService sessionKeyServerService() {
+            Map<String, KeyServerConfiguration> configs = new HashMap<>();
+            configs.put("default", new KeyServerConfiguration());
+            return new SessionKeyServerService(configs, false);
+        }
+
+    }
+
 }